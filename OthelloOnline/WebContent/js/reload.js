@@ -5,10 +5,19 @@
 function getTurnNumber() 
 {
 	turnNumber = document.getElementById("turnNumber").innerHTML;
-	url = "Reload?turnNumber=" + turnNumber;
+	gameId = document.getElementById("gameId").innerHTML;
+	url = "Reload?game=" + gameId + "&turnNumber=" + turnNumber;
 	
 	// Create the game page URL
-	gamePage = "http://" + window.location.host + "/OthelloOnline/GamePage";
+	gamePage = "http://" + window.location.host + "/OthelloOnline/GamePage?game=" + gameId;
+	
+	
+	// Hints that weren't ready last time may be now.
+	if (document.getElementById("hintsPending") != null)
+	{
+		window.location.href = gamePage;
+		return;
+	}
 	
 	
 	var xhttp = new XMLHttpRequest();
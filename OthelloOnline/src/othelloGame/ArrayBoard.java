@@ -0,0 +1,431 @@
+package othelloGame;
+
+import othelloGame.Piece;
+import othelloGameExceptions.OccupiedCellException;
+
+
+/**
+ * A board that stores its pieces in an 8x8 array of Piece
+ * objects.
+ * 
+ * @author ubuntu
+ *
+ */
+public class ArrayBoard implements Board
+{
+	// The board
+	Piece[][] board;
+	
+	// A read-only view of the board (see getView)
+	private final BoardView view = new ReadOnlyBoard(this);
+
+	/**
+	 * Creates a board with the initial pieces in the center.
+	 */
+	public ArrayBoard()
+	{
+		board = new Piece[8][8];
+		
+		board[3][3] = Piece.WHITE_PIECE;
+		board[3][4] = Piece.BLACK_PIECE;
+		
+		board[4][3] = Piece.BLACK_PIECE;
+		board[4][4] = Piece.WHITE_PIECE;
+	}
+	
+	/**
+	 * Removes all pieces from the board (suggestion & real).
+	 */
+	public void clearAll()
+	{
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+				board[r][c] = null;
+		}
+	}
+	
+	/**
+	 * Removes all suggestion pieces from the board.
+	 */
+	public void clearSuggestions()
+	{
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+			{
+				if (board[r][c] != null && !board[r][c].isPiece())
+					board[r][c] = null;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Flips the piece located at cell (row,col). Does
+	 * nothing if there is no piece (suggestion or real)
+	 * at that cell. Throws an exception if the cell is
+	 * off the board.
+	 * 
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @throws IndexOutOfBoundsException If the cell is off
+	 * the board.
+	 */
+	public void flipPiece(int row, int col) throws IndexOutOfBoundsException
+	{
+		try {
+			checkBounds(row, col);
+			
+			if (board[row][col] != null)
+				board[row][col] = board[row][col].flipped();
+		}
+		
+		catch (IndexOutOfBoundsException e) {
+			throw e;
+		}
+	}
+	
+	
+	/**
+	 * Makes the piece located at cell (row, col) a piece
+	 * (as opposed to a suggestion). Does nothing if the cell
+	 * is empty or already contains a piece. Throws an exception
+	 * if the cell is off the board.
+	 * 
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @throws IndexOutOfBoundsException If the cell is off the board.
+	 */
+	public void makePiece(int row, int col) throws IndexOutOfBoundsException
+	{
+		try {
+			checkBounds(row, col);
+			
+			if (board[row][col] != null)
+				board[row][col] = board[row][col].asPiece();
+		}
+		
+		catch (IndexOutOfBoundsException e) {
+			throw e;
+		}
+	}
+	
+	
+	/**
+	 * Returns a copy of the array that represents this board.
+	 * Useful for when you want the board, but don't wanna
+	 * fuck with it.
+	 * 
+	 * @return A copy of the array that represents this board.
+	 */
+	public Piece[][] getArray()
+	{
+		Piece[][] boardCopy = new Piece[8][8];
+		
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+				boardCopy[r][c] = board[r][c];
+		}
+			
+		return boardCopy;
+	}
+	
+	
+	/**
+	 * Places the given piece at the given row-column cell on this board.
+	 * 
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @param piece The piece (could be a piece or suggestion).
+	 * @throws IndexOutOfBoundsException Thrown when a cell outside this
+	 * board is given.
+	 * @throws OccupiedCellException Thrown when you are trying to put any
+	 * piece in a cell with a normal piece.
+	 */
+	public void setPiece(int row, int col, Piece piece) 
+			throws IndexOutOfBoundsException, OccupiedCellException
+	{
+		try {
+			checkBounds(row, col);
+			if (board[row][col] == null)
+				board[row][col] = piece;
+			
+			else if (board[row][col].isPiece())
+				throw new OccupiedCellException("There is a piece on that cell. If you wanna change the "
+						+ "piece's color, flip it instead.");
+			
+			else
+				board[row][col] = piece;
+		}
+		
+		catch (IndexOutOfBoundsException e1) {
+			throw e1;
+		}
+		
+		catch (OccupiedCellException e2) {
+			throw e2;
+		}
+	}
+	
+	
+	/**
+	 * Returns the piece located at cell row-col.
+	 * Throws an exception if a cell off the board is specified.
+	 * Returns null if there is no piece.
+	 * 
+	 * @param row The piece's row.
+	 * @param col The piece's col.
+	 * @return The piece (pieces can't be changed, so no one can mess with it).
+	 * @throws IndexOutOfBoundsException Thrown when a cell outside this
+	 * board is given. 
+	 */
+	public Piece getPiece(int row, int col) throws IndexOutOfBoundsException
+	{
+		try {
+			checkBounds(row, col);
+			return board[row][col];
+		}
+		
+		catch (IndexOutOfBoundsException e) {
+			throw e;
+		}
+	}
+	
+	
+	/**
+	 * Checks that the given row-col cell is on the board. If not, throws an
+	 * IndexOutOfBoundsException.
+	 * 
+	 * @param row The cell's row.
+	 * @param col The cell's col.
+	 * @throws IndexOutOfBoundsException Thrown when a cell outside this
+	 * board is given.
+	 */
+	private void checkBounds(int row, int col) throws IndexOutOfBoundsException
+	{
+		if (row >= board.length || row < 0)
+			throw new IndexOutOfBoundsException("Row out of bounds.");
+		
+		else if (col >= board[0].length || col < 0)
+			throw new IndexOutOfBoundsException("Column out of bounds.");
+		
+		return;
+	}
+	
+	
+	/**
+	 * Returns true if the given row-col cell is on the board
+	 * & false if otherwise.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return True if the cell is on the board, false if 
+	 * otherwise.
+	 */
+	public boolean cellInBounds(int row, int col)
+	{
+		try {
+			checkBounds(row, col);
+			return true;
+		}
+		
+		catch (IndexOutOfBoundsException e) {
+			return false;
+		}
+	}
+	
+	
+	/**
+	 * Returns true if the given row is within the 
+	 * bounds of this board, false if not.
+	 * 
+	 * @param row The row.
+	 * @return True if the given row is within the 
+	 * bounds of this board, false if not.
+	 */
+	public boolean rowInBounds(int row)
+	{
+		return (row >= 0 && row < board.length);
+	}
+	
+	/**
+	 * Returns true if the given column is within the 
+	 * bounds of this board, false if not.
+	 * 
+	 * @param column The row.
+	 * @return True if the given row is within the 
+	 * bounds of this board, false if not.
+	 */
+	public boolean columnInBounds(int column)
+	{
+		return (column >= 0 && column < board[0].length);
+	}
+
+	
+	/**
+	 * Returns the number of rows on this board.
+	 * @return The number of rows on this board.
+	 */
+	public int getNumRows()
+	{
+		return board.length;
+	}
+	
+	
+	/**
+	 * Returns the number of columns on this board.
+	 * @return The number of columns on this board.
+	 */
+	public int getNumCols()
+	{
+		return board[0].length;
+	}
+	
+	
+	/**
+	 * Returns the number of suggestion pieces of
+	 * the provided color on this board.
+	 * @return
+	 */
+	public int getNumSuggestions(Color color)
+	{
+		Piece piece;
+		int sum = 0;
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+			{
+				piece = board[r][c];
+				if (piece != null && piece.getColor() == color 
+						&& !piece.isPiece())
+					sum++;
+			}
+		}
+		
+		return sum;
+	}
+	
+	
+	/**
+	 * Returns a mask of the cells holding pieces (NOT suggestions)
+	 * of the provided color. Cell (row, col) is bit (row * 8 + col).
+	 * 
+	 * @param color The pieces' color.
+	 * @return A mask of the cells holding pieces of the provided
+	 * color.
+	 */
+	public long getPieceMask(Color color)
+	{
+		Piece piece;
+		long mask = 0L;
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+			{
+				piece = board[r][c];
+				if (piece != null && piece.getColor() == color 
+						&& piece.isPiece())
+					mask |= BitBoard.cellMask(r, c);
+			}
+		}
+		
+		return mask;
+	}
+	
+	
+	/**
+	 * Replaces every piece on the board (& removes the suggestions)
+	 * with the pieces in the masks, one cell at a time.
+	 * 
+	 * @param black Mask of the black pieces.
+	 * @param white Mask of the white pieces.
+	 */
+	public void setPieces(long black, long white)
+	{
+		clearAll();
+		
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+			{
+				if ((black & BitBoard.cellMask(r, c)) != 0)
+					board[r][c] = Piece.BLACK_PIECE;
+				
+				else if ((white & BitBoard.cellMask(r, c)) != 0)
+					board[r][c] = Piece.WHITE_PIECE;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Puts a piece of the given color on cell (row, col), replacing
+	 * any suggestion there, & flips every piece in the flip mask to
+	 * that color.
+	 * 
+	 * @param color The color of the piece being placed.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @param flips Mask of the opponent pieces to flip (see
+	 * GameLogic.getFlips).
+	 * @throws IndexOutOfBoundsException Thrown when a cell outside this
+	 * board is given.
+	 */
+	public void applyMove(Color color, int row, int col, long flips)
+			throws IndexOutOfBoundsException
+	{
+		checkBounds(row, col);
+		board[row][col] = Piece.valueOf(color, true);
+		
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+			{
+				if ((flips & BitBoard.cellMask(r, c)) != 0 && board[r][c] != null)
+					board[r][c] = Piece.valueOf(color, true);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns a read-only view of this board. The view does not
+	 * copy the board, so it shows every later change to it.
+	 * 
+	 * @return A read-only view of this board.
+	 */
+	public BoardView getView()
+	{
+		return view;
+	}
+	
+	
+	/**
+	 * Undoes applyMove: removes the piece of the given color from
+	 * cell (row, col) & flips every piece in the flip mask back to
+	 * the other color.
+	 * 
+	 * @param color The color of the piece that was placed.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @param flips Mask of the pieces the move flipped.
+	 * @throws IndexOutOfBoundsException Thrown when a cell outside this
+	 * board is given.
+	 */
+	public void undoMove(Color color, int row, int col, long flips)
+			throws IndexOutOfBoundsException
+	{
+		checkBounds(row, col);
+		board[row][col] = null;
+		
+		for (int r = 0; r < board.length; r++)
+		{
+			for (int c = 0; c < board[0].length; c++)
+			{
+				if ((flips & BitBoard.cellMask(r, c)) != 0 && board[r][c] != null)
+					board[r][c] = board[r][c].flipped();
+			}
+		}
+	}
+}
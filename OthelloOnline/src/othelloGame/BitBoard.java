@@ -0,0 +1,323 @@
+package othelloGame;
+
+import othelloGameExceptions.OccupiedCellException;
+
+
+/**
+ * A board that stores its pieces as bitboards: one 64-bit
+ * mask for the black pieces, one for the white pieces & one
+ * for the suggestions. Cell (row, col) is bit (row * 8 + col)
+ * of each mask.
+ *
+ * All suggestions on a BitBoard share a single color (they are
+ * always the current player's), so placing or flipping a
+ * suggestion of the other color changes the color of every
+ * suggestion on the board.
+ *
+ * The Piece-based methods (getPiece, getArray, ...) are an
+ * adapter view over the masks.
+ *
+ * @author ubuntu
+ *
+ */
+public class BitBoard implements Board
+{
+	// The number of rows & columns on the board
+	static public final int SIZE = 8;
+
+	// The black & white pieces
+	long blackPieces;
+	long whitePieces;
+
+	// The suggestion pieces & their color
+	long suggestions;
+	Color suggestionColor;
+
+	// A read-only view of the board (see getView)
+	private final BoardView view = new ReadOnlyBoard(this);
+
+
+	/**
+	 * Creates a board with the initial pieces in the center.
+	 */
+	public BitBoard()
+	{
+		whitePieces = cellMask(3, 3) | cellMask(4, 4);
+		blackPieces = cellMask(3, 4) | cellMask(4, 3);
+
+		suggestions = 0L;
+		suggestionColor = Color.BLACK;
+	}
+
+
+	/**
+	 * Returns the mask with only the bit for cell (row, col) set.
+	 * Does not check that the cell is on the board.
+	 *
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return The mask for cell (row, col).
+	 */
+	static public long cellMask(int row, int col)
+	{
+		return 1L << (row * SIZE + col);
+	}
+
+
+	@Override
+	public void clearAll()
+	{
+		blackPieces = 0L;
+		whitePieces = 0L;
+		suggestions = 0L;
+	}
+
+
+	@Override
+	public void clearSuggestions()
+	{
+		suggestions = 0L;
+	}
+
+
+	@Override
+	public void setPieces(long black, long white)
+	{
+		blackPieces = black;
+		whitePieces = white;
+		suggestions = 0L;
+	}
+
+
+	@Override
+	public void flipPiece(int row, int col) throws IndexOutOfBoundsException
+	{
+		checkBounds(row, col);
+
+		long cell = cellMask(row, col);
+
+		if (((blackPieces | whitePieces) & cell) != 0)
+		{
+			blackPieces ^= cell;
+			whitePieces ^= cell;
+		}
+
+		else if ((suggestions & cell) != 0)
+			suggestionColor = (suggestionColor == Color.BLACK)
+					? Color.WHITE : Color.BLACK;
+	}
+
+
+	@Override
+	public void makePiece(int row, int col) throws IndexOutOfBoundsException
+	{
+		checkBounds(row, col);
+
+		long cell = cellMask(row, col);
+
+		if ((suggestions & cell) == 0)
+			return;
+
+		suggestions &= ~cell;
+
+		if (suggestionColor == Color.BLACK)
+			blackPieces |= cell;
+
+		else
+			whitePieces |= cell;
+	}
+
+
+	@Override
+	public Piece[][] getArray()
+	{
+		Piece[][] boardCopy = new Piece[SIZE][SIZE];
+
+		for (int r = 0; r < SIZE; r++)
+		{
+			for (int c = 0; c < SIZE; c++)
+				boardCopy[r][c] = getPiece(r, c);
+		}
+
+		return boardCopy;
+	}
+
+
+	@Override
+	public void setPiece(int row, int col, Piece piece)
+			throws IndexOutOfBoundsException, OccupiedCellException
+	{
+		checkBounds(row, col);
+
+		long cell = cellMask(row, col);
+
+		if (((blackPieces | whitePieces) & cell) != 0)
+			throw new OccupiedCellException("There is a piece on that cell. If you wanna change the "
+					+ "piece's color, flip it instead.");
+
+		suggestions &= ~cell;
+
+		if (piece == null)
+			return;
+
+		if (!piece.isPiece())
+		{
+			suggestions |= cell;
+			suggestionColor = piece.getColor();
+		}
+
+		else if (piece.getColor() == Color.BLACK)
+			blackPieces |= cell;
+
+		else
+			whitePieces |= cell;
+	}
+
+
+	@Override
+	public Piece getPiece(int row, int col) throws IndexOutOfBoundsException
+	{
+		checkBounds(row, col);
+
+		long cell = cellMask(row, col);
+
+		if ((blackPieces & cell) != 0)
+			return Piece.BLACK_PIECE;
+
+		if ((whitePieces & cell) != 0)
+			return Piece.WHITE_PIECE;
+
+		if ((suggestions & cell) != 0)
+			return Piece.valueOf(suggestionColor, false);
+
+		return null;
+	}
+
+
+	/**
+	 * Checks that the given row-col cell is on the board. If not, throws an
+	 * IndexOutOfBoundsException.
+	 *
+	 * @param row The cell's row.
+	 * @param col The cell's col.
+	 * @throws IndexOutOfBoundsException Thrown when a cell outside this
+	 * board is given.
+	 */
+	private void checkBounds(int row, int col) throws IndexOutOfBoundsException
+	{
+		if (!rowInBounds(row))
+			throw new IndexOutOfBoundsException("Row out of bounds.");
+
+		else if (!columnInBounds(col))
+			throw new IndexOutOfBoundsException("Column out of bounds.");
+	}
+
+
+	@Override
+	public boolean cellInBounds(int row, int col)
+	{
+		return rowInBounds(row) && columnInBounds(col);
+	}
+
+
+	@Override
+	public boolean rowInBounds(int row)
+	{
+		return (row >= 0 && row < SIZE);
+	}
+
+
+	@Override
+	public boolean columnInBounds(int column)
+	{
+		return (column >= 0 && column < SIZE);
+	}
+
+
+	@Override
+	public int getNumRows()
+	{
+		return SIZE;
+	}
+
+
+	@Override
+	public int getNumCols()
+	{
+		return SIZE;
+	}
+
+
+	@Override
+	public int getNumSuggestions(Color color)
+	{
+		return (color == suggestionColor) ? Long.bitCount(suggestions) : 0;
+	}
+
+
+	@Override
+	public long getPieceMask(Color color)
+	{
+		return (color == Color.BLACK) ? blackPieces : whitePieces;
+	}
+
+
+	/**
+	 * Applies the move with two XORs. The cell must not hold a piece
+	 * & the flip mask must only contain the opponent's pieces.
+	 */
+	@Override
+	public void applyMove(Color color, int row, int col, long flips)
+			throws IndexOutOfBoundsException
+	{
+		checkBounds(row, col);
+
+		long cell = cellMask(row, col);
+
+		suggestions &= ~cell;
+
+		if (color == Color.BLACK)
+		{
+			blackPieces ^= cell | flips;
+			whitePieces ^= flips;
+		}
+
+		else
+		{
+			whitePieces ^= cell | flips;
+			blackPieces ^= flips;
+		}
+	}
+
+
+	@Override
+	public BoardView getView()
+	{
+		return view;
+	}
+
+
+	/**
+	 * Undoes the move with the same two XORs that applied it.
+	 */
+	@Override
+	public void undoMove(Color color, int row, int col, long flips)
+			throws IndexOutOfBoundsException
+	{
+		checkBounds(row, col);
+
+		long cell = cellMask(row, col);
+
+		if (color == Color.BLACK)
+		{
+			blackPieces ^= cell | flips;
+			whitePieces ^= flips;
+		}
+
+		else
+		{
+			whitePieces ^= cell | flips;
+			blackPieces ^= flips;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package othelloGame;
+
+
+/**
+ * A read-only view of an 8x8 Othello board. Each cell is either
+ * empty, holds a piece, or holds a suggestion (a place the current
+ * player can put a piece).
+ *
+ * Board.getView returns one of these backed by the board itself, so
+ * reading through it copies nothing. Pieces are immutable, so the
+ * ones it returns can be shared freely.
+ *
+ * @author ubuntu
+ *
+ */
+public interface BoardView
+{
+	/**
+	 * Returns the piece located at cell row-col.
+	 * Throws an exception if a cell off the board is specified.
+	 * Returns null if there is no piece.
+	 *
+	 * @param row The piece's row.
+	 * @param col The piece's col.
+	 * @return The piece at cell row-col, or null.
+	 * @throws IndexOutOfBoundsException Thrown when a cell outside this
+	 * board is given.
+	 */
+	public Piece getPiece(int row, int col) throws IndexOutOfBoundsException;
+
+
+	/**
+	 * Returns true if the given row-col cell is on the board
+	 * & false if otherwise.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return True if the cell is on the board, false if
+	 * otherwise.
+	 */
+	public boolean cellInBounds(int row, int col);
+
+
+	/**
+	 * Returns true if the given row is within the
+	 * bounds of this board, false if not.
+	 *
+	 * @param row The row.
+	 * @return True if the given row is within the
+	 * bounds of this board, false if not.
+	 */
+	public boolean rowInBounds(int row);
+
+
+	/**
+	 * Returns true if the given column is within the
+	 * bounds of this board, false if not.
+	 *
+	 * @param column The column.
+	 * @return True if the given column is within the
+	 * bounds of this board, false if not.
+	 */
+	public boolean columnInBounds(int column);
+
+
+	/**
+	 * Returns the number of rows on this board.
+	 * @return The number of rows on this board.
+	 */
+	public int getNumRows();
+
+
+	/**
+	 * Returns the number of columns on this board.
+	 * @return The number of columns on this board.
+	 */
+	public int getNumCols();
+
+
+	/**
+	 * Returns the number of suggestion pieces of
+	 * the provided color on this board.
+	 *
+	 * @param color The suggestions' color.
+	 * @return The number of suggestion pieces of the
+	 * provided color.
+	 */
+	public int getNumSuggestions(Color color);
+
+
+	/**
+	 * Returns a mask of the cells holding pieces (NOT suggestions)
+	 * of the provided color. Cell (row, col) is bit (row * 8 + col).
+	 *
+	 * @param color The pieces' color.
+	 * @return A mask of the cells holding pieces of the provided
+	 * color.
+	 */
+	public long getPieceMask(Color color);
+}
@@ -0,0 +1,95 @@
+package othelloGame;
+
+
+/**
+ * A position's canonical form (see Symmetry): the smallest Zobrist
+ * hash of its 8 rotations & reflections, & the transform that gives
+ * it. Stores keyed by the canonical hash keep moves in the canonical
+ * orientation; toCanonical & fromCanonical map moves between that &
+ * the actual position. Immutable.
+ *
+ * @author ubuntu
+ *
+ */
+final public class CanonicalPosition
+{
+	// The canonical form's hash
+	private final long hash;
+
+	// The transform from the position to its canonical form
+	private final int transform;
+
+
+	/**
+	 * Finds the canonical form of a position.
+	 *
+	 * @param black Mask of the black pieces.
+	 * @param white Mask of the white pieces.
+	 * @param toMove The color of the player to move.
+	 */
+	public CanonicalPosition(long black, long white, Color toMove)
+	{
+		transform = Symmetry.getCanonicalTransform(black, white, toMove);
+		hash = Zobrist.hash(Symmetry.transform(transform, black),
+				Symmetry.transform(transform, white), toMove);
+	}
+
+
+	/**
+	 * Finds the canonical form of a game's current position.
+	 *
+	 * @param game The game.
+	 */
+	public CanonicalPosition(Othello game)
+	{
+		this(game.getBoard().getPieceMask(Color.BLACK),
+				game.getBoard().getPieceMask(Color.WHITE), game.getCurrentPlayer());
+	}
+
+
+	/**
+	 * Returns the canonical form's Zobrist hash (the same for all 8
+	 * equivalent positions).
+	 * @return The canonical hash.
+	 */
+	public long getHash()
+	{
+		return hash;
+	}
+
+
+	/**
+	 * Returns the transform from the position to its canonical form.
+	 * @return The transform (see Symmetry).
+	 */
+	public int getTransform()
+	{
+		return transform;
+	}
+
+
+	/**
+	 * Turns a cell of the position into the same cell of the canonical
+	 * form.
+	 *
+	 * @param cell The cell (row * 8 + col).
+	 * @return The canonical form's cell.
+	 */
+	public int toCanonical(int cell)
+	{
+		return Symmetry.transformCell(transform, cell);
+	}
+
+
+	/**
+	 * Turns a cell of the canonical form back into the same cell of
+	 * the position.
+	 *
+	 * @param cell The canonical form's cell (row * 8 + col).
+	 * @return The position's cell.
+	 */
+	public int fromCanonical(int cell)
+	{
+		return Symmetry.transformCell(Symmetry.inverse(transform), cell);
+	}
+}
@@ -63,12 +63,29 @@ final public class GUI
 	 * @param out Standard output
 	 * @param board The board to be represented.
 	 */
-	static public void displayBoard(PrintStream out, Board board)
+	static public void displayBoard(PrintStream out, BoardView board)
 	{
-		Piece[][] boardArray = board.getArray();
+		displayBoard(out, board, 0L, Color.BLACK);
+	}
+	
+	
+	/**
+	 * Outputs the board to stdout in a human-readable format, along 
+	 * with the suggestions from the provided mask.
+	 * 
+	 * @param out Standard output
+	 * @param board The board to be represented.
+	 * @param suggestions Mask of the suggestions (cell (row, col)
+	 * is bit row * 8 + col).
+	 * @param suggestionColor The suggestions' color.
+	 */
+	static public void displayBoard(PrintStream out, BoardView board, long suggestions,
+			Color suggestionColor)
+	{
+		Piece piece;
 		
 		out.print("     ");
-		for (int c = 0; c < boardArray.length; c++)
+		for (int c = 0; c < board.getNumCols(); c++)
 		{
 			if (c != 0)
 				out.print("    ");
@@ -78,19 +95,24 @@ final public class GUI
 		
 		out.println();
 		
-		for (int r = 0; r < boardArray.length; r++)
+		for (int r = 0; r < board.getNumRows(); r++)
 		{
 			out.print(r);
 			out.print("  ||");
-			for (int c = 0; c < boardArray[0].length; c++)
+			for (int c = 0; c < board.getNumCols(); c++)
 			{
-				out.print(pieceToString(boardArray[r][c]));
+				piece = board.getPiece(r, c);
+				
+				if (piece == null && (suggestions & BitBoard.cellMask(r, c)) != 0)
+					piece = Piece.valueOf(suggestionColor, false);
+				
+				out.print(pieceToString(piece));
 				out.print(" || ");
 			}
 				
 			out.println();
 			
-			if (r != (boardArray.length - 1))
+			if (r != (board.getNumRows() - 1))
 				out.println("   =========================================");
 		}
 	}
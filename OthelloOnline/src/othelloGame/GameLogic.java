@@ -17,9 +17,156 @@ final public class GameLogic
 	 */
 	private GameLogic() {}
 	
+	
+	// Masks of every cell except the ones in the first (left) & last
+	// (right) columns.
+	static private final long NOT_FIRST_COL = 0xFEFEFEFEFEFEFEFEL;
+	static private final long NOT_LAST_COL = 0x7F7F7F7F7F7F7F7FL;
+	
+	// How far the bits of a mask move for one step in each of the 8
+	// directions (right, left, down, up, down-right, down-left, up-right
+	// & up-left). Positive values shift left; negative values shift right.
+	static private final int[] SHIFTS = {1, -1, 8, -8, 9, 7, -7, -9};
+	
+	// The cells a step in each direction can land on. Keeps pieces in
+	// the last column from wrapping around to the first (& vice versa).
+	static private final long[] SHIFT_MASKS = {NOT_FIRST_COL, NOT_LAST_COL, -1L, -1L,
+			NOT_FIRST_COL, NOT_LAST_COL, NOT_FIRST_COL, NOT_LAST_COL};
+	
+	
+	/**
+	 * Returns a mask of every cell the given player can put a piece on.
+	 * Cell (row, col) is bit (row * 8 + col).
+	 * 
+	 * For each of the 8 directions, a Kogge-Stone (parallel prefix)
+	 * flood fill extends the player's pieces over the runs of opponent
+	 * pieces next to them in 3 shift-and-mask steps. The empty cells one
+	 * step past the end of those runs are valid moves.
+	 * 
+	 * @param player Mask of the player's pieces.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return Mask of the cells the player can put a piece on.
+	 */
+	static public long getValidMoves(long player, long opponent)
+	{
+		long empty = ~(player | opponent);
+		long moves = 0L;
+		
+		for (int dir = 0; dir < SHIFTS.length; dir++)
+		{
+			int step = SHIFTS[dir];
+			long open = opponent & SHIFT_MASKS[dir];
+			
+			long flood = player;
+			flood |= open & shift(flood, step);
+			open &= shift(open, step);
+			flood |= open & shift(flood, 2 * step);
+			open &= shift(open, 2 * step);
+			flood |= open & shift(flood, 4 * step);
+			
+			// The opponent pieces reached from the player's pieces,
+			// moved one more step.
+			moves |= shift(flood & opponent, step) & SHIFT_MASKS[dir];
+		}
+		
+		return moves & empty;
+	}
+	
+	
+	/**
+	 * Returns a mask of every cell the given color can put a piece on
+	 * the provided board.
+	 * 
+	 * @param board The game board.
+	 * @param playerColor The player's color.
+	 * @return Mask of the cells the player can put a piece on.
+	 */
+	static public long getValidMoves(BoardView board, Color playerColor)
+	{
+		return getValidMoves(board.getPieceMask(playerColor), 
+				board.getPieceMask(flipColor(playerColor)));
+	}
+	
+	
+	/**
+	 * Returns a mask of the opponent pieces that flip when the player
+	 * puts a piece on the given cell. The mask is empty if the move
+	 * flips nothing (i.e. it isn't a valid move). Allocates nothing.
+	 * 
+	 * @param player Mask of the player's pieces.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param cell The cell's bit index (row * 8 + col).
+	 * @return Mask of the pieces that flip.
+	 */
+	static public long getFlips(long player, long opponent, int cell)
+	{
+		long move = 1L << cell;
+		long flips = 0L;
+		
+		for (int dir = 0; dir < SHIFTS.length; dir++)
+		{
+			int step = SHIFTS[dir];
+			long mask = SHIFT_MASKS[dir];
+			
+			// Walk over the run of opponent pieces next to the cell. It
+			// flips if it ends in one of the player's pieces.
+			long line = 0L;
+			long next = shift(move, step) & mask;
+			
+			while ((next & opponent) != 0)
+			{
+				line |= next;
+				next = shift(next, step) & mask;
+			}
+			
+			if ((next & player) != 0)
+				flips |= line;
+		}
+		
+		return flips;
+	}
+	
+	
+	/**
+	 * Shifts the bits of the mask left (positive amount) or right
+	 * (negative amount).
+	 * 
+	 * @param mask The mask.
+	 * @param amount How far to shift.
+	 * @return The shifted mask.
+	 */
+	static private long shift(long mask, int amount)
+	{
+		return (amount > 0) ? (mask << amount) : (mask >>> -amount);
+	}
+	
+	
+	/**
+	 * Determines if the given color suggestion can be placed at the given row-column
+	 * cell. Suggestion pieces count as empty cells.
+	 * 
+	 * @param board The game board.
+	 * @param row The cell row.
+	 * @param col The cell column.
+	 * @param playerColor The piece color.
+	 * @return True if the given color piece can be placed, false if otherwise.
+	 * @throws IndexOutOfBoundsException Thrown if the given cell
+	 * is not on the board.
+	 */
+	static public boolean isValidSuggestion(BoardView board, Color playerColor, int row, int col)
+			throws IndexOutOfBoundsException
+	{
+		if (!board.cellInBounds(row, col))
+			throw new IndexOutOfBoundsException("Cell out of bounds.");
+		
+		return (getValidMoves(board, playerColor) & BitBoard.cellMask(row, col)) != 0;
+	}
+	
+	
 	/**
 	 * Determines if the given color suggestion can be placed at the given row-column
-	 * cell.
+	 * cell by walking the lines out of that cell one piece at a time. Much slower
+	 * than isValidSuggestion; kept to check the mask based move generator against.
 	 * 
 	 * @param board The game board.
 	 * @param row The cell row.
@@ -27,7 +174,7 @@ final public class GameLogic
 	 * @param playerColor The piece color.
 	 * @return True if the given color piece can be placed, false if otherwise.
 	 */
-	static public boolean isValidSuggestion(Board board, Color playerColor, int row, int col)
+	static public boolean isValidSuggestionByScan(BoardView board, Color playerColor, int row, int col)
 	{
 		// First, the cell must be empty. If not, return
 		// false.
@@ -110,7 +257,7 @@ final public class GameLogic
 	 * @return nextTo, but cells that do not lead to a valid line are 
 	 * false.
 	 */
-	static public boolean[][] getNextToValidLines(Board board, boolean[][] nextTo, 
+	static public boolean[][] getNextToValidLines(BoardView board, boolean[][] nextTo, 
 			Color playerColor, int row, int col)
 	{
 		/*int nextRow, nextCol;
@@ -178,7 +325,7 @@ final public class GameLogic
 	 * boolean table cells represent whether there is the
 	 * given color next to the center (T) or not (F).
 	 */
-	static public boolean[][] getNextTo(Board board, Color color, int row, int col)
+	static public boolean[][] getNextTo(BoardView board, Color color, int row, int col)
 	{	
 		boolean[][] result = new boolean[3][3];
 		int newRow, newCol;
@@ -223,7 +370,7 @@ final public class GameLogic
 	 * @param nextCol The column of the boolean cell from getNextTo.
 	 * @return True if it's a valid straight path, false if otherwise.
 	 */
-	static public boolean isValidLine(Board board, Color playerColor, int centerRow, 
+	static public boolean isValidLine(BoardView board, Color playerColor, int centerRow, 
 			int centerCol, int nextToRow, int nextToCol) throws IllegalArgumentException
 	{
 		// From the center cell & next cell, we determine the direction
@@ -264,7 +411,7 @@ final public class GameLogic
 	 * cell (centerRow, centerCol) in the direction specified by 
 	 * rowChange & colChange.
 	 */
-	static private boolean isValidLineHelper(Board board, Color centerColor, 
+	static private boolean isValidLineHelper(BoardView board, Color centerColor, 
 			int centerRow, int centerCol, int rowChange, int colChange)
 	{
 		int nextRow = centerRow + rowChange;
@@ -309,11 +456,11 @@ final public class GameLogic
 	 * @Throws IndexOutOfBoundsException Thrown if the given cell
 	 * is not on the board.
 	 */
-	static public boolean isValidMove(Board board, Color currentPlayer, 
+	static public boolean isValidMove(BoardView board, Color currentPlayer, 
 			int row, int col) throws IndexOutOfBoundsException
 	{
 		try {
-			Piece expected = new Piece(currentPlayer, false);
+			Piece expected = Piece.valueOf(currentPlayer, false);
 			Piece actual = board.getPiece(row, col);
 			return (expected.equals(actual));
 		}
@@ -2,6 +2,8 @@ package othelloGame;
 
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
 
 import othelloGame.Board;
@@ -22,13 +24,56 @@ public class Othello {
 	// Keeps track of the current player's turn
 	// (black = player1; white = player2).
 	Color currentPlayer;
+	
+	// The cells the current player can put a piece on (cell
+	// (row, col) is bit row * 8 + col) & how many there are.
+	// Recomputed once per move; the board itself only holds
+	// the real pieces.
+	long suggestions;
+	int numSuggestions;
+	
+	// The color the computer plays, or null if both
+	// players are human.
+	Color computerPlayer;
+	
+	// The Zobrist hash of the position (the pieces & whose
+	// turn it is). Updated by every move.
+	long hash;
+	
+	// The most moves an undo stack can hold (a move always fills
+	// an empty cell, so a game never has more).
+	static private final int MAX_MOVES = 64;
+	
+	// The undo stack. Entry i holds the pieces flipped by the i-th 
+	// move made with makeMove, the cell it was made on, & the player,
+	// scores & suggestions from right before it. Preallocated so
+	// making & unmaking moves allocates nothing.
+	private final long[] undoFlips = new long[MAX_MOVES];
+	private final byte[] undoCells = new byte[MAX_MOVES];
+	private final Color[] undoPlayers = new Color[MAX_MOVES];
+	private final byte[] undoPlayer1Scores = new byte[MAX_MOVES];
+	private final byte[] undoPlayer2Scores = new byte[MAX_MOVES];
+	private final long[] undoSuggestions = new long[MAX_MOVES];
+	private int undoSize;
+	
+	// The binary save record (see saveGame(ByteBuffer)): its first
+	// four bytes ("OSAV"), format version & size in bytes
+	static public final int SAVE_MAGIC = 0x4F534156;
+	static public final int SAVE_VERSION = 1;
+	static public final int SAVE_BYTES = 36;
+	
+	// Bits of the binary save's flags byte
+	static private final int FINISHED_FLAG = 1;
+	static private final int WHITE_TO_MOVE_FLAG = 2;
+	static private final int COMPUTER_BLACK_FLAG = 4;
+	static private final int COMPUTER_WHITE_FLAG = 8;
 
 	/**
-	 * Creates the Othello game (w/o suggestions).
+	 * Creates the Othello game.
 	 */
 	public Othello()
 	{
-		board = new Board();
+		board = new BitBoard();
 		
 		player1Score = 2;
 		player2Score = 2;
@@ -36,6 +81,8 @@ public class Othello {
 		turnNumber = 0;
 		
 		currentPlayer = Color.BLACK;
+		updateSuggestions();
+		updateHash();
 	}
 	
 	
@@ -62,12 +109,60 @@ public class Othello {
 				? "BLACK" : "WHITE";
 		outfile.printf("currentPlayer:%s\n", currentPlayerStr);
 		
+		String computerPlayerStr = (computerPlayer == null) ? "NONE"
+				: (computerPlayer == Color.BLACK) ? "BLACK" : "WHITE";
+		outfile.printf("computerPlayer:%s\n", computerPlayerStr);
+		
 		outfile.print("board:\n");
 		
 		saveBoard(outfile);
 	}
 	
 	
+	/**
+	 * Saves the current state of this Othello game as a fixed-size
+	 * binary record of SAVE_BYTES bytes, starting at the buffer's
+	 * position (which moves past it). Much faster than the text save
+	 * & allocates nothing. The record (big-endian, byte offsets):
+	 * 
+	 *   0  magic number (SAVE_MAGIC)   4 bytes
+	 *   4  format version (1)          1 byte
+	 *   5  flags: finished (1), white  1 byte
+	 *      to move (2), computer plays
+	 *      black (4) or white (8)
+	 *   6  player 1 (black) score      1 byte
+	 *   7  player 2 (white) score      1 byte
+	 *   8  turn number                 4 bytes
+	 *  12  black pieces mask           8 bytes
+	 *  20  white pieces mask           8 bytes
+	 *  28  suggestions mask            8 bytes
+	 * 
+	 * Cell (row, col) is bit (row * 8 + col) of each mask.
+	 * 
+	 * @param buffer Where to write the record. Needs at least
+	 * SAVE_BYTES bytes left.
+	 * @throws java.nio.BufferOverflowException Thrown if the buffer
+	 * doesn't have room for the record.
+	 */
+	public void saveGame(ByteBuffer buffer)
+	{
+		int flags = (isFinished() ? FINISHED_FLAG : 0)
+				| ((currentPlayer == Color.WHITE) ? WHITE_TO_MOVE_FLAG : 0)
+				| ((computerPlayer == Color.BLACK) ? COMPUTER_BLACK_FLAG : 0)
+				| ((computerPlayer == Color.WHITE) ? COMPUTER_WHITE_FLAG : 0);
+		
+		buffer.putInt(SAVE_MAGIC);
+		buffer.put((byte) SAVE_VERSION);
+		buffer.put((byte) flags);
+		buffer.put((byte) player1Score);
+		buffer.put((byte) player2Score);
+		buffer.putInt(turnNumber);
+		buffer.putLong(board.getPieceMask(Color.BLACK));
+		buffer.putLong(board.getPieceMask(Color.WHITE));
+		buffer.putLong(suggestions);
+	}
+	
+	
 	/**
 	 * Used by the function saveGame to save the current state of the
 	 * game board.
@@ -84,7 +179,10 @@ public class Othello {
 			{
 				piece = board.getPiece(row, col);
 				
-				if (piece == null)
+				if (piece == null && isSuggestion(row, col))
+					outfile.print((currentPlayer == Color.BLACK) ? "b;" : "w;");
+				
+				else if (piece == null)
 					outfile.print("null;");
 				
 				else if (piece.getColor() == Color.BLACK)
@@ -150,6 +248,11 @@ public class Othello {
 					? Color.BLACK : Color.WHITE;
 				break;
 				
+			case "computerPlayer":
+				computerPlayer = (line[1].compareTo("NONE") == 0) ? null
+					: (line[1].compareTo("BLACK") == 0) ? Color.BLACK : Color.WHITE;
+				break;
+				
 			case "board":
 				loadBoard(infile);
 				break;
@@ -158,12 +261,88 @@ public class Othello {
 				break;			
 			}
 		}
+		
+		updateSuggestions();
+		updateHash();
+		undoSize = 0;
+	}
+	
+	
+	/**
+	 * Loads the Othello game state from a save in the buffer, starting
+	 * at the buffer's position (which moves past it): a binary record
+	 * (see saveGame(ByteBuffer)) or, for older saves, the text of a
+	 * text save (see saveGame(PrintWriter)). A finished text save
+	 * loads as a new game, as with loadGame(Scanner), but a binary
+	 * record loads as it was saved, finished or not (so a finished
+	 * game can still be shown). The record's finished flag &
+	 * suggestions are for readers that don't load the game; loading
+	 * works them out again.
+	 * 
+	 * @param buffer The save.
+	 * @throws IllegalArgumentException Thrown if the buffer holds a
+	 * binary record of another version or with overlapping pieces.
+	 * @throws java.nio.BufferUnderflowException Thrown if the binary
+	 * record is cut short.
+	 */
+	public void loadGame(ByteBuffer buffer) throws IllegalArgumentException
+	{
+		if (!isBinarySave(buffer))
+		{
+			byte[] text = new byte[buffer.remaining()];
+			buffer.get(text);
+			loadGame(new Scanner(new String(text, StandardCharsets.US_ASCII)));
+			return;
+		}
+		
+		buffer.getInt();
+		int version = buffer.get();
+		int flags = buffer.get();
+		int blackScore = buffer.get();
+		int whiteScore = buffer.get();
+		int turn = buffer.getInt();
+		long black = buffer.getLong();
+		long white = buffer.getLong();
+		buffer.getLong();
+		
+		if (version != SAVE_VERSION)
+			throw new IllegalArgumentException("Unknown save version: " + version);
+		
+		if ((black & white) != 0)
+			throw new IllegalArgumentException("The save has two pieces on one cell.");
+		
+		board.setPieces(black, white);
+		player1Score = blackScore;
+		player2Score = whiteScore;
+		turnNumber = turn;
+		currentPlayer = ((flags & WHITE_TO_MOVE_FLAG) != 0) ? Color.WHITE : Color.BLACK;
+		computerPlayer = ((flags & COMPUTER_BLACK_FLAG) != 0) ? Color.BLACK
+				: ((flags & COMPUTER_WHITE_FLAG) != 0) ? Color.WHITE : null;
+		
+		updateSuggestions();
+		updateHash();
+		undoSize = 0;
+	}
+	
+	
+	/**
+	 * Returns true if the buffer holds a binary save record at its
+	 * position (see saveGame(ByteBuffer)), false if not (a text save
+	 * starts with "finished:"). Doesn't move the buffer's position.
+	 * 
+	 * @param buffer The save.
+	 * @return True if the save is binary, false if not.
+	 */
+	static public boolean isBinarySave(ByteBuffer buffer)
+	{
+		return buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == SAVE_MAGIC;
 	}
 	
 	
 	/**
 	 * Used by loadGame. Takes the Scanner object starting at the first row of
 	 * the board in the save file & loads the entire board into this game instance.
+	 * Suggestion pieces in the save file are skipped; loadGame recomputes them.
 	 * 
 	 * @param infile The Scanner object starting at the first row of the board
 	 * in the save file.
@@ -182,19 +361,11 @@ public class Othello {
 				switch(nextRow[col]) {
 			
 				case "B":
-					board.setPiece(row, col, new Piece(Color.BLACK, true));
-					break;
-					
-				case "b":
-					board.setPiece(row, col, new Piece(Color.BLACK, false));
+					board.setPiece(row, col, Piece.BLACK_PIECE);
 					break;
 					
 				case "W":
-					board.setPiece(row, col, new Piece(Color.WHITE, true));
-					break;
-					
-				case "w":
-					board.setPiece(row, col, new Piece(Color.WHITE, false));
+					board.setPiece(row, col, Piece.WHITE_PIECE);
 					break;
 					
 				case "null":
@@ -215,7 +386,7 @@ public class Othello {
 	 */
 	public void createNewGame()
 	{
-		board = new Board();
+		board = new BitBoard();
 		
 		player1Score = 2;
 		player2Score = 2;
@@ -223,7 +394,9 @@ public class Othello {
 		turnNumber = 0;
 		
 		currentPlayer = Color.BLACK;
-		placeSuggestions();
+		updateSuggestions();
+		updateHash();
+		undoSize = 0;
 	}
 	
 	
@@ -232,21 +405,126 @@ public class Othello {
 	 * 
 	 * @param row The selected suggest piece's row.
 	 * @param col The selected suggest piece's column.
+	 * @throws IllegalArgumentException Thrown if the current player
+	 * can't put a piece on cell (row, col).
 	 */
-	public void playTurn(int row, int col)
+	public void playTurn(int row, int col) throws IllegalArgumentException
 	{	
 		makeMove(row, col);
+	}
+	
+	
+	/**
+	 * Makes the current player's move on cell (row, col) & passes
+	 * the turn to the other player. The move can be taken back with
+	 * unmakeMove. Allocates nothing.
+	 * 
+	 * @param row The selected suggest piece's row.
+	 * @param col The selected suggest piece's column.
+	 * @throws IllegalArgumentException Thrown if the current player
+	 * can't put a piece on cell (row, col).
+	 */
+	public void makeMove(int row, int col) throws IllegalArgumentException
+	{
+		if (!board.cellInBounds(row, col) || !isSuggestion(row, col))
+			throw new IllegalArgumentException("The current player can't put a piece on "
+					+ "that cell.");
+		
+		int cell = row * BitBoard.SIZE + col;
 		
-		board.clearSuggestions();
+		undoCells[undoSize] = (byte) cell;
+		undoPlayers[undoSize] = currentPlayer;
+		undoPlayer1Scores[undoSize] = (byte) player1Score;
+		undoPlayer2Scores[undoSize] = (byte) player2Score;
+		undoSuggestions[undoSize] = suggestions;
+		undoFlips[undoSize] = applyMove(row, col);
+		
+		hash = Zobrist.hashMove(hash, currentPlayer, cell, undoFlips[undoSize]);
+		undoSize++;
 		
 		changePlayer();
 		
-		placeSuggestions();	
+		updateSuggestions();
 		
 		turnNumber++;
 	}
 	
 	
+	/**
+	 * Takes back the last move made with makeMove, restoring the
+	 * game to exactly how it was before that move. Takes constant
+	 * time & allocates nothing.
+	 * 
+	 * @throws IllegalStateException Thrown if there is no move to
+	 * take back.
+	 */
+	public void unmakeMove() throws IllegalStateException
+	{
+		if (undoSize == 0)
+			throw new IllegalStateException("There is no move to take back.");
+		
+		undoSize--;
+		
+		int cell = undoCells[undoSize];
+		
+		currentPlayer = undoPlayers[undoSize];
+		board.undoMove(currentPlayer, cell / BitBoard.SIZE, cell % BitBoard.SIZE, 
+				undoFlips[undoSize]);
+		
+		hash = Zobrist.hashMove(hash, currentPlayer, cell, undoFlips[undoSize]);
+		
+		player1Score = undoPlayer1Scores[undoSize];
+		player2Score = undoPlayer2Scores[undoSize];
+		
+		suggestions = undoSuggestions[undoSize];
+		numSuggestions = Long.bitCount(suggestions);
+		
+		turnNumber--;
+	}
+	
+	
+	/**
+	 * Returns true if there is a move that unmakeMove can take
+	 * back, false if not.
+	 * 
+	 * @return True if there is a move to take back, false if not.
+	 */
+	public boolean canUnmakeMove()
+	{
+		return undoSize > 0;
+	}
+	
+	
+	/**
+	 * Returns the number of moves made since the game was
+	 * created or loaded (the moves unmakeMove can take back).
+	 * 
+	 * @return The number of moves.
+	 */
+	public int getNumMovesMade()
+	{
+		return undoSize;
+	}
+	
+	
+	/**
+	 * Returns one of the moves made since the game was created
+	 * or loaded.
+	 * 
+	 * @param i The move's number (0 for the first move made).
+	 * @return The move's cell (row * 8 + col).
+	 * @throws IllegalArgumentException Thrown if there's no such
+	 * move.
+	 */
+	public int getMoveMade(int i) throws IllegalArgumentException
+	{
+		if (i < 0 || i >= undoSize)
+			throw new IllegalArgumentException("There is no move " + i + ".");
+	
+		return undoCells[i];
+	}
+	
+	
 	
 	/**
 	 * Plays a single turn of Othello. Uses a console based UI.
@@ -258,17 +536,11 @@ public class Othello {
 	{
 		GUI.displayScores(out, player1Score, player2Score);
 		
-		GUI.displayBoard(out, board);
+		GUI.displayBoard(out, board, suggestions, currentPlayer);
 		
 		System.out.println("\n");
 		
 		makeMove(out, input);
-		
-		board.clearSuggestions();
-		
-		changePlayer();
-		
-		placeSuggestions();	
 	}
 	
 	
@@ -282,19 +554,13 @@ public class Othello {
 		
 		while (!isFinished())
 		{
-			placeSuggestions();
-			
 			GUI.displayScores(System.out, player1Score, player2Score);
 			
-			GUI.displayBoard(System.out, board);
+			GUI.displayBoard(System.out, board, suggestions, currentPlayer);
 			
 			System.out.println("\n");
 			
 			makeMove(System.out, input);
-			
-			board.clearSuggestions();
-			
-			changePlayer();
 		}
 		
 		input.close();
@@ -358,24 +624,153 @@ public class Othello {
 	{
 		return (player1Score + player2Score == 64 || 
 				player1Score == 0 || player2Score == 0
-				|| board.getNumSuggestions(currentPlayer) == 0);
+				|| numSuggestions == 0);
 	}
 	
 	
 	/**
-	 * Places suggestion pieces (places where the current
-	 * player can put a piece down) on the board.
+	 * Returns a mask of the cells the current player can put
+	 * a piece on (the suggestions). Cell (row, col) is bit 
+	 * (row * 8 + col).
+	 * 
+	 * @return A mask of the current player's suggestions.
 	 */
-	private void placeSuggestions()
-	{			
-		for (int r = 0; r < board.getNumRows(); r++)
-		{
-			for (int c = 0; c < board.getNumCols(); c++)
-			{
-				if (GameLogic.isValidSuggestion(board, currentPlayer, r, c))
-					board.setPiece(r, c, new Piece(currentPlayer, false));
-			}			
-		}
+	public long getSuggestions()
+	{
+		return suggestions;
+	}
+	
+	
+	/**
+	 * Returns the number of cells the current player can
+	 * put a piece on.
+	 * 
+	 * @return The number of suggestions.
+	 */
+	public int getNumSuggestions()
+	{
+		return numSuggestions;
+	}
+	
+	
+	/**
+	 * Returns a read-only view of the game board. The view
+	 * does not copy the board.
+	 * 
+	 * @return A read-only view of the game board.
+	 */
+	public BoardView getBoard()
+	{
+		return board.getView();
+	}
+	
+	
+	/**
+	 * Returns the Zobrist hash of the current position (the
+	 * pieces & whose turn it is). Always equal to 
+	 * Zobrist.hash of the board's pieces & the current player.
+	 * 
+	 * @return The current position's hash.
+	 */
+	public long getHash()
+	{
+		return hash;
+	}
+	
+	
+	/**
+	 * Returns the color the computer plays.
+	 * 
+	 * @return The computer's color, or null if both players
+	 * are human.
+	 */
+	public Color getComputerPlayer()
+	{
+		return computerPlayer;
+	}
+	
+	
+	/**
+	 * Sets the color the computer plays. The computer's moves
+	 * are made by whoever runs the game (see servlets.MakeMove).
+	 * 
+	 * @param player The computer's color, or null if both
+	 * players are human.
+	 */
+	public void setComputerPlayer(Color player)
+	{
+		computerPlayer = player;
+	}
+	
+	
+	/**
+	 * Returns the color of the player whose turn it is.
+	 * 
+	 * @return The current player's color.
+	 */
+	public Color getCurrentPlayer()
+	{
+		return currentPlayer;
+	}
+	
+	
+	/**
+	 * Returns the current turn number.
+	 * 
+	 * @return The turn number.
+	 */
+	public int getTurnNumber()
+	{
+		return turnNumber;
+	}
+	
+	
+	/**
+	 * Returns a player's score (the number of their pieces
+	 * on the board).
+	 * 
+	 * @param player The player's color.
+	 * @return The player's score.
+	 */
+	public int getScore(Color player)
+	{
+		return (player == Color.BLACK) ? player1Score : player2Score;
+	}
+	
+	
+	/**
+	 * Returns true if the current player can put a piece
+	 * on cell (row, col), false if not.
+	 * 
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return True if the cell holds a suggestion, false 
+	 * if not.
+	 */
+	private boolean isSuggestion(int row, int col)
+	{
+		return (suggestions & BitBoard.cellMask(row, col)) != 0;
+	}
+	
+	
+	/**
+	 * Recomputes the suggestions (places where the current
+	 * player can put a piece down).
+	 */
+	private void updateSuggestions()
+	{
+		suggestions = GameLogic.getValidMoves(board, currentPlayer);
+		numSuggestions = Long.bitCount(suggestions);
+	}
+	
+	
+	/**
+	 * Recomputes the position's hash from scratch.
+	 */
+	private void updateHash()
+	{
+		hash = Zobrist.hash(board.getPieceMask(Color.BLACK), 
+				board.getPieceMask(Color.WHITE), currentPlayer);
 	}
 	
 	
@@ -383,20 +778,30 @@ public class Othello {
 	 * Takes the row & column of the cell with a valid
 	 * suggestion piece, then makes the move by flipping
 	 * all required pieces & making the suggestion piece
-	 * a true piece. No GUI.
+	 * a true piece. No GUI. Allocates nothing: the flips
+	 * are computed as a single mask & the scores change by
+	 * its population count.
 	 * 
 	 * @param row The selected row of the suggestion
 	 * piece.
 	 * @param col The selected column of the suggestion
 	 * piece.
+	 * @return Mask of the pieces that flipped.
 	 */
-	private void makeMove(int row, int col)
-	{		
-		flipPieces(row, col);
+	private long applyMove(int row, int col)
+	{
+		Color opponent = getOppositePlayer(currentPlayer);
+		
+		long flips = GameLogic.getFlips(board.getPieceMask(currentPlayer), 
+				board.getPieceMask(opponent), row * BitBoard.SIZE + col);
+		
+		board.applyMove(currentPlayer, row, col, flips);
 		
-		board.makePiece(row, col);
+		int numFlipped = Long.bitCount(flips);
+		changeScore(currentPlayer, numFlipped + 1);
+		changeScore(opponent, -numFlipped);
 		
-		changeScore(currentPlayer, 1);
+		return flips;
 	}
 	
 	
@@ -404,7 +809,8 @@ public class Othello {
 	/**
 	 * Asks the current player to make a move, receives
 	 * their input, and applies the change to the 
-	 * game board.
+	 * game board. Then passes the turn to the other
+	 * player.
 	 * 
 	 * @param out Output destination.
 	 * @param input Input location.
@@ -423,16 +829,12 @@ public class Othello {
 			
 			col = getColumn(out, input);
 			
-			if (!GameLogic.isValidMove(board, currentPlayer, row, col))
+			if (!isSuggestion(row, col))
 				out.println("Invalid move. Pick a cell with a suggested cell.");
 		}
-		while (!GameLogic.isValidMove(board, currentPlayer, row, col));
-		
-		flipPieces(row, col);
-		
-		board.makePiece(row, col);
+		while (!isSuggestion(row, col));
 		
-		changeScore(currentPlayer, 1);
+		makeMove(row, col);
 	}
 	
 	
@@ -452,70 +854,6 @@ public class Othello {
 	}
 	
 	
-	/**
-	 * Given the row & column of a (correctly placed) suggest
-	 * piece for the current player, flips all the surrounding pieces 
-	 * that need to flip when the current player places their piece
-	 * on said cell (but does not turn the suggest piece to
-	 * a real piece).
-	 * 
-	 * @param suggestRow The row of the suggest piece.
-	 * @param suggestCol The column of the suggest piece.
-	 */
-	private void flipPieces(int suggestRow, int suggestCol)
-	{
-		boolean[][] nextTo = GameLogic.getNextTo(board, 
-				getOppositePlayer(currentPlayer), suggestRow, suggestCol);
-		
-		boolean[][] nextToValidLines = GameLogic.getNextToValidLines(board, nextTo, 
-				currentPlayer, suggestRow, suggestCol);
-		
-		for (int r = 0; r < nextToValidLines.length; r++)
-		{
-			for (int c = 0; c < nextToValidLines[0].length; c++)
-			{
-				if (nextToValidLines[r][c])
-					flipPiecesHelper(suggestRow, suggestCol, r, c);				
-			}
-		}
-	}
-	
-	
-	/**
-	 * Takes the row & column of the suggestion piece & the
-	 * row & column of a true cell from boolean map from
-	 * GameLogic.nextToValidLines, and flips all pieces
-	 * on the board in the direction of the true cell on the
-	 * game board.
-	 * 
-	 * @param suggestRow The row of the suggestion cell.
-	 * @param suggestCol The column of the suggestion cell.
-	 * @param nextToValidLinesRow The row of the valid lines cell.
-	 * @param nextToValidLinesCol The column of the valid lines cell.
-	 */
-	private void flipPiecesHelper(int suggestRow, int suggestCol, 
-			int nextToValidLinesRow, int nextToValidLinesCol)
-	{		
-		int changeRow = nextToValidLinesRow - 1;
-		int changeCol = nextToValidLinesCol - 1;
-		
-		int nextRow = suggestRow + changeRow;
-		int nextCol = suggestCol + changeCol;
-		
-		while (board.getPiece(nextRow, nextCol).getColor() 
-				!= currentPlayer)
-		{
-			board.flipPiece(nextRow, nextCol);
-			
-			changeScore(currentPlayer, 1);
-			changeScore(getOppositePlayer(currentPlayer), -1);
-			
-			nextRow += changeRow;
-			nextCol += changeCol;
-		}
-	}
-	
-	
 	/**
 	 * Prompts for, receives, and returns the player's
 	 * selected row.
@@ -2,30 +2,62 @@ package othelloGame;
 
 import othelloGame.Color;
 
-public class Piece 
+/**
+ * An immutable piece. There are only four of them (black or
+ * white, each as a piece or a suggestion), so they can be shared
+ * by every board & thread. Use valueOf or the constants to get one.
+ *
+ * @author ubuntu
+ *
+ */
+final public class Piece
 {
+	// The four pieces.
+	static public final Piece BLACK_PIECE = new Piece(Color.BLACK, true);
+	static public final Piece WHITE_PIECE = new Piece(Color.WHITE, true);
+	static public final Piece BLACK_SUGGESTION = new Piece(Color.BLACK, false);
+	static public final Piece WHITE_SUGGESTION = new Piece(Color.WHITE, false);
+	
 	// This piece's color.
-	private Color color;
+	private final Color color;
 	
 	// If true, its placement on the board signifies a 
 	// placed piece. If false, signifies a possible location
 	// the current player can put a piece.
-	private boolean isPiece;
+	private final boolean isPiece;
 	
 	
 	/**
-	 * Creates a Piece with the provided color.
-	 * @param theColor The piece's starting color.
+	 * Creates a Piece with the provided color. Only used to
+	 * create the four constants.
+	 * @param theColor The piece's color.
 	 * @param theIsPiece True if this piece is a piece on the board, False
 	 * if it's a possible location the current player can put a piece.
 	 */
-	public Piece(Color theColor, boolean theIsPiece)
+	private Piece(Color theColor, boolean theIsPiece)
 	{
 		color = theColor;
 		isPiece = theIsPiece;
 	}
 	
 	
+	/**
+	 * Returns the piece with the provided color.
+	 * @param color The piece's color.
+	 * @param isPiece True for a piece on the board, False
+	 * for a possible location the current player can put a piece.
+	 * @return The piece.
+	 */
+	static public Piece valueOf(Color color, boolean isPiece)
+	{
+		if (color == Color.BLACK)
+			return isPiece ? BLACK_PIECE : BLACK_SUGGESTION;
+		
+		else
+			return isPiece ? WHITE_PIECE : WHITE_SUGGESTION;
+	}
+	
+	
 	/**
 	 * Returns true if this piece is a piece on the board & false if it's just
 	 * a valid location the current player can place a piece.
@@ -40,15 +72,14 @@ public class Piece
 	
 	
 	/**
-	 * Sets whether this Piece object should be a piece
-	 * (true) or a suggestion (false).
+	 * Returns the piece (as opposed to the suggestion) with
+	 * this piece's color.
 	 * 
-	 * @param theIsPiece If this Piece object should be
-	 * a piece (true) or a suggestion (false).
+	 * @return The piece with this piece's color.
 	 */
-	public void setPiece(boolean theIsPiece)
+	public Piece asPiece()
 	{
-		isPiece = theIsPiece;
+		return valueOf(color, true);
 	}
 	
 	
@@ -63,20 +94,17 @@ public class Piece
 	
 	
 	/**
-	 * Changes the color of this piece from black -> white
-	 * & white -> black.
+	 * Returns the piece with the opposite color (black -> white
+	 * & white -> black).
 	 * 
-	 * @return The new piece color.
+	 * @return The flipped piece.
 	 */
-	public Color flip()
+	public Piece flipped()
 	{
-		if (color == Color.BLACK)
-			color = Color.WHITE;
+		Color flippedColor = (color == Color.BLACK)
+				? Color.WHITE : Color.BLACK;
 		
-		else
-			color = Color.BLACK;
-		
-		return color;
+		return valueOf(flippedColor, isPiece);
 	}
 	
 	
@@ -0,0 +1,83 @@
+package othelloGame;
+
+
+/**
+ * A BoardView that passes every call on to a board, without
+ * copying it. Keeps the board's changing methods out of reach
+ * of whoever holds the view.
+ *
+ * @author ubuntu
+ *
+ */
+final class ReadOnlyBoard implements BoardView
+{
+	// The board being viewed
+	private final BoardView board;
+
+
+	/**
+	 * Creates a read-only view of the provided board.
+	 *
+	 * @param theBoard The board being viewed.
+	 */
+	ReadOnlyBoard(BoardView theBoard)
+	{
+		board = theBoard;
+	}
+
+
+	@Override
+	public Piece getPiece(int row, int col) throws IndexOutOfBoundsException
+	{
+		return board.getPiece(row, col);
+	}
+
+
+	@Override
+	public boolean cellInBounds(int row, int col)
+	{
+		return board.cellInBounds(row, col);
+	}
+
+
+	@Override
+	public boolean rowInBounds(int row)
+	{
+		return board.rowInBounds(row);
+	}
+
+
+	@Override
+	public boolean columnInBounds(int column)
+	{
+		return board.columnInBounds(column);
+	}
+
+
+	@Override
+	public int getNumRows()
+	{
+		return board.getNumRows();
+	}
+
+
+	@Override
+	public int getNumCols()
+	{
+		return board.getNumCols();
+	}
+
+
+	@Override
+	public int getNumSuggestions(Color color)
+	{
+		return board.getNumSuggestions(color);
+	}
+
+
+	@Override
+	public long getPieceMask(Color color)
+	{
+		return board.getPieceMask(color);
+	}
+}
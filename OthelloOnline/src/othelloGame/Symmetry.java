@@ -0,0 +1,217 @@
+package othelloGame;
+
+
+/**
+ * A class with static functions for the board's 8 symmetries (the
+ * rotations & reflections that turn one position into an equivalent
+ * one), done with shifts & masks on a whole 64-bit piece mask at once.
+ * Cell (row, col) is bit (row * 8 + col).
+ *
+ * The transforms are numbered:
+ *   0 IDENTITY         (row, col) stays put
+ *   1 MIRROR           (row, col) -> (row, 7 - col)
+ *   2 FLIP             (row, col) -> (7 - row, col)
+ *   3 ROTATE_HALF      (row, col) -> (7 - row, 7 - col)
+ *   4 TRANSPOSE        (row, col) -> (col, row)
+ *   5 ROTATE_RIGHT     (row, col) -> (col, 7 - row)
+ *   6 ROTATE_LEFT      (row, col) -> (7 - col, row)
+ *   7 ANTI_TRANSPOSE   (row, col) -> (7 - col, 7 - row)
+ *
+ * A position's canonical form is the transform of it with the smallest
+ * Zobrist hash, so every store keyed by canonical hash holds the 8
+ * equivalent positions as one. CanonicalPosition finds both the hash
+ * & the transform, so moves stored in the canonical orientation can be
+ * mapped back.
+ *
+ * @author ubuntu
+ *
+ */
+final public class Symmetry
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private Symmetry() {}
+
+
+	// The transforms
+	static public final int IDENTITY = 0;
+	static public final int MIRROR = 1;
+	static public final int FLIP = 2;
+	static public final int ROTATE_HALF = 3;
+	static public final int TRANSPOSE = 4;
+	static public final int ROTATE_RIGHT = 5;
+	static public final int ROTATE_LEFT = 6;
+	static public final int ANTI_TRANSPOSE = 7;
+
+	static public final int NUM_TRANSFORMS = 8;
+
+	// The transform that undoes each transform. The quarter turns undo
+	// each other; the rest undo themselves.
+	static private final int[] INVERSES = {IDENTITY, MIRROR, FLIP, ROTATE_HALF,
+			TRANSPOSE, ROTATE_LEFT, ROTATE_RIGHT, ANTI_TRANSPOSE};
+
+
+	/**
+	 * Reverses the order of the rows (row r becomes row 7 - r).
+	 *
+	 * @param mask The mask.
+	 * @return The flipped mask.
+	 */
+	static public long flip(long mask)
+	{
+		return Long.reverseBytes(mask);
+	}
+
+
+	/**
+	 * Reverses the order of the columns (column c becomes column 7 - c).
+	 *
+	 * @param mask The mask.
+	 * @return The mirrored mask.
+	 */
+	static public long mirror(long mask)
+	{
+		// Swap neighbouring bits, then pairs, then nibbles in every row.
+		mask = ((mask >>> 1) & 0x5555555555555555L) | ((mask & 0x5555555555555555L) << 1);
+		mask = ((mask >>> 2) & 0x3333333333333333L) | ((mask & 0x3333333333333333L) << 2);
+		mask = ((mask >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((mask & 0x0F0F0F0F0F0F0F0FL) << 4);
+
+		return mask;
+	}
+
+
+	/**
+	 * Swaps rows & columns (cell (row, col) becomes cell (col, row)),
+	 * reflecting the board across the diagonal through (0, 0).
+	 *
+	 * @param mask The mask.
+	 * @return The transposed mask.
+	 */
+	static public long transpose(long mask)
+	{
+		// Swap the off-diagonal 4x4 blocks, then 2x2 blocks within
+		// them, then single cells (delta swaps).
+		long t = 0x0F0F0F0F00000000L & (mask ^ (mask << 28));
+		mask ^= t ^ (t >>> 28);
+
+		t = 0x3333000033330000L & (mask ^ (mask << 14));
+		mask ^= t ^ (t >>> 14);
+
+		t = 0x5500550055005500L & (mask ^ (mask << 7));
+		mask ^= t ^ (t >>> 7);
+
+		return mask;
+	}
+
+
+	/**
+	 * Moves every cell in the mask by the given transform.
+	 *
+	 * @param transform The transform (0 - 7).
+	 * @param mask The mask.
+	 * @return The transformed mask.
+	 */
+	static public long transform(int transform, long mask)
+	{
+		switch (transform) {
+			case MIRROR:         return mirror(mask);
+			case FLIP:           return flip(mask);
+			case ROTATE_HALF:    return flip(mirror(mask));
+			case TRANSPOSE:      return transpose(mask);
+			case ROTATE_RIGHT:   return mirror(transpose(mask));
+			case ROTATE_LEFT:    return flip(transpose(mask));
+			case ANTI_TRANSPOSE: return flip(mirror(transpose(mask)));
+			default:             return mask;
+		}
+	}
+
+
+	/**
+	 * Moves one cell by the given transform.
+	 *
+	 * @param transform The transform (0 - 7).
+	 * @param cell The cell (row * 8 + col).
+	 * @return The cell it moves to.
+	 */
+	static public int transformCell(int transform, int cell)
+	{
+		int row = cell >>> 3, col = cell & 7;
+
+		switch (transform) {
+			case MIRROR:         return (row << 3) | (7 - col);
+			case FLIP:           return ((7 - row) << 3) | col;
+			case ROTATE_HALF:    return 63 - cell;
+			case TRANSPOSE:      return (col << 3) | row;
+			case ROTATE_RIGHT:   return (col << 3) | (7 - row);
+			case ROTATE_LEFT:    return ((7 - col) << 3) | row;
+			case ANTI_TRANSPOSE: return ((7 - col) << 3) | (7 - row);
+			default:             return cell;
+		}
+	}
+
+
+	/**
+	 * Returns the transform that undoes the given one.
+	 *
+	 * @param transform The transform (0 - 7).
+	 * @return The transform that undoes it.
+	 */
+	static public int inverse(int transform)
+	{
+		return INVERSES[transform];
+	}
+
+
+	/**
+	 * Returns the transform that gives the position's canonical form:
+	 * the one with the smallest Zobrist hash. (If the position is
+	 * symmetric, several do; this is the first of them.)
+	 *
+	 * @param black Mask of the black pieces.
+	 * @param white Mask of the white pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The transform (0 - 7).
+	 */
+	static public int getCanonicalTransform(long black, long white, Color toMove)
+	{
+		int best = IDENTITY;
+		long bestHash = Zobrist.hash(black, white, toMove);
+
+		for (int transform = 1; transform < NUM_TRANSFORMS; transform++)
+		{
+			long hash = Zobrist.hash(transform(transform, black), transform(transform, white),
+					toMove);
+
+			if (hash < bestHash)
+			{
+				best = transform;
+				bestHash = hash;
+			}
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Returns the Zobrist hash of the position's canonical form, which
+	 * is the same for all 8 equivalent positions.
+	 *
+	 * @param black Mask of the black pieces.
+	 * @param white Mask of the white pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The canonical hash.
+	 */
+	static public long getCanonicalHash(long black, long white, Color toMove)
+	{
+		long bestHash = Zobrist.hash(black, white, toMove);
+
+		for (int transform = 1; transform < NUM_TRANSFORMS; transform++)
+			bestHash = Math.min(bestHash, Zobrist.hash(transform(transform, black),
+					transform(transform, white), toMove));
+
+		return bestHash;
+	}
+}
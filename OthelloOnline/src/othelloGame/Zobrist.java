@@ -0,0 +1,136 @@
+package othelloGame;
+
+
+/**
+ * A class with static functions that compute 64-bit Zobrist
+ * hashes of positions. A position's hash is the XOR of a random
+ * key for every piece on the board (one key per color per cell),
+ * plus one more key if it's white's turn.
+ *
+ * The keys come from a fixed seed, so a position has the same
+ * hash in every JVM (hashes can be stored in files).
+ *
+ * @author ubuntu
+ *
+ */
+final public class Zobrist
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private Zobrist() {}
+
+
+	// The keys for a black or white piece on each cell
+	static private final long[] BLACK_KEYS = new long[64];
+	static private final long[] WHITE_KEYS = new long[64];
+
+	// BLACK_KEYS[cell] ^ WHITE_KEYS[cell]: flips the piece on a cell
+	static private final long[] FLIP_KEYS = new long[64];
+
+	// Added to the hash when it's white's turn
+	static private final long WHITE_TO_MOVE_KEY;
+
+	static
+	{
+		long seed = 0x4F7468656C6C6F21L;
+
+		for (int cell = 0; cell < 64; cell++)
+		{
+			seed += 0x9E3779B97F4A7C15L;
+			BLACK_KEYS[cell] = mix(seed);
+
+			seed += 0x9E3779B97F4A7C15L;
+			WHITE_KEYS[cell] = mix(seed);
+
+			FLIP_KEYS[cell] = BLACK_KEYS[cell] ^ WHITE_KEYS[cell];
+		}
+
+		seed += 0x9E3779B97F4A7C15L;
+		WHITE_TO_MOVE_KEY = mix(seed);
+	}
+
+
+	/**
+	 * The SplitMix64 finalizer. Turns consecutive seeds into
+	 * well spread out keys.
+	 *
+	 * @param z The seed.
+	 * @return The key.
+	 */
+	static private long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+
+	/**
+	 * Computes the hash of a position from scratch.
+	 *
+	 * @param black Mask of the black pieces.
+	 * @param white Mask of the white pieces.
+	 * @param toMove The player whose turn it is.
+	 * @return The position's hash.
+	 */
+	static public long hash(long black, long white, Color toMove)
+	{
+		long hash = (toMove == Color.WHITE) ? WHITE_TO_MOVE_KEY : 0L;
+
+		while (black != 0)
+		{
+			hash ^= BLACK_KEYS[Long.numberOfTrailingZeros(black)];
+			black &= black - 1;
+		}
+
+		while (white != 0)
+		{
+			hash ^= WHITE_KEYS[Long.numberOfTrailingZeros(white)];
+			white &= white - 1;
+		}
+
+		return hash;
+	}
+
+
+	/**
+	 * Returns the hash of the position after a move, given the hash
+	 * of the position before it: XORs in the placed piece, the flipped
+	 * pieces & the change of turn. Applying the same move to the result
+	 * gives back the original hash, so this also undoes a move.
+	 *
+	 * @param hash The hash before the move.
+	 * @param player The player making the move.
+	 * @param cell The cell's bit index (row * 8 + col).
+	 * @param flips Mask of the pieces the move flips.
+	 * @return The hash after the move.
+	 */
+	static public long hashMove(long hash, Color player, int cell, long flips)
+	{
+		hash ^= (player == Color.BLACK) ? BLACK_KEYS[cell] : WHITE_KEYS[cell];
+		hash ^= WHITE_TO_MOVE_KEY;
+
+		while (flips != 0)
+		{
+			hash ^= FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
+			flips &= flips - 1;
+		}
+
+		return hash;
+	}
+
+
+	/**
+	 * Returns the hash of the same position with the turn passed
+	 * to the other player.
+	 *
+	 * @param hash The position's hash.
+	 * @return The hash with the other player to move.
+	 */
+	static public long hashPass(long hash)
+	{
+		return hash ^ WHITE_TO_MOVE_KEY;
+	}
+}
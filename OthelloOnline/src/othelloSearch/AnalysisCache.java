@@ -0,0 +1,205 @@
+package othelloSearch;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import othelloGame.CanonicalPosition;
+import othelloGame.Color;
+import othelloGame.Othello;
+import othelloGame.Symmetry;
+
+
+/**
+ * Keeps recent positions' analyses (see MoveAnalyzer) & works out new
+ * ones on a background thread, so whoever asks for one never waits on
+ * a search: get returns the analysis if it's ready, & otherwise starts
+ * it & returns null (ask again later).
+ *
+ * Analyses are keyed by the position's canonical hash (see
+ * CanonicalPosition), so the 8 rotations & reflections of a position
+ * share one. They live in a fixed-size table of slots, each slot
+ * holding the last analysis whose hash landed there.
+ *
+ * Only a few positions wait to be analyzed at once; when more are
+ * asked for, the one asked for longest ago is dropped (the game has
+ * most likely moved on from it). Any number of threads can call get at
+ * once. Call close when done with it to stop the background thread.
+ *
+ * @author ubuntu
+ *
+ */
+public class AnalysisCache implements AutoCloseable
+{
+	// The most positions that wait to be analyzed at once
+	static private final int QUEUE_SIZE = 16;
+
+
+	/**
+	 * A position's analysis, with its moves in the canonical orientation.
+	 */
+	static private class Entry
+	{
+		final long hash;
+		final MoveScore[] scores;
+
+		Entry(long theHash, MoveScore[] theScores)
+		{
+			hash = theHash;
+			scores = theScores;
+		}
+	}
+
+
+	/**
+	 * Analyzes one position (in its canonical orientation).
+	 */
+	private class Job implements Runnable
+	{
+		final long hash;
+		final long black, white;
+		final Color toMove;
+
+		Job(long theHash, long theBlack, long theWhite, Color theToMove)
+		{
+			hash = theHash;
+			black = theBlack;
+			white = theWhite;
+			toMove = theToMove;
+		}
+
+		@Override
+		public void run()
+		{
+			try {
+				MoveScore[] scores = (toMove == Color.BLACK) ? analyzer.analyze(black, white, toMove)
+						: analyzer.analyze(white, black, toMove);
+
+				entries.set(getSlot(hash), new Entry(hash, scores));
+			}
+
+			finally {
+				pending.remove(hash);
+			}
+		}
+	}
+
+
+	// Scores the moves (only ever used by the background thread)
+	private final MoveAnalyzer analyzer;
+
+	// The analyses, & the number of slots minus one (a power of 2)
+	private final AtomicReferenceArray<Entry> entries;
+	private final int slotMask;
+
+	// Hashes of the positions waiting for or being analyzed
+	private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+	// Runs the jobs one at a time
+	private final ThreadPoolExecutor worker;
+
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param theAnalyzer Scores the moves. Used only by the cache's
+	 * background thread from now on.
+	 * @param numEntries The number of analyses to keep (rounded down to
+	 * a power of 2).
+	 * @throws IllegalArgumentException Thrown if numEntries is less
+	 * than 1.
+	 */
+	public AnalysisCache(MoveAnalyzer theAnalyzer, int numEntries) throws IllegalArgumentException
+	{
+		if (numEntries < 1)
+			throw new IllegalArgumentException("A cache needs at least one entry.");
+
+		analyzer = theAnalyzer;
+		entries = new AtomicReferenceArray<>(Integer.highestOneBit(numEntries));
+		slotMask = entries.length() - 1;
+
+		worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+					Thread thread = new Thread(r, "othello-analysis");
+					thread.setDaemon(true);
+					return thread;
+				}, (job, executor) -> {
+					// Make room by dropping the oldest waiting job (or
+					// drop this one if the cache is closed).
+					Runnable dropped = executor.isShutdown() ? job : executor.getQueue().poll();
+
+					if (dropped != null)
+						pending.remove(((Job) dropped).hash);
+
+					if (!executor.isShutdown())
+						executor.execute(job);
+				});
+	}
+
+
+	/**
+	 * Returns the analysis of the current player's moves in the given
+	 * game, if it's ready. If not, starts it (unless it's already
+	 * started) & returns null. Never waits on a search.
+	 *
+	 * @param game The game. Not changed.
+	 * @return The moves' scores, best first (none if the game is over),
+	 * or null if they aren't ready yet.
+	 */
+	public MoveScore[] get(Othello game)
+	{
+		if (game.isFinished())
+			return new MoveScore[0];
+
+		CanonicalPosition position = new CanonicalPosition(game);
+		long hash = position.getHash();
+		Entry entry = entries.get(getSlot(hash));
+
+		if (entry != null && entry.hash == hash)
+		{
+			MoveScore[] scores = new MoveScore[entry.scores.length];
+
+			for (int i = 0; i < scores.length; i++)
+				scores[i] = entry.scores[i].withCell(position.fromCanonical(entry.scores[i].getCell()));
+
+			return scores;
+		}
+
+		if (pending.add(hash))
+		{
+			long black = Symmetry.transform(position.getTransform(),
+					game.getBoard().getPieceMask(Color.BLACK));
+			long white = Symmetry.transform(position.getTransform(),
+					game.getBoard().getPieceMask(Color.WHITE));
+
+			worker.execute(new Job(hash, black, white, game.getCurrentPlayer()));
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Returns the slot for a hash.
+	 *
+	 * @param hash A canonical hash.
+	 * @return The slot.
+	 */
+	private int getSlot(long hash)
+	{
+		return (int) (hash ^ (hash >>> 32)) & slotMask;
+	}
+
+
+	/**
+	 * Stops the background thread (dropping any waiting positions).
+	 */
+	@Override
+	public void close()
+	{
+		worker.shutdownNow();
+	}
+}
@@ -0,0 +1,1246 @@
+package othelloSearch;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import othelloGame.Color;
+import othelloGame.GameLogic;
+import othelloGame.Othello;
+
+
+/**
+ * Solves positions near the end of the game exactly: finds the final
+ * disc difference (the player to move's discs minus the opponent's)
+ * with perfect play from both sides. That's the same difference
+ * Othello.isFinished & GUI.displayWinner look at when the game ends
+ * (a player who can't move ends the game; empty cells count for no
+ * one).
+ *
+ * The search is a principal variation search over the disc difference
+ * (the first move gets the full window, the rest null windows), with a
+ * table of the bounds found for each position. Far from the end it
+ * orders moves by a shallow search that scores mobility & corners; then
+ * it tries the moves that leave the opponent the fewest replies first
+ * (fastest-first); closer to the end it tries moves in regions with an
+ * odd number of empty cells first (parity). The opponent's discs that
+ * can never be flipped cut off searches that can't reach alpha. The last
+ * few empty cells are searched without the table or move lists, & the
+ * last 4 are solved by hand-unrolled code that allocates nothing.
+ *
+ * A solve can be given a time or node budget; if it runs out, the solve
+ * stops & reports that it didn't finish (see wasAborted), & nothing it
+ * half-worked out is kept.
+ *
+ * A solver is not thread-safe; use one per thread.
+ *
+ * @author ubuntu
+ *
+ */
+public class EndgameSolver
+{
+	// Bigger than any disc difference
+	static private final int INFINITY = 65;
+
+	// Use fastest-first ordering with more than this many empty cells
+	// (below it, counting the opponent's replies costs more than it saves)
+	static private final int FASTEST_FIRST_EMPTIES = 5;
+
+	// Order moves by a shallow search with at least this many empty
+	// cells, 2 plies deep (3 with DEEPER_ORDER_EMPTIES or more): up there
+	// a subtree costs far more than the search that orders it
+	static private final int SHALLOW_ORDER_EMPTIES = 14;
+	static private final int DEEPER_ORDER_EMPTIES = 16;
+
+	// What the shallow search scores, per move (corners count twice),
+	// per corner & per empty cell next to the opponent's pieces; & what a
+	// finished game is worth per disc, which outweighs any guess
+	static private final int MOBILITY_WEIGHT = 8;
+	static private final int CORNER_WEIGHT = 32;
+	static private final int POTENTIAL_MOBILITY_WEIGHT = 1;
+	static private final int FINISHED_WEIGHT = 64;
+
+	// Search positions with this many empty cells or fewer (& more than
+	// 4) with parity ordering only, without the table or move lists
+	static private final int NEAR_END_EMPTIES = 5;
+
+	// The four quadrants of the board
+	static private final long[] QUADRANTS = {
+			0x000000000F0F0F0FL, 0x00000000F0F0F0F0L,
+			0x0F0F0F0F00000000L, 0xF0F0F0F000000000L};
+
+	// Which quadrant each cell is in
+	static private final int[] QUADRANT_OF = new int[64];
+
+	static
+	{
+		for (int cell = 0; cell < 64; cell++)
+			QUADRANT_OF[cell] = ((cell / 8 >= 4) ? 2 : 0) + ((cell % 8 >= 4) ? 1 : 0);
+	}
+
+	// Every row, column & diagonal (both ways) on the board
+	static private final long[] ROWS = new long[8];
+	static private final long[] COLUMNS = new long[8];
+	static private final long[] DIAGONALS = new long[15];
+	static private final long[] ANTI_DIAGONALS = new long[15];
+
+	static
+	{
+		for (int cell = 0; cell < 64; cell++)
+		{
+			int row = cell / 8, col = cell % 8;
+
+			ROWS[row] |= 1L << cell;
+			COLUMNS[col] |= 1L << cell;
+			DIAGONALS[row - col + 7] |= 1L << cell;
+			ANTI_DIAGONALS[row + col] |= 1L << cell;
+		}
+	}
+
+	// By cell, the cells along each line through it (its row, column,
+	// diagonal & anti-diagonal) beyond it (higher cells) & before it
+	// (lower cells)
+	static private final long[] ROW_AFTER = new long[64], ROW_BEFORE = new long[64];
+	static private final long[] COLUMN_AFTER = new long[64], COLUMN_BEFORE = new long[64];
+	static private final long[] DIAGONAL_AFTER = new long[64], DIAGONAL_BEFORE = new long[64];
+	static private final long[] ANTI_AFTER = new long[64], ANTI_BEFORE = new long[64];
+
+	// The cells next to each cell
+	static private final long[] NEIGHBOURS = new long[64];
+
+	static
+	{
+		for (int cell = 0; cell < 64; cell++)
+		{
+			int row = cell / 8, col = cell % 8;
+			long after = -2L << cell, before = (1L << cell) - 1;
+
+			ROW_AFTER[cell] = ROWS[row] & after;
+			ROW_BEFORE[cell] = ROWS[row] & before;
+			COLUMN_AFTER[cell] = COLUMNS[col] & after;
+			COLUMN_BEFORE[cell] = COLUMNS[col] & before;
+			DIAGONAL_AFTER[cell] = DIAGONALS[row - col + 7] & after;
+			DIAGONAL_BEFORE[cell] = DIAGONALS[row - col + 7] & before;
+			ANTI_AFTER[cell] = ANTI_DIAGONALS[row + col] & after;
+			ANTI_BEFORE[cell] = ANTI_DIAGONALS[row + col] & before;
+			NEIGHBOURS[cell] = getNeighbours(1L << cell) & ~(1L << cell);
+		}
+	}
+
+	// Cells on the edge of the board, which can't be flipped along the
+	// lines that run off it
+	static private final long LEFT_RIGHT = 0x8181818181818181L;
+	static private final long TOP_BOTTOM = 0xFF000000000000FFL;
+	static private final long BORDER = LEFT_RIGHT | TOP_BOTTOM;
+
+	// Corners are worth trying first when moves are otherwise equal
+	static private final long CORNERS = 0x8100000000000081L;
+
+	// Look for enhanced transposition cutoffs with more than this many
+	// empty cells
+	static private final int ETC_EMPTIES = 10;
+
+	// Remember positions with at least this many empty cells
+	static private final int TABLE_EMPTIES = 6;
+
+	// The table holds 2^TABLE_BITS positions (about 24 MB)
+	static private final int TABLE_BITS = 20;
+
+	// How many nodes to search between checks of the budget
+	static private final int BUDGET_CHECK_INTERVAL = 1024;
+
+	// Positions solved so far, 3 longs a slot (so a lookup touches one
+	// place in memory): both masks, then the bounds on the difference
+	// (each stored plus INFINITY), the best move & the number of empty
+	// cells packed together. Bounds stay true from one solve to the next,
+	// so the table is never cleared. An empty slot's masks are both 0,
+	// which no real position matches.
+	private final long[] table = new long[3 << TABLE_BITS];
+
+	// Per-ply move lists & their ordering scores
+	private final int[][] moveLists = new int[64][64];
+	private final int[][] moveScores = new int[64][64];
+	private final long[][] moveFlips = new long[64][64];
+
+	// The budget for each solve (0 means no limit)
+	private long timeLimitNanos;
+	private long nodeLimit;
+
+	// Raised by another thread to stop the solve (null if none)
+	AtomicBoolean stopSignal;
+
+	// The last solve's best move & the positions it visited
+	private int bestMove;
+	private long nodes;
+
+	// The current solve's deadline, when to check the budget next &
+	// whether it ran out
+	private long deadline;
+	private long nextCheck;
+	private boolean aborted;
+
+
+	/**
+	 * Limits each solve to the given wall-clock time.
+	 *
+	 * @param millis The time limit in milliseconds (0 for none).
+	 */
+	public void setTimeLimit(long millis)
+	{
+		timeLimitNanos = millis * 1000000L;
+	}
+
+
+	/**
+	 * Limits each solve to the given number of positions.
+	 *
+	 * @param theNodeLimit The node limit (0 for none).
+	 */
+	public void setNodeLimit(long theNodeLimit)
+	{
+		nodeLimit = theNodeLimit;
+	}
+
+
+	/**
+	 * Solves the given game for its current player.
+	 *
+	 * @param game The game.
+	 * @return The final disc difference for the current player with
+	 * perfect play.
+	 */
+	public int solve(Othello game)
+	{
+		Color toMove = game.getCurrentPlayer();
+
+		return solve(game.getBoard().getPieceMask(toMove),
+				game.getBoard().getPieceMask(SearchEngine.opposite(toMove)));
+	}
+
+
+	/**
+	 * Solves the position for the player to move.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return The final disc difference for the player to move with
+	 * perfect play (meaningless if the solve ran out of budget; see
+	 * wasAborted).
+	 */
+	public int solve(long player, long opponent)
+	{
+		nodes = 0;
+		nextCheck = BUDGET_CHECK_INTERVAL;
+		aborted = false;
+		deadline = (timeLimitNanos == 0) ? Long.MAX_VALUE : System.nanoTime() + timeLimitNanos;
+		bestMove = TranspositionTable.NO_MOVE;
+
+		int score = search(player, opponent, -64, 64, 0);
+
+		if (aborted)
+		{
+			bestMove = TranspositionTable.NO_MOVE;
+			return 0;
+		}
+
+		return score;
+	}
+
+
+	/**
+	 * Returns the best move found by the last solve.
+	 * @return The best move's cell (row * 8 + col), or NO_MOVE
+	 * if there were no moves or the solve ran out of budget.
+	 */
+	public int getBestMove()
+	{
+		return bestMove;
+	}
+
+
+	/**
+	 * Returns the number of positions the last solve visited.
+	 * @return The number of nodes.
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+
+	/**
+	 * Returns whether the last solve ran out of budget (or was stopped)
+	 * before it finished.
+	 * @return True if it didn't finish, false if it did.
+	 */
+	public boolean wasAborted()
+	{
+		return aborted;
+	}
+
+
+	/**
+	 * Alpha-beta search over the final disc difference.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param alpha The difference the player to move is already sure of.
+	 * @param beta The difference the opponent is already sure of (negated).
+	 * @param ply How many plies from the root this position is.
+	 * @return The final disc difference for the player to move.
+	 */
+	private int search(long player, long opponent, int alpha, int beta, int ply)
+	{
+		long empty = ~(player | opponent);
+		int numEmpty = Long.bitCount(empty);
+
+		if (ply > 0 && numEmpty <= 4)
+			return solveLast(player, opponent, empty, numEmpty, alpha, beta);
+
+		if (ply > 0 && numEmpty <= NEAR_END_EMPTIES)
+			return searchNearEnd(player, opponent, empty, numEmpty, alpha, beta);
+
+		nodes++;
+
+		if (nodes >= nextCheck && outOfBudget())
+			return 0;
+
+		long moves = getValidMoves(player, opponent);
+
+		if (moves == 0)
+			return Long.bitCount(player) - Long.bitCount(opponent);
+
+		// Stability cutoff: the opponent's discs that can never be
+		// flipped cap the difference the player can reach. Only worth
+		// working out if the opponent has enough discs for it to matter.
+		if (alpha >= 64 - 2 * Long.bitCount(opponent))
+		{
+			int most = 64 - 2 * Long.bitCount(getStableDiscs(opponent, ~empty));
+
+			if (most <= alpha)
+				return most;
+		}
+
+		// What's known about the position from earlier
+		int index = -1;
+		int lower = -INFINITY, upper = INFINITY;
+		int tableMove = TranspositionTable.NO_MOVE;
+
+		if (numEmpty >= TABLE_EMPTIES)
+		{
+			index = findInTable(player, opponent);
+
+			if (index >= 0)
+			{
+				int data = (int) table[index + 2];
+
+				lower = (data & 0xFF) - INFINITY;
+				upper = ((data >>> 8) & 0xFF) - INFINITY;
+				tableMove = (data >>> 16) & 0xFF;
+
+				if (ply > 0)
+				{
+					if (lower >= beta)
+						return lower;
+
+					if (upper <= alpha || lower == upper)
+						return upper;
+
+					alpha = Math.max(alpha, lower);
+					beta = Math.min(beta, upper);
+				}
+			}
+		}
+
+		int numMoves = orderMoves(player, opponent, moves, empty, numEmpty, tableMove, ply);
+		int[] moveList = moveLists[ply];
+		int best = -INFINITY;
+		int bestCell = moveList[0];
+		int startAlpha = alpha;
+
+		long[] flipList = moveFlips[ply];
+
+		// Enhanced transposition cutoff: a move to a position the table
+		// already knows is good enough saves searching this one.
+		if (ply > 0 && numEmpty > ETC_EMPTIES)
+		{
+			for (int i = 0; i < numMoves; i++)
+			{
+				long flips = flipList[i];
+				long nextPlayer = opponent ^ flips;
+				long nextOpponent = player | flips | (1L << moveList[i]);
+				int next = findInTable(nextPlayer, nextOpponent);
+
+				if (next >= 0)
+				{
+					int score = INFINITY - (((int) table[next + 2] >>> 8) & 0xFF);
+
+					if (score >= beta)
+						return score;
+				}
+			}
+		}
+
+		for (int i = 0; i < numMoves; i++)
+		{
+			int cell = moveList[i];
+			long flips = flipList[i];
+			long nextPlayer = opponent ^ flips;
+			long nextOpponent = player | flips | (1L << cell);
+			int score;
+
+			// The first move gets the full window. The rest only have to
+			// show they're no better, unless they turn out to be.
+			if (i == 0)
+				score = -search(nextPlayer, nextOpponent, -beta, -alpha, ply + 1);
+
+			else
+			{
+				score = -search(nextPlayer, nextOpponent, -alpha - 1, -alpha, ply + 1);
+
+				if (score > alpha && score < beta && !aborted)
+					score = -search(nextPlayer, nextOpponent, -beta, -score, ply + 1);
+			}
+
+			// Nothing worked out from here on is to be trusted (or kept).
+			if (aborted)
+				return 0;
+
+			if (score > best)
+			{
+				best = score;
+				bestCell = cell;
+
+				if (best > alpha)
+				{
+					alpha = best;
+
+					if (alpha >= beta)
+						break;
+				}
+			}
+		}
+
+		if (ply == 0)
+			bestMove = bestCell;
+
+		if (numEmpty >= TABLE_EMPTIES)
+		{
+			// Fail-soft: a fail low bounds the difference from above,
+			// a fail high from below.
+			if (best <= startAlpha)
+				upper = best;
+
+			else if (best >= beta)
+				lower = best;
+
+			else
+				lower = upper = best;
+
+			store(index, player, opponent, (lower + INFINITY) | ((upper + INFINITY) << 8)
+					| (bestCell << 16) | (numEmpty << 24));
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Alpha-beta search over the final disc difference for positions
+	 * with a few more than 4 empty cells (up to NEAR_END_EMPTIES). Down
+	 * here the table & ordering by the opponent's replies cost more than
+	 * they save, so it goes through the empty cells directly, those in
+	 * regions with an odd number of them first.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param empty Mask of the empty cells.
+	 * @param numEmpty The number of empty cells (5 - NEAR_END_EMPTIES).
+	 * @param alpha The difference the player to move is already sure of.
+	 * @param beta The difference the opponent is already sure of (negated).
+	 * @return The final disc difference for the player to move.
+	 */
+	private int searchNearEnd(long player, long opponent, long empty, int numEmpty,
+			int alpha, int beta)
+	{
+		nodes++;
+
+		if (nodes >= nextCheck && outOfBudget())
+			return 0;
+
+		if (alpha >= 64 - 2 * Long.bitCount(opponent))
+		{
+			int most = 64 - 2 * Long.bitCount(getStableDiscs(opponent, ~empty));
+
+			if (most <= alpha)
+				return most;
+		}
+
+		long odd = 0;
+
+		for (int q = 0; q < QUADRANTS.length; q++)
+			if ((Long.bitCount(empty & QUADRANTS[q]) & 1) != 0)
+				odd |= QUADRANTS[q];
+
+		int best = -INFINITY;
+		long cells = empty & odd;
+
+		// The cells in odd regions, then the rest
+		for (int pass = 0; pass < 2; pass++, cells = empty & ~odd)
+		{
+			while (cells != 0)
+			{
+				int cell = Long.numberOfTrailingZeros(cells);
+				long bit = cells & -cells;
+				cells ^= bit;
+
+				long flips = getFlips(player, opponent, cell);
+
+				if (flips == 0)
+					continue;
+
+				long nextPlayer = opponent ^ flips;
+				long nextOpponent = player | flips | bit;
+				int score;
+
+				if (numEmpty == 5)
+					score = -solveLast(nextPlayer, nextOpponent, empty ^ bit, 4, -beta, -alpha);
+
+				else
+					score = -searchNearEnd(nextPlayer, nextOpponent, empty ^ bit, numEmpty - 1,
+							-beta, -alpha);
+
+				if (aborted)
+					return 0;
+
+				if (score > best)
+				{
+					best = score;
+
+					if (best > alpha)
+					{
+						alpha = best;
+
+						if (alpha >= beta)
+							return best;
+					}
+				}
+			}
+		}
+
+		// No moves: the game ends as it is.
+		if (best == -INFINITY)
+			return Long.bitCount(player) - Long.bitCount(opponent);
+
+		return best;
+	}
+
+
+	/**
+	 * Checks the budget (every BUDGET_CHECK_INTERVAL nodes) & returns
+	 * true if the solve has used it up (and must stop).
+	 *
+	 * @return True if the solve must stop, false if not.
+	 */
+	private boolean outOfBudget()
+	{
+		nextCheck = nodes + BUDGET_CHECK_INTERVAL;
+
+		if ((nodeLimit != 0 && nodes > nodeLimit) || System.nanoTime() > deadline
+				|| (stopSignal != null && stopSignal.get()))
+			aborted = true;
+
+		return aborted;
+	}
+
+
+	/**
+	 * Finds (some of) the player's discs that can never be flipped. A
+	 * disc can't be flipped along a line that's full, that runs off the
+	 * board or where it's next to one of the player's discs that can
+	 * never be flipped; if that's true of all 4 lines through it, it can
+	 * never be flipped either.
+	 *
+	 * @param player Mask of the player's pieces.
+	 * @param occupied Mask of all the pieces on the board.
+	 * @return Mask of the player's discs that can never be flipped.
+	 */
+	static private long getStableDiscs(long player, long occupied)
+	{
+		// The full lines, found by ANDing each cell with its neighbours
+		// along the line, then with theirs 2 away, then 4 (the masks stand
+		// in for the cells off the end of the line).
+		long line = occupied & (occupied >>> 1);
+		line &= line >>> 2;
+		line &= line >>> 4;
+		long fullRows = (line & 0x0101010101010101L) * 0xFF;
+
+		line = occupied & Long.rotateRight(occupied, 8);
+		line &= Long.rotateRight(line, 16);
+		line &= Long.rotateRight(line, 32);
+		long fullColumns = line;
+
+		line = occupied & ((occupied >>> 9) | 0xFF80808080808080L);
+		line &= (line >>> 18) | 0xFFFFC0C0C0C0C0C0L;
+		line &= (line >>> 36) | 0xFFFFFFFFF0F0F0F0L;
+		long back = occupied & ((occupied << 9) | 0x01010101010101FFL);
+		back &= (back << 18) | 0x030303030303FFFFL;
+		back &= (back << 36) | 0x0F0F0F0FFFFFFFFFL;
+		long fullDiagonals = line & back;
+
+		line = occupied & ((occupied >>> 7) | 0xFF01010101010101L);
+		line &= (line >>> 14) | 0xFFFF030303030303L;
+		line &= (line >>> 28) | 0xFFFFFFFF0F0F0F0FL;
+		back = occupied & ((occupied << 7) | 0x80808080808080FFL);
+		back &= (back << 14) | 0xC0C0C0C0C0C0FFFFL;
+		back &= (back << 28) | 0xF0F0F0F0FFFFFFFFL;
+		long fullAntiDiagonals = line & back;
+
+		fullRows |= LEFT_RIGHT;
+		fullColumns |= TOP_BOTTOM;
+		fullDiagonals |= BORDER;
+		fullAntiDiagonals |= BORDER;
+
+		long stable = 0, previous;
+
+		do
+		{
+			previous = stable;
+
+			long rows = fullRows | ((stable << 1) & 0xFEFEFEFEFEFEFEFEL)
+					| ((stable >>> 1) & 0x7F7F7F7F7F7F7F7FL);
+			long columns = fullColumns | (stable << 8) | (stable >>> 8);
+			long diagonals = fullDiagonals | ((stable << 9) & 0xFEFEFEFEFEFEFEFEL)
+					| ((stable >>> 9) & 0x7F7F7F7F7F7F7F7FL);
+			long antiDiagonals = fullAntiDiagonals | ((stable << 7) & 0x7F7F7F7F7F7F7F7FL)
+					| ((stable >>> 7) & 0xFEFEFEFEFEFEFEFEL);
+
+			stable = player & rows & columns & diagonals & antiDiagonals;
+		}
+		while (stable != previous);
+
+		return stable;
+	}
+
+
+	/**
+	 * Looks a position up in the table.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return Where the position's slot starts in the table, or -1 if
+	 * it isn't in the table.
+	 */
+	private int findInTable(long player, long opponent)
+	{
+		int index = tableIndex(player, opponent);
+
+		if (table[index] == player && table[index + 1] == opponent)
+			return index;
+
+		index += 3;
+
+		if (table[index] == player && table[index + 1] == opponent)
+			return index;
+
+		return -1;
+	}
+
+
+	/**
+	 * Stores what was found about a position in the table. Each position
+	 * can go in either of two slots: the first keeps whichever position
+	 * had the most empty cells (& so took the most work), the second
+	 * takes the rest. So the many small searches near the end can't push
+	 * out the few big ones near the root.
+	 *
+	 * @param index Where the position's slot starts, if it's in the
+	 * table already (else -1).
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param data The bounds, best move & number of empty cells, packed.
+	 */
+	private void store(int index, long player, long opponent, int data)
+	{
+		if (index < 0)
+		{
+			index = tableIndex(player, opponent);
+
+			// Whichever has fewer empty cells goes in the second slot.
+			if (((int) table[index + 2] >>> 24) > (data >>> 24))
+				index += 3;
+
+			else
+				System.arraycopy(table, index, table, index + 3, 3);
+		}
+
+		table[index] = player;
+		table[index + 1] = opponent;
+		table[index + 2] = data;
+	}
+
+
+	/**
+	 * Returns where the first of the table's two slots for the given
+	 * position starts.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return The start of the position's first slot.
+	 */
+	static private int tableIndex(long player, long opponent)
+	{
+		long mixed = player * 0x9E3779B97F4A7C15L ^ opponent * 0xC2B2AE3D27D4EB4FL;
+
+		return 3 * ((int) (mixed >>> (64 - TABLE_BITS)) & ~1);
+	}
+
+
+	/**
+	 * Fills the ply's move list with the moves in the mask, best
+	 * candidates first: the table's move, then by a shallow search far
+	 * from the end, fastest-first nearer it & parity closer still.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param moves Mask of the legal moves.
+	 * @param empty Mask of the empty cells.
+	 * @param numEmpty The number of empty cells.
+	 * @param firstMove A move to put first (the table's best move),
+	 * or NO_MOVE.
+	 * @param ply The ply whose move list to fill.
+	 * @return The number of moves.
+	 */
+	private int orderMoves(long player, long opponent, long moves, long empty,
+			int numEmpty, int firstMove, int ply)
+	{
+		int[] moveList = moveLists[ply];
+		int[] scores = moveScores[ply];
+		long[] flipList = moveFlips[ply];
+		int numMoves = 0;
+
+		int oddQuadrants = 0;
+
+		for (int q = 0; q < QUADRANTS.length; q++)
+			oddQuadrants |= (Long.bitCount(empty & QUADRANTS[q]) & 1) << q;
+
+		while (moves != 0)
+		{
+			int cell = Long.numberOfTrailingZeros(moves);
+			long bit = moves & -moves;
+			moves ^= bit;
+
+			long flips = getFlips(player, opponent, cell);
+			int score = ((oddQuadrants >>> QUADRANT_OF[cell]) & 1)
+					+ (((CORNERS & bit) != 0) ? 2 : 0);
+
+			if (numEmpty >= SHALLOW_ORDER_EMPTIES)
+				score = -shallowSearch(opponent ^ flips, player | flips | bit,
+						(numEmpty >= DEEPER_ORDER_EMPTIES) ? 3 : 2,
+						-FINISHED_WEIGHT * INFINITY, FINISHED_WEIGHT * INFINITY);
+
+			else if (numEmpty > FASTEST_FIRST_EMPTIES)
+			{
+				// The opponent's replies (corners count twice), then the
+				// empty cells next to the player's pieces they could reply
+				// on later
+				long after = player | flips | bit;
+				long replies = getValidMoves(opponent ^ flips, after);
+				int numReplies = Long.bitCount(replies) + Long.bitCount(replies & CORNERS);
+
+				score -= (numReplies << 4) + Long.bitCount(getNeighbours(after) & empty & ~bit);
+			}
+
+			if (cell == firstMove)
+				score = Integer.MAX_VALUE;
+
+			// Insertion sort, highest score first
+			int i = numMoves++;
+
+			while (i > 0 && scores[i - 1] < score)
+			{
+				moveList[i] = moveList[i - 1];
+				scores[i] = scores[i - 1];
+				flipList[i] = flipList[i - 1];
+				i--;
+			}
+
+			moveList[i] = cell;
+			scores[i] = score;
+			flipList[i] = flips;
+		}
+
+		return numMoves;
+	}
+
+
+	/**
+	 * A quick alpha-beta search to order moves by, scoring what the
+	 * players can do next rather than discs (see evaluate).
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param depth How many plies to search.
+	 * @param alpha The score the player to move is already sure of.
+	 * @param beta The score the opponent is already sure of (negated).
+	 * @return The position's score for the player to move.
+	 */
+	private int shallowSearch(long player, long opponent, int depth, int alpha, int beta)
+	{
+		long moves = getValidMoves(player, opponent);
+
+		// A player who can't move ends the game, & a finished game's
+		// score beats any guess.
+		if (moves == 0)
+			return FINISHED_WEIGHT * (Long.bitCount(player) - Long.bitCount(opponent));
+
+		if (depth == 0)
+			return evaluate(player, opponent, moves);
+
+		int best = -FINISHED_WEIGHT * INFINITY;
+
+		while (moves != 0)
+		{
+			int cell = Long.numberOfTrailingZeros(moves);
+			long bit = moves & -moves;
+			moves ^= bit;
+
+			long flips = getFlips(player, opponent, cell);
+			int score = -shallowSearch(opponent ^ flips, player | flips | bit, depth - 1,
+					-beta, -Math.max(alpha, best));
+
+			if (score > best)
+			{
+				best = score;
+
+				if (best >= beta)
+					break;
+			}
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Guesses how good a position is for the player to move, from its
+	 * mobility (corners count twice), corners & potential mobility (the
+	 * empty cells next to the opponent's pieces, less those next to the
+	 * player's).
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param moves Mask of the player's legal moves.
+	 * @return The guess.
+	 */
+	static private int evaluate(long player, long opponent, long moves)
+	{
+		long replies = getValidMoves(opponent, player);
+		long empty = ~(player | opponent);
+
+		return MOBILITY_WEIGHT * (Long.bitCount(moves) + Long.bitCount(moves & CORNERS)
+				- Long.bitCount(replies) - Long.bitCount(replies & CORNERS))
+				+ CORNER_WEIGHT * (Long.bitCount(player & CORNERS) - Long.bitCount(opponent & CORNERS))
+				+ POTENTIAL_MOBILITY_WEIGHT * (Long.bitCount(getNeighbours(opponent) & empty)
+						- Long.bitCount(getNeighbours(player) & empty));
+	}
+
+
+	/**
+	 * Returns a mask of the cells next to the pieces in the mask.
+	 *
+	 * @param pieces Mask of the pieces.
+	 * @return Mask of every cell next to one of the pieces (which may
+	 * include some of the pieces themselves).
+	 */
+	static private long getNeighbours(long pieces)
+	{
+		long sideways = ((pieces << 1) & 0xFEFEFEFEFEFEFEFEL)
+				| ((pieces >>> 1) & 0x7F7F7F7F7F7F7F7FL);
+		long row = pieces | sideways;
+
+		return sideways | (row << 8) | (row >>> 8);
+	}
+
+
+	/**
+	 * Solves a position with 4 or fewer empty cells, picking the
+	 * hand-unrolled solver for that many.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param empty Mask of the empty cells.
+	 * @param numEmpty The number of empty cells (0 - 4).
+	 * @param alpha The difference the player to move is already sure of.
+	 * @param beta The difference the opponent is already sure of (negated).
+	 * @return The final disc difference for the player to move.
+	 */
+	private int solveLast(long player, long opponent, long empty, int numEmpty,
+			int alpha, int beta)
+	{
+		if (numEmpty == 0)
+		{
+			nodes++;
+			return Long.bitCount(player) - Long.bitCount(opponent);
+		}
+
+		int x1 = Long.numberOfTrailingZeros(empty);
+		empty &= empty - 1;
+
+		if (numEmpty == 1)
+			return solve1(player, opponent, x1);
+
+		int x2 = Long.numberOfTrailingZeros(empty);
+		empty &= empty - 1;
+
+		if (numEmpty == 2)
+			return solve2(player, opponent, x1, x2, alpha, beta);
+
+		int x3 = Long.numberOfTrailingZeros(empty);
+		empty &= empty - 1;
+
+		if (numEmpty == 3)
+			return solve3(player, opponent, x1, x2, x3, alpha, beta);
+
+		int x4 = Long.numberOfTrailingZeros(empty);
+
+		// Parity: try the cells alone in their quadrant first. With 4
+		// empty cells, those are the ones whose quadrant holds 1 or 3.
+		int q1 = QUADRANT_OF[x1], q2 = QUADRANT_OF[x2];
+		int q3 = QUADRANT_OF[x3], q4 = QUADRANT_OF[x4];
+
+		if (q1 == q2 && q3 != q4)
+		{
+			// x1 & x2 share a quadrant, so x3 & x4 go first.
+			int t = x1; x1 = x3; x3 = t;
+			t = x2; x2 = x4; x4 = t;
+		}
+
+		else if (q1 == q3 && q2 != q4)
+		{
+			int t = x1; x1 = x2; x2 = t;
+			t = x3; x3 = x4; x4 = t;
+		}
+
+		else if (q1 == q4 && q2 != q3)
+		{
+			int t = x1; x1 = x2; x2 = t;
+			t = x4; x4 = x3; x3 = t;
+		}
+
+		return solve4(player, opponent, x1, x2, x3, x4, alpha, beta);
+	}
+
+
+	/**
+	 * Solves a position with one empty cell.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param x1 The empty cell.
+	 * @return The final disc difference for the player to move.
+	 */
+	private int solve1(long player, long opponent, int x1)
+	{
+		nodes++;
+
+		long flips = getFlips(player, opponent, x1);
+		int difference = Long.bitCount(player) - Long.bitCount(opponent);
+
+		// The player's move ends the game (the board is full); if they
+		// can't move, the game ends as it is.
+		if (flips == 0)
+			return difference;
+
+		return difference + 2 * Long.bitCount(flips) + 1;
+	}
+
+
+	/**
+	 * Solves a position with two empty cells.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param x1 An empty cell.
+	 * @param x2 The other empty cell.
+	 * @param alpha The difference the player to move is already sure of.
+	 * @param beta The difference the opponent is already sure of (negated).
+	 * @return The final disc difference for the player to move.
+	 */
+	private int solve2(long player, long opponent, int x1, int x2, int alpha, int beta)
+	{
+		nodes++;
+
+		int best = -INFINITY;
+		long flips = getFlips(player, opponent, x1);
+
+		if (flips != 0)
+		{
+			best = -solve1(opponent ^ flips, player | flips | (1L << x1), x2);
+
+			if (best >= beta)
+				return best;
+		}
+
+		flips = getFlips(player, opponent, x2);
+
+		if (flips != 0)
+			best = Math.max(best, -solve1(opponent ^ flips, player | flips | (1L << x2), x1));
+
+		if (best == -INFINITY)
+			return Long.bitCount(player) - Long.bitCount(opponent);
+
+		return best;
+	}
+
+
+	/**
+	 * Solves a position with three empty cells.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param x1 An empty cell.
+	 * @param x2 Another empty cell.
+	 * @param x3 The last empty cell.
+	 * @param alpha The difference the player to move is already sure of.
+	 * @param beta The difference the opponent is already sure of (negated).
+	 * @return The final disc difference for the player to move.
+	 */
+	private int solve3(long player, long opponent, int x1, int x2, int x3,
+			int alpha, int beta)
+	{
+		nodes++;
+
+		int best = -INFINITY;
+		long flips = getFlips(player, opponent, x1);
+
+		if (flips != 0)
+		{
+			best = -solve2(opponent ^ flips, player | flips | (1L << x1), x2, x3,
+					-beta, -alpha);
+
+			if (best >= beta)
+				return best;
+
+			alpha = Math.max(alpha, best);
+		}
+
+		flips = getFlips(player, opponent, x2);
+
+		if (flips != 0)
+		{
+			int score = -solve2(opponent ^ flips, player | flips | (1L << x2), x1, x3,
+					-beta, -alpha);
+
+			if (score >= beta)
+				return score;
+
+			best = Math.max(best, score);
+			alpha = Math.max(alpha, score);
+		}
+
+		flips = getFlips(player, opponent, x3);
+
+		if (flips != 0)
+			best = Math.max(best, -solve2(opponent ^ flips, player | flips | (1L << x3),
+					x1, x2, -beta, -alpha));
+
+		if (best == -INFINITY)
+			return Long.bitCount(player) - Long.bitCount(opponent);
+
+		return best;
+	}
+
+
+	/**
+	 * Solves a position with four empty cells.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param x1 An empty cell (tried first).
+	 * @param x2 Another empty cell.
+	 * @param x3 Another empty cell.
+	 * @param x4 The last empty cell (tried last).
+	 * @param alpha The difference the player to move is already sure of.
+	 * @param beta The difference the opponent is already sure of (negated).
+	 * @return The final disc difference for the player to move.
+	 */
+	private int solve4(long player, long opponent, int x1, int x2, int x3, int x4,
+			int alpha, int beta)
+	{
+		nodes++;
+
+		int best = -INFINITY;
+		long flips = getFlips(player, opponent, x1);
+
+		if (flips != 0)
+		{
+			best = -solve3(opponent ^ flips, player | flips | (1L << x1), x2, x3, x4,
+					-beta, -alpha);
+
+			if (best >= beta)
+				return best;
+
+			alpha = Math.max(alpha, best);
+		}
+
+		flips = getFlips(player, opponent, x2);
+
+		if (flips != 0)
+		{
+			int score = -solve3(opponent ^ flips, player | flips | (1L << x2), x1, x3, x4,
+					-beta, -alpha);
+
+			if (score >= beta)
+				return score;
+
+			best = Math.max(best, score);
+			alpha = Math.max(alpha, score);
+		}
+
+		flips = getFlips(player, opponent, x3);
+
+		if (flips != 0)
+		{
+			int score = -solve3(opponent ^ flips, player | flips | (1L << x3), x1, x2, x4,
+					-beta, -alpha);
+
+			if (score >= beta)
+				return score;
+
+			best = Math.max(best, score);
+			alpha = Math.max(alpha, score);
+		}
+
+		flips = getFlips(player, opponent, x4);
+
+		if (flips != 0)
+			best = Math.max(best, -solve3(opponent ^ flips, player | flips | (1L << x4),
+					x1, x2, x3, -beta, -alpha));
+
+		if (best == -INFINITY)
+			return Long.bitCount(player) - Long.bitCount(opponent);
+
+		return best;
+	}
+
+
+	/**
+	 * Returns a mask of every cell the player can put a piece on. The
+	 * same as GameLogic.getValidMoves, with the runs along each line
+	 * grown 1, 2, then 2 more cells at a time.
+	 *
+	 * @param player Mask of the player's pieces.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return Mask of the cells the player can put a piece on.
+	 */
+	static private long getValidMoves(long player, long opponent)
+	{
+		// The opponent's pieces a run can pass over sideways (not the
+		// first or last column, which would wrap around)
+		long inner = opponent & 0x7E7E7E7E7E7E7E7EL;
+
+		long moves = getMovesAlong(player, inner, 1) | getMovesAlong(player, opponent, 8)
+				| getMovesAlong(player, inner, 9) | getMovesAlong(player, inner, 7);
+
+		return moves & ~(player | opponent);
+	}
+
+
+	/**
+	 * Returns the cells just past a run of the opponent's pieces that
+	 * starts next to one of the player's, along one line both ways.
+	 *
+	 * @param player Mask of the player's pieces.
+	 * @param opponent Mask of the opponent's pieces a run can pass over.
+	 * @param shift How far apart neighbouring cells along the line are.
+	 * @return Mask of the cells (which may not be empty).
+	 */
+	static private long getMovesAlong(long player, long opponent, int shift)
+	{
+		long up = opponent & (player << shift);
+		long down = opponent & (player >>> shift);
+
+		up |= opponent & (up << shift);
+		down |= opponent & (down >>> shift);
+
+		// Pairs of the opponent's pieces, for growing 2 cells at a time
+		long pairsUp = opponent & (opponent << shift);
+		long pairsDown = pairsUp >>> shift;
+
+		up |= pairsUp & (up << (2 * shift));
+		down |= pairsDown & (down >>> (2 * shift));
+		up |= pairsUp & (up << (2 * shift));
+		down |= pairsDown & (down >>> (2 * shift));
+
+		return (up << shift) | (down >>> shift);
+	}
+
+
+	/**
+	 * Returns a mask of the opponent's pieces a move on the cell would
+	 * flip. The same as GameLogic.getFlips, but each direction takes a
+	 * few steps: beyond the cell, adding the cell's neighbour carries
+	 * along the opponent's pieces to the first cell that isn't one;
+	 * before it, the highest cell that isn't one is found at once.
+	 *
+	 * @param player Mask of the player's pieces.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param cell The cell (row * 8 + col).
+	 * @return Mask of the pieces the move flips (0 if it isn't a move).
+	 */
+	static private long getFlips(long player, long opponent, int cell)
+	{
+		// Nothing to flip without one of the opponent's pieces next to it
+		if ((NEIGHBOURS[cell] & opponent) == 0)
+			return 0;
+
+		long move = 1L << cell;
+
+		return getFlipsAfter(player, opponent, ROW_AFTER[cell], move << 1)
+				| getFlipsAfter(player, opponent, COLUMN_AFTER[cell], move << 8)
+				| getFlipsAfter(player, opponent, DIAGONAL_AFTER[cell], move << 9)
+				| getFlipsAfter(player, opponent, ANTI_AFTER[cell], move << 7)
+				| getFlipsBefore(player, opponent, ROW_BEFORE[cell], move)
+				| getFlipsBefore(player, opponent, COLUMN_BEFORE[cell], move)
+				| getFlipsBefore(player, opponent, DIAGONAL_BEFORE[cell], move)
+				| getFlipsBefore(player, opponent, ANTI_BEFORE[cell], move);
+	}
+
+
+	/**
+	 * Returns the opponent's pieces a move would flip along one line,
+	 * beyond the move's cell.
+	 *
+	 * @param player Mask of the player's pieces.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param line Mask of the cells along the line beyond the move's.
+	 * @param next The first of them (if any).
+	 * @return Mask of the pieces the move flips along the line.
+	 */
+	static private long getFlipsAfter(long player, long opponent, long line, long next)
+	{
+		// The carry stops at the first of the line's cells that isn't the
+		// opponent's (the cells off the line pass it on).
+		long end = ((opponent | ~line) + next) & player & line;
+
+		return (end - ((end == 0) ? 0 : next)) & line;
+	}
+
+
+	/**
+	 * Returns the opponent's pieces a move would flip along one line,
+	 * before the move's cell.
+	 *
+	 * @param player Mask of the player's pieces.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param line Mask of the cells along the line before the move's.
+	 * @param move The move's cell.
+	 * @return Mask of the pieces the move flips along the line.
+	 */
+	static private long getFlipsBefore(long player, long opponent, long line, long move)
+	{
+		long end = Long.highestOneBit(~opponent & line) & player;
+
+		// -end masks off everything when there's no end.
+		return (move - (end << 1)) & line & -end;
+	}
+}
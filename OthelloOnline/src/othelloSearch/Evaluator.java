@@ -0,0 +1,24 @@
+package othelloSearch;
+
+
+/**
+ * Scores positions that the search doesn't look past. Scores are
+ * from the point of view of the player to move: positive is good
+ * for them. Implementations must keep their scores between
+ * -SearchEngine.WIN_SCORE & SearchEngine.WIN_SCORE, so that a won or
+ * lost game always outscores a guess.
+ *
+ * @author ubuntu
+ *
+ */
+public interface Evaluator
+{
+	/**
+	 * Scores the position for the player to move.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return The position's score.
+	 */
+	public int evaluate(long player, long opponent);
+}
@@ -0,0 +1,752 @@
+package othelloSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import othelloGame.Color;
+import othelloGame.GameLogic;
+import othelloGame.Othello;
+
+
+/**
+ * A computer player that uses Monte Carlo tree search instead of an
+ * evaluator: it plays many random games (playouts) from the position,
+ * growing a tree of the moves that keep doing well & picking the move
+ * whose line was played most. Moves in the tree are chosen by UCT (the
+ * win rate plus a bonus for rarely tried moves); with RAVE on, a move's
+ * win rate is also judged by every playout in which the same player
+ * made it later on (all moves as first), which sharpens the win rate
+ * while the move has few playouts of its own. RAVE is off by default:
+ * with random playouts, where a move is played later says little
+ * about playing it now in Othello (corners especially), & in test
+ * matches it played no better than plain UCT.
+ *
+ * Strength is set by the number of playouts per move, which (unlike a
+ * time limit) makes a move cost the same every time on any machine.
+ * TIER_PLAYOUTS gives the playouts of each difficulty tier. A playout
+ * plays the game to the end, so the opening's moves cost the most &
+ * the cost falls as the board fills.
+ *
+ * The playouts run on several threads at once, all working on the same
+ * tree. A thread counts its visit to each node on the way down & only
+ * adds the result on the way back, so until then the line looks like a
+ * loss (a "virtual loss") & the other threads tend to try other lines.
+ *
+ * The tree is kept in one array per field, indexed by node number, so
+ * a node costs no object. A node's children sit next to each other.
+ * When the next search's position is in the tree (after one or two
+ * moves), that part of the tree is kept & its playouts still count.
+ *
+ * The search plays by this game's rules: a player who can't move ends
+ * the game (see Othello.isFinished).
+ *
+ * Not thread-safe: make one call to search at a time. Call close when
+ * done with it to stop the helper threads.
+ *
+ * @author ubuntu
+ *
+ */
+public class MctsEngine implements AutoCloseable
+{
+	// Playouts per move of each difficulty tier, from the easiest
+	static public final int[] TIER_PLAYOUTS = {200, 1000, 5000, 20000, 50000};
+
+	// The tiers' names
+	static public final String[] TIER_NAMES = {"beginner", "easy", "medium", "hard", "expert"};
+
+	// Playouts per move if no tier is set (the "medium" tier)
+	static public final int DEFAULT_PLAYOUTS = 5000;
+
+	// Weight of the UCT bonus for rarely tried moves
+	static public final double DEFAULT_EXPLORATION = 0.7;
+
+	// RAVE's number of playouts at which a move's own win rate & its
+	// all-moves-as-first win rate count equally
+	static private final double RAVE_EQUIVALENCE = 100;
+
+	// A leaf gets children once it has this many visits
+	static private final int EXPAND_VISITS = 2;
+
+	// Values of a node's first child before the node has children. A
+	// node with children but none of them (no moves) ends the game.
+	static private final int UNEXPANDED = -1;
+	static private final int EXPANDING = -2;
+
+	// Bytes a node takes: a byte each for the move & number of
+	// children, an int each for the first child, visits, wins, RAVE
+	// visits & RAVE wins, twice (for the tree & the spare one it's
+	// copied into to keep part of it) plus an int to do the copy.
+	static private final int NODE_BYTES = 2 * (2 + 5 * 4) + 4;
+
+
+	/**
+	 * A tree of nodes, node 0 being the root. Wins are counted in half
+	 * points (a win is 2, a tie 1) from the side of the player who made
+	 * the node's move.
+	 */
+	static private class Tree
+	{
+		// Each node's move (into it) & number of children
+		final byte[] moves;
+		final byte[] numChildren;
+
+		// Each node's first child, or UNEXPANDED or EXPANDING
+		final AtomicIntegerArray firstChild;
+
+		// Each node's visits & wins, & its RAVE visits & wins
+		final AtomicIntegerArray visits;
+		final AtomicIntegerArray wins;
+		final AtomicIntegerArray raveVisits;
+		final AtomicIntegerArray raveWins;
+
+		// The number of nodes in use
+		final AtomicInteger size = new AtomicInteger();
+
+		Tree(int capacity)
+		{
+			moves = new byte[capacity];
+			numChildren = new byte[capacity];
+			firstChild = new AtomicIntegerArray(capacity);
+			visits = new AtomicIntegerArray(capacity);
+			wins = new AtomicIntegerArray(capacity);
+			raveVisits = new AtomicIntegerArray(capacity);
+			raveWins = new AtomicIntegerArray(capacity);
+		}
+
+		/**
+		 * Adds count nodes with no visits or children.
+		 *
+		 * @param count The number of nodes.
+		 * @return The first new node, or -1 if the tree is full.
+		 */
+		int allocate(int count)
+		{
+			if (size.get() + count > moves.length)
+				return -1;
+
+			int first = size.getAndAdd(count);
+
+			// Another thread could have taken the last room meanwhile.
+			if (first + count > moves.length)
+				return -1;
+
+			for (int node = first; node < first + count; node++)
+			{
+				firstChild.lazySet(node, UNEXPANDED);
+				visits.lazySet(node, 0);
+				wins.lazySet(node, 0);
+				raveVisits.lazySet(node, 0);
+				raveWins.lazySet(node, 0);
+			}
+
+			return first;
+		}
+	}
+
+
+	// The tree & the spare one it's copied into to keep part of it
+	private Tree tree;
+	private Tree spare;
+
+	// The old node numbers of the nodes being copied into the spare tree
+	private final int[] origins;
+
+	// The root's position (valid if the tree isn't empty)
+	private long rootPlayer;
+	private long rootOpponent;
+
+	// The budget for each search & how the tree is searched
+	private int playouts = DEFAULT_PLAYOUTS;
+	private double exploration = DEFAULT_EXPLORATION;
+	private boolean rave;
+
+	// Runs the helper threads (null if there is only one thread)
+	private final ExecutorService helpers;
+	private final int numThreads;
+
+
+	/**
+	 * Creates an engine.
+	 *
+	 * @param megabytes The memory to give the tree. Once it's full the
+	 * tree stops growing & the playouts start from its leaves.
+	 * @param theNumThreads The number of threads (at least 1).
+	 * @throws IllegalArgumentException Thrown if the tree would hold
+	 * no nodes or theNumThreads is less than 1.
+	 */
+	public MctsEngine(int megabytes, int theNumThreads) throws IllegalArgumentException
+	{
+		long capacity = ((long) megabytes << 20) / NODE_BYTES;
+
+		if (capacity < 1 || capacity > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Bad tree size: " + megabytes + " MB");
+
+		if (theNumThreads < 1)
+			throw new IllegalArgumentException("A search needs at least one thread.");
+
+		tree = new Tree((int) capacity);
+		spare = new Tree((int) capacity);
+		origins = new int[(int) capacity];
+		numThreads = theNumThreads;
+
+		helpers = (numThreads == 1) ? null : Executors.newFixedThreadPool(numThreads - 1, r -> {
+			Thread thread = new Thread(r, "othello-mcts-helper");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+
+	/**
+	 * Sets the number of playouts each search plays.
+	 *
+	 * @param thePlayouts The number of playouts (at least 1).
+	 * @throws IllegalArgumentException Thrown if thePlayouts is less
+	 * than 1.
+	 */
+	public void setPlayouts(int thePlayouts) throws IllegalArgumentException
+	{
+		if (thePlayouts < 1)
+			throw new IllegalArgumentException("A search needs at least one playout.");
+
+		playouts = thePlayouts;
+	}
+
+
+	/**
+	 * Sets the number of playouts to a difficulty tier's.
+	 *
+	 * @param tier The tier (an index into TIER_PLAYOUTS).
+	 * @throws IllegalArgumentException Thrown if there's no such tier.
+	 */
+	public void setTier(int tier) throws IllegalArgumentException
+	{
+		if (tier < 0 || tier >= TIER_PLAYOUTS.length)
+			throw new IllegalArgumentException("No such difficulty tier: " + tier);
+
+		playouts = TIER_PLAYOUTS[tier];
+	}
+
+
+	/**
+	 * Turns RAVE on or off (it's off by default).
+	 *
+	 * @param theRave Whether to use RAVE.
+	 */
+	public void setRave(boolean theRave)
+	{
+		rave = theRave;
+	}
+
+
+	/**
+	 * Sets the weight of the UCT bonus for rarely tried moves (higher
+	 * spreads the playouts more evenly).
+	 *
+	 * @param theExploration The weight.
+	 */
+	public void setExploration(double theExploration)
+	{
+		exploration = theExploration;
+	}
+
+
+	/**
+	 * Finds the best move for the current player of the given game.
+	 * Doesn't change the game.
+	 *
+	 * @param game The game.
+	 * @return The search's result.
+	 */
+	public SearchResult search(Othello game)
+	{
+		Color toMove = game.getCurrentPlayer();
+
+		return search(game.getBoard().getPieceMask(toMove),
+				game.getBoard().getPieceMask(SearchEngine.opposite(toMove)));
+	}
+
+
+	/**
+	 * Finds the best move for the player to move. The result's score is
+	 * the best move's expected result, from -1000 (sure to lose) to
+	 * 1000 (sure to win), its depth is the length of its principal
+	 * variation & its node count is the number of playouts.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return The search's result.
+	 */
+	public SearchResult search(long player, long opponent)
+	{
+		long start = System.nanoTime();
+
+		if (GameLogic.getValidMoves(player, opponent) == 0)
+			return new SearchResult(TranspositionTable.NO_MOVE,
+					SearchEngine.getFinalScore(player, opponent), 0, new int[0], 0,
+					System.nanoTime() - start);
+
+		reuseTree(player, opponent);
+
+		if (tree.firstChild.get(0) == UNEXPANDED)
+			expand(tree, 0, player, opponent);
+
+		AtomicLong started = new AtomicLong();
+		List<Future<?>> helperRuns = new ArrayList<>(numThreads);
+
+		for (int i = 1; i < numThreads; i++)
+			helperRuns.add(helpers.submit(() -> runPlayouts(player, opponent, started)));
+
+		runPlayouts(player, opponent, started);
+
+		for (Future<?> helperRun : helperRuns)
+			waitFor(helperRun);
+
+		int[] line = getPrincipalVariation();
+		int best = getMostVisitedChild(0);
+		int visits = Math.max(tree.visits.get(best), 1);
+
+		return new SearchResult(line[0],
+				(int) Math.round(1000.0 * (tree.wins.get(best) - visits) / visits),
+				line.length, line, playouts, System.nanoTime() - start);
+	}
+
+
+	/**
+	 * Plays playouts until the search's budget is used up.
+	 *
+	 * @param player Mask of the pieces of the player to move at the root.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param started The number of playouts started so far (by every
+	 * thread).
+	 */
+	private void runPlayouts(long player, long opponent, AtomicLong started)
+	{
+		int[] path = new int[SearchEngine.MAX_PLY + 1];
+		long[] played = new long[2];
+
+		while (started.getAndIncrement() < playouts)
+			playout(player, opponent, path, played);
+	}
+
+
+	/**
+	 * Plays one playout: walks down the tree by UCT, adds children to the
+	 * leaf it reaches if it's been visited enough, plays random moves to
+	 * the end of the game & adds the result to every node on the way.
+	 *
+	 * @param player Mask of the pieces of the player to move at the root.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param path Scratch space for the nodes on the way down.
+	 * @param played Scratch space for the cells each side played
+	 * (played[ply % 2] has the cells played at even or odd plies).
+	 */
+	private void playout(long player, long opponent, int[] path, long[] played)
+	{
+		Tree tree = this.tree;
+		int node = 0;
+		int ply = 0;
+
+		path[0] = 0;
+		played[0] = 0;
+		played[1] = 0;
+		tree.visits.incrementAndGet(0);
+
+		while (true)
+		{
+			int first = tree.firstChild.get(node);
+
+			if (first < 0)
+			{
+				if (first == UNEXPANDED && tree.visits.get(node) >= EXPAND_VISITS
+						&& expand(tree, node, player, opponent))
+					continue;
+
+				break;
+			}
+
+			int count = tree.numChildren[node];
+
+			if (count == 0)
+				break;
+
+			node = select(tree, node, first, count);
+
+			int cell = tree.moves[node];
+			long flips = GameLogic.getFlips(player, opponent, cell);
+			long nextPlayer = opponent & ~flips;
+
+			opponent = player | flips | (1L << cell);
+			player = nextPlayer;
+
+			// Count the visit now (a virtual loss until the result is in).
+			tree.visits.incrementAndGet(node);
+			path[++ply] = node;
+		}
+
+		int depth = ply;
+		long moves;
+
+		while ((moves = GameLogic.getValidMoves(player, opponent)) != 0)
+		{
+			for (int skip = ThreadLocalRandom.current().nextInt(Long.bitCount(moves)); skip > 0; skip--)
+				moves &= moves - 1;
+
+			int cell = Long.numberOfTrailingZeros(moves);
+			long flips = GameLogic.getFlips(player, opponent, cell);
+			long nextPlayer = opponent & ~flips;
+
+			played[ply & 1] |= 1L << cell;
+			opponent = player | flips | (1L << cell);
+			player = nextPlayer;
+			ply++;
+		}
+
+		// The root's player's result, in half points
+		int difference = Long.bitCount(player) - Long.bitCount(opponent);
+
+		if (ply % 2 == 1)
+			difference = -difference;
+
+		int points = (difference > 0) ? 2 : (difference == 0) ? 1 : 0;
+
+		for (int i = depth; i >= 1; i--)
+			tree.wins.addAndGet(path[i], (i % 2 == 1) ? points : 2 - points);
+
+		if (rave)
+			updateRave(tree, path, depth, played, points);
+	}
+
+
+	/**
+	 * Adds a playout's result to the RAVE counts: at each node on the
+	 * way down, to every child whose move the node's player to move made
+	 * at that node or later.
+	 *
+	 * @param tree The tree.
+	 * @param path The nodes on the way down.
+	 * @param depth The number of moves on the way down.
+	 * @param played The cells played in the playout (after the way down)
+	 * at even & at odd plies.
+	 * @param points The root's player's result, in half points.
+	 */
+	private void updateRave(Tree tree, int[] path, int depth, long[] played, int points)
+	{
+		for (int ply = depth - 1; ply >= 0; ply--)
+		{
+			played[ply & 1] |= 1L << tree.moves[path[ply + 1]];
+
+			long cells = played[ply & 1];
+			int first = tree.firstChild.get(path[ply]);
+			int last = first + tree.numChildren[path[ply]];
+			int moverPoints = (ply % 2 == 0) ? points : 2 - points;
+
+			for (int child = first; child < last; child++)
+			{
+				if ((cells & (1L << tree.moves[child])) != 0)
+				{
+					tree.raveVisits.incrementAndGet(child);
+					tree.raveWins.addAndGet(child, moverPoints);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Picks the child to visit: the one with the best win rate plus UCT
+	 * bonus (or one with no visits yet). With RAVE on, a child's win rate
+	 * starts out as its all-moves-as-first win rate & shifts to its own
+	 * as it gets playouts.
+	 *
+	 * @param tree The tree.
+	 * @param node The node.
+	 * @param first The node's first child.
+	 * @param count The number of children.
+	 * @return The child.
+	 */
+	private int select(Tree tree, int node, int first, int count)
+	{
+		double logVisits = Math.log(Math.max(tree.visits.get(node), 1));
+		double bestValue = Double.NEGATIVE_INFINITY;
+		int best = first;
+
+		for (int child = first; child < first + count; child++)
+		{
+			int visits = tree.visits.get(child);
+
+			// Every child gets a playout of its own before any gets two.
+			if (visits == 0)
+				return child;
+
+			double winRate = tree.wins.get(child) / (2.0 * visits);
+
+			if (rave)
+			{
+				int raveVisits = tree.raveVisits.get(child);
+
+				if (raveVisits > 0)
+				{
+					double beta = Math.sqrt(RAVE_EQUIVALENCE / (3 * visits + RAVE_EQUIVALENCE));
+					double raveRate = tree.raveWins.get(child) / (2.0 * raveVisits);
+
+					winRate = (1 - beta) * winRate + beta * raveRate;
+				}
+			}
+
+			double value = winRate + exploration * Math.sqrt(logVisits / visits);
+
+			if (value > bestValue)
+			{
+				bestValue = value;
+				best = child;
+			}
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Gives the node a child for each of its moves (none if the game is
+	 * over), unless another thread is already doing it or the tree is
+	 * full.
+	 *
+	 * @param tree The tree.
+	 * @param node The node.
+	 * @param player Mask of the pieces of the player to move at the node.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return Whether the node now has its children.
+	 */
+	private boolean expand(Tree tree, int node, long player, long opponent)
+	{
+		if (!tree.firstChild.compareAndSet(node, UNEXPANDED, EXPANDING))
+			return false;
+
+		long moves = GameLogic.getValidMoves(player, opponent);
+		int count = Long.bitCount(moves);
+		int first = tree.allocate(count);
+
+		if (first < 0)
+		{
+			tree.firstChild.set(node, UNEXPANDED);
+			return false;
+		}
+
+		for (int child = first; moves != 0; child++, moves &= moves - 1)
+			tree.moves[child] = (byte) Long.numberOfTrailingZeros(moves);
+
+		tree.numChildren[node] = (byte) count;
+
+		// Publishes the children to the other threads.
+		tree.firstChild.set(node, first);
+		return true;
+	}
+
+
+	/**
+	 * Makes the position the tree's root. Keeps the part of the tree
+	 * under it if it's the root or one or two moves below it, otherwise
+	 * starts an empty tree.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 */
+	private void reuseTree(long player, long opponent)
+	{
+		int newRoot = (tree.size.get() == 0) ? -1
+				: findNode(0, rootPlayer, rootOpponent, player, opponent, 2);
+
+		if (newRoot > 0)
+		{
+			copySubtree(newRoot);
+
+			Tree swap = tree;
+			tree = spare;
+			spare = swap;
+		}
+
+		else if (newRoot < 0)
+		{
+			tree.size.set(0);
+			tree.allocate(1);
+		}
+
+		rootPlayer = player;
+		rootOpponent = opponent;
+	}
+
+
+	/**
+	 * Finds the node of a position at most maxMoves moves below a node.
+	 *
+	 * @param node The node to start from.
+	 * @param nodePlayer Mask of the pieces of the player to move at the
+	 * node.
+	 * @param nodeOpponent Mask of the opponent's pieces.
+	 * @param player Mask of the pieces of the player to move in the
+	 * position.
+	 * @param opponent Mask of the opponent's pieces in the position.
+	 * @param maxMoves How far below the node to look.
+	 * @return The position's node, or -1 if it's not there.
+	 */
+	private int findNode(int node, long nodePlayer, long nodeOpponent, long player,
+			long opponent, int maxMoves)
+	{
+		if (nodePlayer == player && nodeOpponent == opponent)
+			return node;
+
+		int first = tree.firstChild.get(node);
+
+		if (maxMoves == 0 || first < 0)
+			return -1;
+
+		for (int child = first; child < first + tree.numChildren[node]; child++)
+		{
+			int cell = tree.moves[child];
+			long flips = GameLogic.getFlips(nodePlayer, nodeOpponent, cell);
+			int found = findNode(child, nodeOpponent & ~flips, nodePlayer | flips | (1L << cell),
+					player, opponent, maxMoves - 1);
+
+			if (found >= 0)
+				return found;
+		}
+
+		return -1;
+	}
+
+
+	/**
+	 * Copies the part of the tree under a node into the spare tree,
+	 * with the node as its root.
+	 *
+	 * @param root The node.
+	 */
+	private void copySubtree(int root)
+	{
+		spare.size.set(0);
+		spare.allocate(1);
+		origins[0] = root;
+
+		// The spare tree's nodes are copied breadth first, so the nodes
+		// still to copy the children of are the ones after node.
+		for (int node = 0; node < spare.size.get(); node++)
+		{
+			int origin = origins[node];
+
+			spare.moves[node] = tree.moves[origin];
+			spare.visits.set(node, tree.visits.get(origin));
+			spare.wins.set(node, tree.wins.get(origin));
+			spare.raveVisits.set(node, tree.raveVisits.get(origin));
+			spare.raveWins.set(node, tree.raveWins.get(origin));
+
+			int first = tree.firstChild.get(origin);
+
+			if (first < 0)
+				continue;
+
+			int count = tree.numChildren[origin];
+			int copyFirst = spare.allocate(count);
+
+			for (int i = 0; i < count; i++)
+				origins[copyFirst + i] = first + i;
+
+			spare.numChildren[node] = (byte) count;
+			spare.firstChild.set(node, copyFirst);
+		}
+	}
+
+
+	/**
+	 * Returns the node's most visited child.
+	 *
+	 * @param node A node with children.
+	 * @return The child.
+	 */
+	private int getMostVisitedChild(int node)
+	{
+		int first = tree.firstChild.get(node);
+		int best = first;
+
+		for (int child = first + 1; child < first + tree.numChildren[node]; child++)
+			if (tree.visits.get(child) > tree.visits.get(best))
+				best = child;
+
+		return best;
+	}
+
+
+	/**
+	 * Returns the line of play the tree expects: the most visited child
+	 * of the root, then its most visited child, & so on while the nodes
+	 * have visited children.
+	 *
+	 * @return The cells of the line's moves (at least one).
+	 */
+	private int[] getPrincipalVariation()
+	{
+		int[] line = new int[SearchEngine.MAX_PLY];
+		int length = 0;
+		int node = 0;
+
+		while (tree.firstChild.get(node) >= 0 && tree.numChildren[node] > 0)
+		{
+			node = getMostVisitedChild(node);
+
+			if (tree.visits.get(node) == 0)
+				break;
+
+			line[length++] = tree.moves[node];
+		}
+
+		if (length == 0)
+			line[length++] = tree.moves[getMostVisitedChild(0)];
+
+		int[] result = new int[length];
+		System.arraycopy(line, 0, result, 0, length);
+		return result;
+	}
+
+
+	/**
+	 * Waits for a helper's playouts.
+	 *
+	 * @param run The helper's pending run.
+	 * @throws IllegalStateException Thrown if the helper failed or the
+	 * wait was interrupted.
+	 */
+	private void waitFor(Future<?> run) throws IllegalStateException
+	{
+		try {
+			run.get();
+		}
+
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a search thread.", e);
+		}
+
+		catch (ExecutionException e) {
+			throw new IllegalStateException("A search thread failed.", e.getCause());
+		}
+	}
+
+
+	/**
+	 * Stops the helper threads.
+	 */
+	@Override
+	public void close()
+	{
+		if (helpers != null)
+			helpers.shutdownNow();
+	}
+}
@@ -0,0 +1,142 @@
+package othelloSearch;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import othelloGame.Color;
+import othelloGame.GameLogic;
+import othelloGame.Othello;
+
+
+/**
+ * Scores every legal move of a position, for hints & analysis: plays
+ * each move & searches the position after it (so every move gets its
+ * own score, rather than just the best move getting one). Moves with
+ * few enough empty cells left after them are solved exactly.
+ *
+ * Not thread-safe (it has one SearchEngine), but any number of
+ * analyzers can share one transposition table (give a shared table a
+ * generation interval; see TranspositionTable.setGenerationInterval).
+ *
+ * @author ubuntu
+ *
+ */
+public class MoveAnalyzer
+{
+	// Sorts the best move first (& equal moves by cell)
+	static private final Comparator<MoveScore> BEST_FIRST =
+			Comparator.comparingInt(MoveScore::getScore).reversed()
+					.thenComparingInt(MoveScore::getCell);
+
+	// The transposition table
+	private final TranspositionTable table;
+
+	// Searches the position after each move
+	private final SearchEngine engine;
+
+
+	/**
+	 * Creates an analyzer with no time or depth limit per move.
+	 *
+	 * @param theTable The transposition table (can be shared).
+	 * @param evaluator Scores the positions at the end of the search.
+	 */
+	public MoveAnalyzer(TranspositionTable theTable, Evaluator evaluator)
+	{
+		table = theTable;
+		engine = new SearchEngine(theTable, evaluator);
+	}
+
+
+	/**
+	 * Limits the search of each move to the given wall-clock time.
+	 *
+	 * @param millis The time limit per move in milliseconds (0 for none).
+	 */
+	public void setTimeLimit(long millis)
+	{
+		engine.setTimeLimit(millis);
+	}
+
+
+	/**
+	 * Limits how deep the search of each move goes.
+	 *
+	 * @param depth The maximum depth after the move (1 -
+	 * SearchEngine.MAX_PLY).
+	 */
+	public void setMaxDepth(int depth)
+	{
+		engine.setMaxDepth(depth);
+	}
+
+
+	/**
+	 * Sets how few empty cells the position after a move needs to be
+	 * solved exactly (see SearchEngine.setEndgameEmpties).
+	 *
+	 * @param empties The most empty cells to solve with (0 to never
+	 * solve).
+	 */
+	public void setEndgameEmpties(int empties)
+	{
+		engine.setEndgameEmpties(empties);
+	}
+
+
+	/**
+	 * Scores every legal move for the current player of the given game.
+	 * Doesn't change the game.
+	 *
+	 * @param game The game.
+	 * @return The moves' scores, best first (none if the game is over).
+	 */
+	public MoveScore[] analyze(Othello game)
+	{
+		Color toMove = game.getCurrentPlayer();
+
+		return analyze(game.getBoard().getPieceMask(toMove),
+				game.getBoard().getPieceMask(SearchEngine.opposite(toMove)), toMove);
+	}
+
+
+	/**
+	 * Scores every legal move for the player to move.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The moves' scores, best first (none if the game is over).
+	 */
+	public MoveScore[] analyze(long player, long opponent, Color toMove)
+	{
+		long moves = GameLogic.getValidMoves(player, opponent);
+		MoveScore[] scores = new MoveScore[Long.bitCount(moves)];
+
+		// One generation for every move's search, so each can use the
+		// entries the others stored.
+		table.newSearch();
+
+		for (int i = 0; moves != 0; i++, moves &= moves - 1)
+		{
+			int cell = Long.numberOfTrailingZeros(moves);
+			long flips = GameLogic.getFlips(player, opponent, cell);
+			long nextPlayer = opponent & ~flips;
+			long nextOpponent = player | flips | (1L << cell);
+
+			SearchResult result = engine.searchInGeneration(nextPlayer, nextOpponent,
+					SearchEngine.opposite(toMove));
+
+			// The search is exact if it reached the end of every line (it
+			// solved the position or the game ends there).
+			int empties = Long.bitCount(~(nextPlayer | nextOpponent));
+			boolean exact = result.getDepth() >= empties
+					|| GameLogic.getValidMoves(nextPlayer, nextOpponent) == 0;
+
+			scores[i] = new MoveScore(cell, -result.getScore(), result.getDepth() + 1, exact);
+		}
+
+		Arrays.sort(scores, BEST_FIRST);
+		return scores;
+	}
+}
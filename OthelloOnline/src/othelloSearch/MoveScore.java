@@ -0,0 +1,145 @@
+package othelloSearch;
+
+
+/**
+ * One legal move's analysis (see MoveAnalyzer): its search score &
+ * the outcome it's expected to lead to. The score is from the point of
+ * view of the player making the move, like a SearchResult's. Immutable.
+ *
+ * @author ubuntu
+ *
+ */
+final public class MoveScore
+{
+	// Expected outcomes, for the player making the move
+	static public final int WIN = 1;
+	static public final int DRAW = 0;
+	static public final int LOSS = -1;
+
+	// The move's cell (row * 8 + col)
+	private final int cell;
+
+	// The move's score & how deep the search behind it went
+	private final int score;
+	private final int depth;
+
+	// Whether the score is the game's actual result with perfect play
+	// (the search reached the end of every line) or just a guess
+	private final boolean exact;
+
+
+	/**
+	 * Creates a move's analysis.
+	 *
+	 * @param theCell The move's cell (row * 8 + col).
+	 * @param theScore The move's score.
+	 * @param theDepth How deep the search went, counting the move.
+	 * @param theExact Whether the score is the game's actual result.
+	 */
+	public MoveScore(int theCell, int theScore, int theDepth, boolean theExact)
+	{
+		cell = theCell;
+		score = theScore;
+		depth = theDepth;
+		exact = theExact;
+	}
+
+
+	/**
+	 * Returns the same analysis for another cell (the same move on a
+	 * rotated or reflected board).
+	 *
+	 * @param theCell The cell (row * 8 + col).
+	 * @return The analysis.
+	 */
+	public MoveScore withCell(int theCell)
+	{
+		return new MoveScore(theCell, score, depth, exact);
+	}
+
+
+	/**
+	 * Returns the move's cell.
+	 * @return The cell (row * 8 + col).
+	 */
+	public int getCell()
+	{
+		return cell;
+	}
+
+
+	/**
+	 * Returns the move's row.
+	 * @return The row.
+	 */
+	public int getRow()
+	{
+		return cell / 8;
+	}
+
+
+	/**
+	 * Returns the move's column.
+	 * @return The column.
+	 */
+	public int getCol()
+	{
+		return cell % 8;
+	}
+
+
+	/**
+	 * Returns the move's search score (see SearchEngine.getFinalScore
+	 * for how finished games score).
+	 * @return The score.
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+
+
+	/**
+	 * Returns how deep the search behind the score went.
+	 * @return The depth in plies, counting the move itself.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+
+	/**
+	 * Returns whether the score is the game's actual result with
+	 * perfect play from here.
+	 * @return True if the score is exact, false if it's a guess.
+	 */
+	public boolean isExact()
+	{
+		return exact;
+	}
+
+
+	/**
+	 * Returns the outcome the move is expected to lead to: the actual
+	 * one if the score is exact, otherwise whichever the score leans
+	 * toward.
+	 * @return WIN, DRAW or LOSS.
+	 */
+	public int getOutcome()
+	{
+		return Integer.signum(score);
+	}
+
+
+	/**
+	 * Returns the final disc difference the move leads to with perfect
+	 * play, if the score is exact.
+	 * @return The disc difference (for the player making the move), or
+	 * 0 if the score isn't exact.
+	 */
+	public int getDiscDifference()
+	{
+		return exact ? SearchEngine.getDiscDifference(score) : 0;
+	}
+}
@@ -0,0 +1,260 @@
+package othelloSearch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+
+import othelloGame.CanonicalPosition;
+import othelloGame.Color;
+import othelloGame.Othello;
+
+
+/**
+ * A book of opening moves, read straight out of a memory-mapped file.
+ * Opening the book maps the file read-only & checks its header; a probe
+ * is a binary search over the mapped records, so nothing is copied onto
+ * the heap & any number of threads can probe at once.
+ *
+ * The file is a header (magic number, version & number of records)
+ * followed by fixed-size (position key, move, weight) records sorted by
+ * key, then move. A position's key is its canonical hash (see
+ * othelloGame.Symmetry), so the book stores each position once no
+ * matter which way round it came up. The record's move is in the
+ * canonical orientation. A position has one record per book
+ * move; a move's weight is how good it's been (see BookBuilder).
+ *
+ * @author ubuntu
+ *
+ */
+public class OpeningBook
+{
+	// Identifies a book file ("OBOK") & its layout
+	static public final int MAGIC = 0x4F424F4B;
+	static public final int VERSION = 1;
+
+	// Bytes in the header (magic, version & number of records) & in
+	// each record (key, move & weight)
+	static public final int HEADER_BYTES = 16;
+	static public final int RECORD_BYTES = 16;
+
+	// The mapped file
+	private final ByteBuffer book;
+
+	// The number of records in the book
+	private final int numRecords;
+
+
+	/**
+	 * Opens the book in the given file (read-only).
+	 *
+	 * @param file The book file.
+	 * @throws IOException Thrown if the file can't be read.
+	 * @throws IllegalArgumentException Thrown if the file isn't a book.
+	 */
+	public OpeningBook(File file) throws IOException, IllegalArgumentException
+	{
+		// The mapping stays valid after the file is closed.
+		try (RandomAccessFile in = new RandomAccessFile(file, "r");
+				FileChannel channel = in.getChannel()) {
+			long size = channel.size();
+
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+				throw new IllegalArgumentException(file + " isn't an opening book.");
+
+			book = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		if (book.getInt(0) != MAGIC || book.getInt(4) != VERSION)
+			throw new IllegalArgumentException(file + " isn't an opening book "
+					+ "(or is from another version).");
+
+		long count = book.getLong(8);
+
+		if (count < 0 || HEADER_BYTES + count * RECORD_BYTES != book.capacity())
+			throw new IllegalArgumentException(file + " is cut short or corrupt.");
+
+		numRecords = (int) count;
+	}
+
+
+	/**
+	 * Returns the number of (position, move) records in the book.
+	 * @return The number of records.
+	 */
+	public int getNumRecords()
+	{
+		return numRecords;
+	}
+
+
+	/**
+	 * Returns the book's best (heaviest) move for the current player
+	 * of the given game.
+	 *
+	 * @param game The game.
+	 * @return The move's cell (row * 8 + col), or NO_MOVE if the
+	 * position isn't in the book.
+	 */
+	public int probe(Othello game)
+	{
+		return probe(game.getBoard().getPieceMask(Color.BLACK),
+				game.getBoard().getPieceMask(Color.WHITE), game.getCurrentPlayer(), null);
+	}
+
+
+	/**
+	 * Returns a book move for the position. With a source of randomness,
+	 * picks among the book's moves with odds in proportion to their
+	 * weights; without one, picks the heaviest.
+	 *
+	 * @param black Mask of the black pieces.
+	 * @param white Mask of the white pieces.
+	 * @param toMove The color of the player to move.
+	 * @param random The source of randomness, or null for the heaviest move.
+	 * @return The move's cell (row * 8 + col), or NO_MOVE if the
+	 * position isn't in the book.
+	 */
+	public int probe(long black, long white, Color toMove, Random random)
+	{
+		CanonicalPosition position = new CanonicalPosition(black, white, toMove);
+		long key = position.getHash();
+
+		int first = findFirst(key);
+		int end = first;
+		long totalWeight = 0;
+
+		while (end < numRecords && recordKey(end) == key)
+			totalWeight += recordWeight(end++);
+
+		if (first == end || totalWeight == 0)
+			return TranspositionTable.NO_MOVE;
+
+		int chosen = first;
+
+		if (random == null)
+		{
+			for (int i = first + 1; i < end; i++)
+				if (recordWeight(i) > recordWeight(chosen))
+					chosen = i;
+		}
+
+		else
+		{
+			long pick = (long) (random.nextDouble() * totalWeight);
+
+			while ((pick -= recordWeight(chosen)) >= 0 && chosen < end - 1)
+				chosen++;
+		}
+
+		return position.fromCanonical(recordMove(chosen));
+	}
+
+
+	/**
+	 * Returns the index of the first record with the given key (or where
+	 * it would go).
+	 *
+	 * @param key The position key.
+	 * @return The index of the first record whose key isn't smaller.
+	 */
+	private int findFirst(long key)
+	{
+		int low = 0, high = numRecords;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (recordKey(middle) < key)
+				low = middle + 1;
+
+			else
+				high = middle;
+		}
+
+		return low;
+	}
+
+
+	/**
+	 * Returns a record's position key.
+	 * @param record The record's index.
+	 * @return The record's key.
+	 */
+	private long recordKey(int record)
+	{
+		return book.getLong(HEADER_BYTES + record * RECORD_BYTES);
+	}
+
+
+	/**
+	 * Returns a record's move (in the canonical orientation).
+	 * @param record The record's index.
+	 * @return The record's move's cell.
+	 */
+	private int recordMove(int record)
+	{
+		return book.getInt(HEADER_BYTES + record * RECORD_BYTES + 8);
+	}
+
+
+	/**
+	 * Returns a record's weight.
+	 * @param record The record's index.
+	 * @return The record's weight.
+	 */
+	private int recordWeight(int record)
+	{
+		return book.getInt(HEADER_BYTES + record * RECORD_BYTES + 12);
+	}
+
+
+	/**
+	 * Writes a book file.
+	 *
+	 * @param file The file to write.
+	 * @param moves For each position key, the weight of each of its
+	 * moves (moves in the canonical orientation). The maps' orders are the
+	 * records' order. Moves with no weight are left out.
+	 * @throws IOException Thrown if the file can't be written.
+	 */
+	static public void write(File file,
+			SortedMap<Long, ? extends SortedMap<Integer, Integer>> moves) throws IOException
+	{
+		long count = 0;
+
+		for (Map<Integer, Integer> positionMoves : moves.values())
+			for (int weight : positionMoves.values())
+				if (weight > 0)
+					count++;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(count);
+
+			for (Map.Entry<Long, ? extends SortedMap<Integer, Integer>> position
+					: moves.entrySet())
+			{
+				for (Map.Entry<Integer, Integer> move : position.getValue().entrySet())
+				{
+					if (move.getValue() <= 0)
+						continue;
+
+					out.writeLong(position.getKey());
+					out.writeInt(move.getKey());
+					out.writeInt(move.getValue());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package othelloSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import othelloGame.Color;
+import othelloGame.Othello;
+
+
+/**
+ * Searches with several threads at once (Lazy SMP). Every thread runs
+ * its own SearchEngine on the same position & they all share one
+ * transposition table, so each thread's results speed up the others'.
+ * The calling thread runs the main search; the helper threads start
+ * every other one a ply deeper so they work ahead of it. When the
+ * main search finishes, the helpers are stopped & the deepest finished
+ * result wins (the main search's on a tie).
+ *
+ * Not thread-safe: make one call to search at a time. Call close when
+ * done with it to stop the helper threads.
+ *
+ * @author ubuntu
+ *
+ */
+public class ParallelSearch implements AutoCloseable
+{
+	// The table every thread shares
+	private final TranspositionTable table;
+
+	// One engine per thread; engines[0] runs on the calling thread.
+	private final SearchEngine[] engines;
+
+	// Runs the helper engines (null if there is only one thread)
+	private final ExecutorService helpers;
+
+	// Raised to stop the helpers once the main search is done
+	private final AtomicBoolean stopSignal = new AtomicBoolean();
+
+
+	/**
+	 * Creates a search that uses the given number of threads.
+	 *
+	 * @param theTable The transposition table every thread shares.
+	 * @param evaluator Scores the positions at the end of the search.
+	 * Must be safe to use from several threads at once.
+	 * @param numThreads The number of threads (at least 1).
+	 * @throws IllegalArgumentException Thrown if numThreads is less
+	 * than 1.
+	 */
+	public ParallelSearch(TranspositionTable theTable, Evaluator evaluator, int numThreads)
+			throws IllegalArgumentException
+	{
+		if (numThreads < 1)
+			throw new IllegalArgumentException("A search needs at least one thread.");
+
+		table = theTable;
+		engines = new SearchEngine[numThreads];
+
+		for (int i = 0; i < numThreads; i++)
+		{
+			engines[i] = new SearchEngine(theTable, evaluator);
+			engines[i].firstDepth = 1 + (i % 2);
+			engines[i].stopSignal = stopSignal;
+
+			// Only the main search solves endgames; a helper's result
+			// could never be deeper than the solver's.
+			if (i > 0)
+				engines[i].setEndgameEmpties(0);
+		}
+
+		helpers = (numThreads == 1) ? null : Executors.newFixedThreadPool(numThreads - 1, r -> {
+			Thread thread = new Thread(r, "othello-search-helper");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+
+	/**
+	 * Limits each search to the given wall-clock time.
+	 *
+	 * @param millis The time limit in milliseconds (0 for none).
+	 */
+	public void setTimeLimit(long millis)
+	{
+		for (SearchEngine engine : engines)
+			engine.setTimeLimit(millis);
+	}
+
+
+	/**
+	 * Limits how deep each search goes.
+	 *
+	 * @param depth The maximum depth (1 - SearchEngine.MAX_PLY).
+	 */
+	public void setMaxDepth(int depth)
+	{
+		for (SearchEngine engine : engines)
+			engine.setMaxDepth(depth);
+	}
+
+
+	/**
+	 * Sets how few empty cells a position needs for the main search to
+	 * solve it exactly (see SearchEngine.setEndgameEmpties).
+	 *
+	 * @param empties The most empty cells to solve with (0 to never
+	 * solve).
+	 */
+	public void setEndgameEmpties(int empties)
+	{
+		engines[0].setEndgameEmpties(empties);
+	}
+
+
+	/**
+	 * Gives every thread's engine the opening book (so a book move is
+	 * everyone's answer at once).
+	 *
+	 * @param book The opening book, or null for none.
+	 */
+	public void setOpeningBook(OpeningBook book)
+	{
+		for (SearchEngine engine : engines)
+			engine.setOpeningBook(book);
+	}
+
+
+	/**
+	 * Returns the number of threads each search uses.
+	 * @return The number of threads.
+	 */
+	public int getNumThreads()
+	{
+		return engines.length;
+	}
+
+
+	/**
+	 * Finds the best move for the current player of the given game.
+	 * Doesn't change the game.
+	 *
+	 * @param game The game.
+	 * @return The search's result. Its node count is the total over
+	 * every thread.
+	 */
+	public SearchResult search(Othello game)
+	{
+		Color toMove = game.getCurrentPlayer();
+
+		return search(game.getBoard().getPieceMask(toMove),
+				game.getBoard().getPieceMask(SearchEngine.opposite(toMove)), toMove);
+	}
+
+
+	/**
+	 * Finds the best move for the player to move.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The search's result. Its node count is the total over
+	 * every thread.
+	 */
+	public SearchResult search(long player, long opponent, Color toMove)
+	{
+		long start = System.nanoTime();
+		stopSignal.set(false);
+
+		// One generation for the whole search, started before any thread
+		// stores an entry.
+		table.newSearch();
+
+		List<Future<SearchResult>> helperResults = new ArrayList<>(engines.length);
+
+		for (int i = 1; i < engines.length; i++)
+		{
+			SearchEngine engine = engines[i];
+			helperResults.add(helpers.submit(() ->
+					engine.searchInGeneration(player, opponent, toMove)));
+		}
+
+		SearchResult best = engines[0].searchInGeneration(player, opponent, toMove);
+		long nodes = best.getNodes();
+
+		stopSignal.set(true);
+
+		for (Future<SearchResult> helperResult : helperResults)
+		{
+			SearchResult result = waitFor(helperResult);
+			nodes += result.getNodes();
+
+			if (result.getDepth() > best.getDepth())
+				best = result;
+		}
+
+		return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(),
+				best.getPrincipalVariation(), nodes, System.nanoTime() - start);
+	}
+
+
+	/**
+	 * Waits for a helper's result.
+	 *
+	 * @param result The helper's pending result.
+	 * @return The helper's result.
+	 * @throws IllegalStateException Thrown if the helper failed or the
+	 * wait was interrupted.
+	 */
+	private SearchResult waitFor(Future<SearchResult> result) throws IllegalStateException
+	{
+		try {
+			return result.get();
+		}
+
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a search thread.", e);
+		}
+
+		catch (ExecutionException e) {
+			throw new IllegalStateException("A search thread failed.", e.getCause());
+		}
+	}
+
+
+	/**
+	 * Stops the helper threads.
+	 */
+	@Override
+	public void close()
+	{
+		if (helpers != null)
+			helpers.shutdownNow();
+	}
+}
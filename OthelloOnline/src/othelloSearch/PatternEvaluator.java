@@ -0,0 +1,599 @@
+package othelloSearch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import othelloGame.Symmetry;
+
+
+/**
+ * An evaluator that scores a position by looking up each of its
+ * patterns (lines & blocks of cells) in a table of weights. A pattern's
+ * contents are read as a base-3 number, one digit per cell (0 empty,
+ * 1 the player to move's, 2 the opponent's), & that number is the
+ * index into the pattern's table. The score is the sum of the weights
+ * found.
+ *
+ * The patterns are the edges (with both X cells), the 3x3 corners, the
+ * 2x5 corner blocks & the diagonals of length 4 to 8. Each is looked up
+ * in every orientation the board's symmetries (see othelloGame.Symmetry)
+ * move it to, all sharing one table.
+ *
+ * There's a set of tables for each phase of the game (by number of
+ * pieces on the board). The weights are read from a file, which
+ * othelloTools.PatternTrainer makes: a header (magic number, version &
+ * number of phases), then every phase's tables as 16-bit weights in
+ * UNITS_PER_DISC. Once loaded, the tables never change, so threads can
+ * share an evaluator, & evaluating a position allocates nothing.
+ *
+ * @author ubuntu
+ *
+ */
+public class PatternEvaluator implements Evaluator
+{
+	// Identifies a weights file ("OPAT") & its layout
+	static public final int MAGIC = 0x4F504154;
+	static public final int VERSION = 1;
+
+	// Bytes in the header (magic, version & number of phases)
+	static public final int HEADER_BYTES = 12;
+
+	// A weight of UNITS_PER_DISC is worth one disc of final margin.
+	static public final int UNITS_PER_DISC = 100;
+
+	// The patterns' cells in one orientation, with the corner at (0, 0)
+	static private final int[][] PATTERNS = {
+		{0, 1, 2, 3, 4, 5, 6, 7, 9, 14},        // Edge & X cells
+		{0, 1, 2, 8, 9, 10, 16, 17, 18},        // 3x3 corner
+		{0, 1, 2, 3, 4, 8, 9, 10, 11, 12},      // 2x5 corner
+		{0, 9, 18, 27, 36, 45, 54, 63},         // Main diagonal
+		{1, 10, 19, 28, 37, 46, 55},            // Diagonals of length 7 ...
+		{2, 11, 20, 29, 38, 47},
+		{3, 12, 21, 30, 39},
+		{4, 13, 22, 31}                         // ... to 4
+	};
+
+	static public final int NUM_PATTERNS = PATTERNS.length;
+
+	// Where each pattern's table starts in a phase's weights
+	static private final int[] TABLE_OFFSETS = new int[NUM_PATTERNS];
+
+	// The number of weights in each phase (every pattern's table)
+	static public final int PHASE_SIZE;
+
+	// Every orientation of every pattern is an instance, looked up in
+	// the pattern's table (which starts at INSTANCE_OFFSETS[i]).
+	static private final int[] INSTANCE_OFFSETS;
+
+	static public final int NUM_INSTANCES;
+
+	// For each pattern that some symmetry maps onto itself in another
+	// order (like an edge read backwards), which of its cells each cell
+	// becomes; null for the rest
+	static private final int[][] SELF_SYMMETRIES = new int[NUM_PATTERNS][];
+
+	// To find an instance's code quickly, its cells are split into
+	// groups with at most one cell in each column (of the board, or of
+	// the transposed board when that takes fewer groups). Multiplying a
+	// group's pieces by GATHER adds every row into the top byte, which
+	// then has one bit per column, & GROUP_CODES[group * 256 + byte] is
+	// that byte's share of the code. Instance i's groups are
+	// GROUP_STARTS[i] ... GROUP_STARTS[i + 1] - 1.
+	static private final long GATHER = 0x0101010101010101L;
+	static private final int[] GROUP_STARTS;
+	static private final long[] GROUP_MASKS;
+	static private final boolean[] GROUP_TRANSPOSED;
+	static private final int[] GROUP_CODES;
+
+	static
+	{
+		int size = 0;
+		int numInstances = 0, numCells = 0;
+		long[][] instanceMasks = new long[NUM_PATTERNS][Symmetry.NUM_TRANSFORMS];
+		int[][] instanceTransforms = new int[NUM_PATTERNS][Symmetry.NUM_TRANSFORMS];
+		int[] numOrientations = new int[NUM_PATTERNS];
+
+		// Find each pattern's distinct orientations (symmetric patterns
+		// have fewer than 8).
+		for (int pattern = 0; pattern < NUM_PATTERNS; pattern++)
+		{
+			TABLE_OFFSETS[pattern] = size;
+			size += power3(PATTERNS[pattern].length);
+
+			for (int transform = 0; transform < Symmetry.NUM_TRANSFORMS; transform++)
+			{
+				long mask = 0;
+
+				for (int cell : PATTERNS[pattern])
+					mask |= 1L << Symmetry.transformCell(transform, cell);
+
+				boolean seen = false;
+
+				for (int i = 0; i < numOrientations[pattern]; i++)
+					seen |= (instanceMasks[pattern][i] == mask);
+
+				if (seen && mask == instanceMasks[pattern][0])
+					findSelfSymmetry(pattern, transform);
+
+				if (!seen)
+				{
+					instanceMasks[pattern][numOrientations[pattern]] = mask;
+					instanceTransforms[pattern][numOrientations[pattern]++] = transform;
+					numInstances++;
+					numCells += PATTERNS[pattern].length;
+				}
+			}
+		}
+
+		PHASE_SIZE = size;
+		NUM_INSTANCES = numInstances;
+		INSTANCE_OFFSETS = new int[numInstances];
+		GROUP_STARTS = new int[numInstances + 1];
+
+		// No instance has more groups than cells.
+		long[] masks = new long[numCells];
+		boolean[] transposed = new boolean[numCells];
+		int[] codes = new int[numCells * 256];
+		int instance = 0, numGroups = 0;
+
+		for (int pattern = 0; pattern < NUM_PATTERNS; pattern++)
+		{
+			int[] cells = new int[PATTERNS[pattern].length];
+
+			for (int i = 0; i < numOrientations[pattern]; i++)
+			{
+				for (int j = 0; j < cells.length; j++)
+					cells[j] = Symmetry.transformCell(instanceTransforms[pattern][i],
+							PATTERNS[pattern][j]);
+
+				INSTANCE_OFFSETS[instance] = TABLE_OFFSETS[pattern];
+				GROUP_STARTS[instance++] = numGroups;
+
+				long[] groups = splitIntoGroups(cells, false);
+				long[] transposedGroups = splitIntoGroups(cells, true);
+				boolean transpose = (transposedGroups.length < groups.length);
+
+				if (transpose)
+					groups = transposedGroups;
+
+				for (long group : groups)
+				{
+					masks[numGroups] = group;
+					transposed[numGroups] = transpose;
+
+					// The code adds 3^k for a piece on the cell k places
+					// from the instance's last cell.
+					for (int j = 0; j < cells.length; j++)
+					{
+						int cell = transpose ? Symmetry.transformCell(Symmetry.TRANSPOSE, cells[j])
+								: cells[j];
+
+						if ((group & (1L << cell)) == 0)
+							continue;
+
+						int place = power3(cells.length - 1 - j);
+
+						for (int row = 0; row < 256; row++)
+							if ((row & (1 << (cell & 7))) != 0)
+								codes[numGroups * 256 + row] += place;
+					}
+
+					numGroups++;
+				}
+			}
+		}
+
+		GROUP_STARTS[instance] = numGroups;
+		GROUP_MASKS = Arrays.copyOf(masks, numGroups);
+		GROUP_TRANSPOSED = Arrays.copyOf(transposed, numGroups);
+		GROUP_CODES = Arrays.copyOf(codes, numGroups * 256);
+	}
+
+	// The weights: weights[phase][index]
+	private final short[][] weights;
+
+	// The phase for each number of pieces on the board (0 - 64)
+	private final int[] phases = new int[65];
+
+
+	/**
+	 * Loads the weights in the given file.
+	 *
+	 * @param file The weights file.
+	 * @throws IOException Thrown if the file can't be read.
+	 * @throws IllegalArgumentException Thrown if the file isn't a
+	 * weights file.
+	 */
+	public PatternEvaluator(File file) throws IOException, IllegalArgumentException
+	{
+		ByteBuffer buffer;
+
+		try (RandomAccessFile in = new RandomAccessFile(file, "r");
+				FileChannel channel = in.getChannel()) {
+			long size = channel.size();
+
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+				throw new IllegalArgumentException(file + " isn't a pattern weights file.");
+
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IllegalArgumentException(file + " isn't a pattern weights file "
+					+ "(or is from another version).");
+
+		int numPhases = buffer.getInt(8);
+
+		if (numPhases < 1 || numPhases > 61
+				|| HEADER_BYTES + (long) numPhases * PHASE_SIZE * 2 != buffer.capacity())
+			throw new IllegalArgumentException(file + " is cut short or corrupt.");
+
+		weights = new short[numPhases][PHASE_SIZE];
+		buffer.position(HEADER_BYTES);
+		ShortBuffer in = buffer.asShortBuffer();
+
+		for (short[] phase : weights)
+			in.get(phase);
+
+		setPhases();
+	}
+
+
+	/**
+	 * Creates an evaluator with the given weights.
+	 *
+	 * @param theWeights The weights: theWeights[phase][index], with
+	 * PHASE_SIZE weights in each phase. Copied.
+	 * @throws IllegalArgumentException Thrown if there are no phases,
+	 * more than 61, or a phase is the wrong size.
+	 */
+	public PatternEvaluator(short[][] theWeights) throws IllegalArgumentException
+	{
+		checkWeights(theWeights);
+
+		weights = new short[theWeights.length][];
+
+		for (int phase = 0; phase < weights.length; phase++)
+			weights[phase] = theWeights[phase].clone();
+
+		setPhases();
+	}
+
+
+	/**
+	 * Fills in which phase goes with each number of pieces.
+	 */
+	private void setPhases()
+	{
+		for (int pieces = 0; pieces < phases.length; pieces++)
+			phases[pieces] = getPhase(pieces, weights.length);
+	}
+
+
+	/**
+	 * Returns the number of game phases the evaluator has weights for.
+	 * @return The number of phases.
+	 */
+	public int getNumPhases()
+	{
+		return weights.length;
+	}
+
+
+	@Override
+	public int evaluate(long player, long opponent)
+	{
+		short[] phaseWeights = weights[phases[Long.bitCount(player | opponent)]];
+		long playerTransposed = Symmetry.transpose(player);
+		long opponentTransposed = Symmetry.transpose(opponent);
+		int score = 0;
+
+		for (int instance = 0; instance < NUM_INSTANCES; instance++)
+			score += phaseWeights[getIndex(instance, player, opponent, playerTransposed,
+					opponentTransposed)];
+
+		return clamp(score);
+	}
+
+
+	/**
+	 * Scores many positions at once, as evaluate would, but faster per
+	 * position: each pattern instance is looked up for every position
+	 * before the next, so its code tables & the loop's masks stay in
+	 * registers & cache rather than being fetched again per position.
+	 * Allocates scratch space for each call (not per position).
+	 *
+	 * @param players Masks of the pieces of the player to move.
+	 * @param opponents Masks of the opponents' pieces.
+	 * @param scores Where to put the positions' scores.
+	 * @param count The number of positions (the first count of each
+	 * array).
+	 */
+	public void evaluate(long[] players, long[] opponents, int[] scores, int count)
+	{
+		long[] playersTransposed = new long[count];
+		long[] opponentsTransposed = new long[count];
+		short[][] phaseWeights = new short[count][];
+		int[] indexes = new int[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			playersTransposed[i] = Symmetry.transpose(players[i]);
+			opponentsTransposed[i] = Symmetry.transpose(opponents[i]);
+			phaseWeights[i] = weights[phases[Long.bitCount(players[i] | opponents[i])]];
+			scores[i] = 0;
+		}
+
+		for (int instance = 0; instance < NUM_INSTANCES; instance++)
+		{
+			Arrays.fill(indexes, 0, count, INSTANCE_OFFSETS[instance]);
+
+			for (int group = GROUP_STARTS[instance]; group < GROUP_STARTS[instance + 1]; group++)
+			{
+				long mask = GROUP_MASKS[group];
+				int table = group << 8;
+				long[] mine = GROUP_TRANSPOSED[group] ? playersTransposed : players;
+				long[] theirs = GROUP_TRANSPOSED[group] ? opponentsTransposed : opponents;
+
+				for (int i = 0; i < count; i++)
+					indexes[i] += GROUP_CODES[table + (int) (((mine[i] & mask) * GATHER) >>> 56)]
+							+ 2 * GROUP_CODES[table + (int) (((theirs[i] & mask) * GATHER) >>> 56)];
+			}
+
+			for (int i = 0; i < count; i++)
+				scores[i] += phaseWeights[i][indexes[i]];
+		}
+
+		for (int i = 0; i < count; i++)
+			scores[i] = clamp(scores[i]);
+	}
+
+
+	/**
+	 * Keeps a score inside what an evaluator may return.
+	 *
+	 * @param score The score.
+	 * @return The score, at most SearchEngine.WIN_SCORE - 1 either way.
+	 */
+	static private int clamp(int score)
+	{
+		return Math.max(-SearchEngine.WIN_SCORE + 1, Math.min(SearchEngine.WIN_SCORE - 1, score));
+	}
+
+
+	/**
+	 * Returns where one pattern instance's weight is in its phase's
+	 * weights: its table's start plus its base-3 code.
+	 *
+	 * @param instance The instance (0 - NUM_INSTANCES - 1).
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param playerTransposed The player's mask, transposed.
+	 * @param opponentTransposed The opponent's mask, transposed.
+	 * @return The weight's index.
+	 */
+	static private int getIndex(int instance, long player, long opponent,
+			long playerTransposed, long opponentTransposed)
+	{
+		int index = INSTANCE_OFFSETS[instance];
+
+		for (int group = GROUP_STARTS[instance]; group < GROUP_STARTS[instance + 1]; group++)
+		{
+			long mask = GROUP_MASKS[group];
+			boolean transposed = GROUP_TRANSPOSED[group];
+			int table = group << 8;
+
+			index += GROUP_CODES[table + (int) ((((transposed ? playerTransposed : player) & mask)
+					* GATHER) >>> 56)]
+					+ 2 * GROUP_CODES[table + (int) ((((transposed ? opponentTransposed : opponent)
+					& mask) * GATHER) >>> 56)];
+		}
+
+		return index;
+	}
+
+
+	/**
+	 * Finds where each pattern instance's weight is in its phase's
+	 * weights (for training).
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param indexes Where to put the NUM_INSTANCES indexes.
+	 */
+	static public void getIndexes(long player, long opponent, int[] indexes)
+	{
+		long playerTransposed = Symmetry.transpose(player);
+		long opponentTransposed = Symmetry.transpose(opponent);
+
+		for (int instance = 0; instance < NUM_INSTANCES; instance++)
+			indexes[instance] = getIndex(instance, player, opponent, playerTransposed,
+					opponentTransposed);
+	}
+
+
+	/**
+	 * Returns the phase a position with the given number of pieces is
+	 * in. The 61 possible counts (4 - 64) are split evenly.
+	 *
+	 * @param pieces The number of pieces on the board.
+	 * @param numPhases The number of phases.
+	 * @return The phase (0 - numPhases - 1).
+	 */
+	static public int getPhase(int pieces, int numPhases)
+	{
+		return Math.max(0, Math.min(numPhases - 1, (pieces - 4) * numPhases / 61));
+	}
+
+
+	/**
+	 * Records the order a transform that maps a pattern onto itself puts
+	 * its cells in, if it isn't the same order.
+	 *
+	 * @param pattern The pattern.
+	 * @param transform The transform.
+	 */
+	static private void findSelfSymmetry(int pattern, int transform)
+	{
+		int[] cells = PATTERNS[pattern];
+		int[] order = new int[cells.length];
+		boolean moved = false;
+
+		for (int i = 0; i < cells.length; i++)
+		{
+			int cell = Symmetry.transformCell(transform, cells[i]);
+
+			for (int j = 0; j < cells.length; j++)
+				if (cells[j] == cell)
+					order[i] = j;
+
+			moved |= (order[i] != i);
+		}
+
+		if (moved)
+			SELF_SYMMETRIES[pattern] = order;
+	}
+
+
+	/**
+	 * Splits an instance's cells into groups with at most one cell in
+	 * each column, putting each cell in the first group it fits.
+	 *
+	 * @param cells The instance's cells.
+	 * @param transpose Whether to split the cells as they are on the
+	 * transposed board (where columns are the board's rows).
+	 * @return The groups' masks (on the transposed board if transpose).
+	 */
+	static private long[] splitIntoGroups(int[] cells, boolean transpose)
+	{
+		long[] groups = new long[cells.length];
+		int numGroups = 0;
+
+		for (int cell : cells)
+		{
+			if (transpose)
+				cell = Symmetry.transformCell(Symmetry.TRANSPOSE, cell);
+
+			long column = GATHER << (cell & 7);
+			int group = 0;
+
+			while (group < numGroups && (groups[group] & column) != 0)
+				group++;
+
+			groups[group] |= 1L << cell;
+			numGroups = Math.max(numGroups, group + 1);
+		}
+
+		return Arrays.copyOf(groups, numGroups);
+	}
+
+
+	/**
+	 * Returns the index that holds the same pattern contents read in the
+	 * pattern's other order, for patterns that a symmetry maps onto
+	 * themselves (otherwise the index itself). Weights at the two must be
+	 * equal for the evaluation to score equivalent positions alike, so
+	 * training updates both.
+	 *
+	 * @param index The index in a phase's weights.
+	 * @return The symmetric index.
+	 */
+	static public int getSymmetricIndex(int index)
+	{
+		int pattern = NUM_PATTERNS - 1;
+
+		while (TABLE_OFFSETS[pattern] > index)
+			pattern--;
+
+		int[] order = SELF_SYMMETRIES[pattern];
+
+		if (order == null)
+			return index;
+
+		// Read the code's digits (the first cell's is the most
+		// significant), then put them back in the other order.
+		int[] digits = new int[order.length];
+		int code = index - TABLE_OFFSETS[pattern];
+
+		for (int i = order.length - 1; i >= 0; i--)
+		{
+			digits[i] = code % 3;
+			code /= 3;
+		}
+
+		for (int i = 0; i < order.length; i++)
+			code = 3 * code + digits[order[i]];
+
+		return TABLE_OFFSETS[pattern] + code;
+	}
+
+
+	/**
+	 * Returns 3 to the given power.
+	 * @param n The power.
+	 * @return 3^n.
+	 */
+	static private int power3(int n)
+	{
+		int result = 1;
+
+		for (int i = 0; i < n; i++)
+			result *= 3;
+
+		return result;
+	}
+
+
+	/**
+	 * Checks that the weights have a sensible number of phases of the
+	 * right size.
+	 *
+	 * @param weights The weights.
+	 * @throws IllegalArgumentException Thrown if they don't.
+	 */
+	static private void checkWeights(short[][] weights) throws IllegalArgumentException
+	{
+		if (weights.length < 1 || weights.length > 61)
+			throw new IllegalArgumentException("There must be 1 - 61 phases.");
+
+		for (short[] phase : weights)
+			if (phase.length != PHASE_SIZE)
+				throw new IllegalArgumentException("Each phase needs " + PHASE_SIZE + " weights.");
+	}
+
+
+	/**
+	 * Writes a weights file.
+	 *
+	 * @param file The file to write.
+	 * @param weights The weights: weights[phase][index], with
+	 * PHASE_SIZE weights in each phase.
+	 * @throws IOException Thrown if the file can't be written.
+	 * @throws IllegalArgumentException Thrown if there are no phases,
+	 * more than 61, or a phase is the wrong size.
+	 */
+	static public void write(File file, short[][] weights)
+			throws IOException, IllegalArgumentException
+	{
+		checkWeights(weights);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(weights.length);
+
+			for (short[] phase : weights)
+				for (short weight : phase)
+					out.writeShort(weight);
+		}
+	}
+}
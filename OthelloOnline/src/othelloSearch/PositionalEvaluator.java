@@ -0,0 +1,64 @@
+package othelloSearch;
+
+import othelloGame.GameLogic;
+
+
+/**
+ * A simple evaluator: each piece is worth a fixed amount depending
+ * on its cell (corners are good, the cells next to them are bad),
+ * plus a bonus for having more moves than the opponent. Needs no
+ * weight files, so it is the engine's default.
+ *
+ * @author ubuntu
+ *
+ */
+public class PositionalEvaluator implements Evaluator
+{
+	// The cells, grouped by what a piece on them is worth
+	static private final long CORNERS = 0x8100000000000081L;
+	static private final long X_CELLS = 0x0042000000004200L;
+	static private final long C_CELLS = 0x4281000000008142L;
+	static private final long EDGES = 0x3C0081818181003CL;
+	static private final long INNER_EDGES = 0x003C424242423C00L;
+	static private final long CENTER = ~(CORNERS | X_CELLS | C_CELLS | EDGES | INNER_EDGES);
+
+	// What a piece on each group of cells is worth
+	static private final int CORNER_WEIGHT = 100;
+	static private final int X_CELL_WEIGHT = -50;
+	static private final int C_CELL_WEIGHT = -20;
+	static private final int EDGE_WEIGHT = 8;
+	static private final int INNER_EDGE_WEIGHT = -3;
+	static private final int CENTER_WEIGHT = -1;
+
+	// What each move the player has (beyond the opponent's) is worth
+	static private final int MOBILITY_WEIGHT = 12;
+
+
+	@Override
+	public int evaluate(long player, long opponent)
+	{
+		int score = weigh(player) - weigh(opponent);
+
+		score += MOBILITY_WEIGHT * (Long.bitCount(GameLogic.getValidMoves(player, opponent))
+				- Long.bitCount(GameLogic.getValidMoves(opponent, player)));
+
+		return score;
+	}
+
+
+	/**
+	 * Returns the total worth of the given pieces.
+	 *
+	 * @param pieces Mask of the pieces.
+	 * @return What the pieces are worth.
+	 */
+	static private int weigh(long pieces)
+	{
+		return CORNER_WEIGHT * Long.bitCount(pieces & CORNERS)
+				+ X_CELL_WEIGHT * Long.bitCount(pieces & X_CELLS)
+				+ C_CELL_WEIGHT * Long.bitCount(pieces & C_CELLS)
+				+ EDGE_WEIGHT * Long.bitCount(pieces & EDGES)
+				+ INNER_EDGE_WEIGHT * Long.bitCount(pieces & INNER_EDGES)
+				+ CENTER_WEIGHT * Long.bitCount(pieces & CENTER);
+	}
+}
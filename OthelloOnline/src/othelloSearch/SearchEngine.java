@@ -0,0 +1,568 @@
+package othelloSearch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import othelloGame.Color;
+import othelloGame.GameLogic;
+import othelloGame.Othello;
+import othelloGame.Zobrist;
+
+
+/**
+ * A computer player: finds the best move for the player to move
+ * with a negamax alpha-beta search, deepened one ply at a time until
+ * the time or node budget runs out (iterative deepening). Each
+ * iteration tries the previous iteration's best moves first (from
+ * the transposition table), then the moves that caused the most
+ * cutoffs so far, then the better cells.
+ *
+ * The search plays by this game's rules: a player who can't move
+ * loses their turn for good, since the game ends right there (see
+ * Othello.isFinished). A finished game is scored by its disc
+ * difference, the same way GUI.displayWinner picks the winner.
+ *
+ * Positions in the engine's opening book (if it has one) get the book's
+ * move without any search. With few enough empty cells left, the
+ * engine first hands the position to an EndgameSolver, with half the
+ * budget, & plays the perfect move if it's solved in time (or searches
+ * as usual with the rest if not).
+ *
+ * An engine is not thread-safe, but any number of engines can share
+ * one transposition table.
+ *
+ * @author ubuntu
+ *
+ */
+public class SearchEngine
+{
+	// A finished game is scored WIN_SCORE + disc difference (or
+	// -WIN_SCORE + disc difference when lost), so every win outscores
+	// every evaluation.
+	static public final int WIN_SCORE = 10000;
+
+	// Bigger than any score
+	static private final int INFINITY = 32000;
+
+	// The deepest the search can go (a game never has more moves)
+	static public final int MAX_PLY = 64;
+
+	// Ordering bonus for the transposition table's move
+	static private final int TABLE_MOVE_BONUS = 1 << 30;
+
+	// Try to solve positions with this many empty cells or fewer
+	// exactly (by default)
+	static public final int DEFAULT_ENDGAME_EMPTIES = 14;
+
+	// How many nodes to search between checks of the clock
+	static private final int CLOCK_CHECK_INTERVAL = 1024;
+
+	// A rough worth for each cell, used to order moves
+	static private final int[] CELL_ORDER = {
+			9, 2, 6, 5, 5, 6, 2, 9,
+			2, 1, 3, 3, 3, 3, 1, 2,
+			6, 3, 5, 4, 4, 5, 3, 6,
+			5, 3, 4, 0, 0, 4, 3, 5,
+			5, 3, 4, 0, 0, 4, 3, 5,
+			6, 3, 5, 4, 4, 5, 3, 6,
+			2, 1, 3, 3, 3, 3, 1, 2,
+			9, 2, 6, 5, 5, 6, 2, 9};
+
+	// Shared search results & the evaluator for unfinished positions
+	private final TranspositionTable table;
+	private final Evaluator evaluator;
+
+	// The budget for each search (0 means no limit)
+	private long timeLimitNanos;
+	private long nodeLimit;
+	private int maxDepth = MAX_PLY;
+
+	// Positions with this many empty cells or fewer go to the solver
+	// (created the first time it's needed)
+	private int endgameEmpties = DEFAULT_ENDGAME_EMPTIES;
+	private EndgameSolver solver;
+
+	// Moves to play without searching (null if none)
+	private OpeningBook book;
+
+	// The depth of the first iteration. Lazy SMP helpers start one
+	// ply deeper than the main search (see ParallelSearch).
+	int firstDepth = 1;
+
+	// Raised by another thread to stop the search (null if none)
+	AtomicBoolean stopSignal;
+
+	// The current search's progress
+	private long nodes;
+	private long deadline;
+	private boolean aborted;
+
+	// Per-ply move lists & their ordering scores (preallocated so
+	// the search allocates nothing)
+	private final int[][] moveLists = new int[MAX_PLY + 1][64];
+	private final int[][] moveScores = new int[MAX_PLY + 1][64];
+
+	// How often each cell's move caused a cutoff, weighted by depth
+	private final int[] history = new int[64];
+
+	// Triangular principal variation table: pv[ply] holds the best
+	// line from ply onward, pvLength[ply] its end.
+	private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+	private final int[] pvLength = new int[MAX_PLY + 1];
+
+
+	/**
+	 * Creates an engine with no time or node limit.
+	 *
+	 * @param theTable The transposition table (can be shared).
+	 * @param theEvaluator Scores the positions at the end of the search.
+	 */
+	public SearchEngine(TranspositionTable theTable, Evaluator theEvaluator)
+	{
+		table = theTable;
+		evaluator = theEvaluator;
+	}
+
+
+	/**
+	 * Limits each search to the given wall-clock time. The clock is
+	 * checked every few hundred microseconds of searching, so a search
+	 * can run over by about that much. If the time runs out before the
+	 * first iteration finishes, the search falls back on a legal move.
+	 *
+	 * @param millis The time limit in milliseconds (0 for none).
+	 */
+	public void setTimeLimit(long millis)
+	{
+		timeLimitNanos = millis * 1000000L;
+	}
+
+
+	/**
+	 * Limits each search to the given number of positions. If they run
+	 * out before the first iteration finishes, the search falls back on
+	 * a legal move.
+	 *
+	 * @param theNodeLimit The node limit (0 for none).
+	 */
+	public void setNodeLimit(long theNodeLimit)
+	{
+		nodeLimit = theNodeLimit;
+	}
+
+
+	/**
+	 * Limits how deep each search goes.
+	 *
+	 * @param depth The maximum depth (1 - MAX_PLY).
+	 */
+	public void setMaxDepth(int depth)
+	{
+		maxDepth = Math.max(1, Math.min(depth, MAX_PLY));
+	}
+
+
+	/**
+	 * Sets how few empty cells a position needs for the engine to try
+	 * to solve it exactly (with an EndgameSolver) before searching it.
+	 * Solving gets half the time & node budget; if it doesn't finish,
+	 * the search goes ahead with the rest.
+	 *
+	 * @param empties The most empty cells to solve with (0 to never
+	 * solve).
+	 */
+	public void setEndgameEmpties(int empties)
+	{
+		endgameEmpties = Math.max(0, empties);
+	}
+
+
+	/**
+	 * Gives the engine an opening book. Positions in the book get the
+	 * book's move without searching.
+	 *
+	 * @param theBook The opening book (can be shared), or null for none.
+	 */
+	public void setOpeningBook(OpeningBook theBook)
+	{
+		book = theBook;
+	}
+
+
+	/**
+	 * Finds the best move for the current player of the given game.
+	 * Doesn't change the game.
+	 *
+	 * @param game The game.
+	 * @return The search's result.
+	 */
+	public SearchResult search(Othello game)
+	{
+		Color toMove = game.getCurrentPlayer();
+
+		return search(game.getBoard().getPieceMask(toMove),
+				game.getBoard().getPieceMask(opposite(toMove)), toMove);
+	}
+
+
+	/**
+	 * Finds the best move for the player to move.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The search's result.
+	 */
+	public SearchResult search(long player, long opponent, Color toMove)
+	{
+		table.newSearch();
+
+		return searchInGeneration(player, opponent, toMove);
+	}
+
+
+	/**
+	 * Finds the best move for the player to move, like search, but
+	 * without starting a new table generation (see
+	 * TranspositionTable.newSearch). For helper threads of a search
+	 * that another thread has started the generation for.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The search's result.
+	 */
+	public SearchResult searchInGeneration(long player, long opponent, Color toMove)
+	{
+		long start = System.nanoTime();
+		long hash = toMove == Color.BLACK ? Zobrist.hash(player, opponent, toMove)
+				: Zobrist.hash(opponent, player, toMove);
+
+		nodes = 0;
+		aborted = false;
+		deadline = (timeLimitNanos == 0) ? Long.MAX_VALUE : start + timeLimitNanos;
+		Arrays.fill(history, 0);
+
+		long moves = GameLogic.getValidMoves(player, opponent);
+
+		if (moves == 0)
+			return new SearchResult(TranspositionTable.NO_MOVE, getFinalScore(player, opponent),
+					0, new int[0], 0, System.nanoTime() - start);
+
+		// A book move needs no search (as long as it's legal, in case the
+		// book was built for another position with the same key).
+		if (book != null)
+		{
+			int bookMove = (toMove == Color.BLACK) ? book.probe(player, opponent, toMove, null)
+					: book.probe(opponent, player, toMove, null);
+
+			if (bookMove != TranspositionTable.NO_MOVE && (moves & (1L << bookMove)) != 0)
+				return new SearchResult(bookMove, 0, 0, new int[] {bookMove}, 0,
+						System.nanoTime() - start);
+		}
+
+		int numEmpty = Long.bitCount(~(player | opponent));
+
+		if (numEmpty <= endgameEmpties)
+		{
+			if (solver == null)
+			{
+				solver = new EndgameSolver();
+				solver.stopSignal = stopSignal;
+			}
+
+			// Half the budget, so a search can still use the rest
+			solver.setTimeLimit((timeLimitNanos == 0) ? 0
+					: Math.max(1, timeLimitNanos / 2000000L));
+			solver.setNodeLimit((nodeLimit == 0) ? 0 : Math.max(1, nodeLimit / 2));
+
+			int difference = solver.solve(player, opponent);
+			nodes = solver.getNodes();
+
+			if (!solver.wasAborted())
+				return new SearchResult(solver.getBestMove(), getFinalScore(difference),
+						numEmpty, new int[] {solver.getBestMove()}, nodes,
+						System.nanoTime() - start);
+		}
+
+		// Until an iteration finishes, fall back on any legal move.
+		int bestMove = Long.numberOfTrailingZeros(moves);
+		int bestScore = 0;
+		int depthDone = 0;
+		int[] bestLine = {bestMove};
+
+		for (int depth = Math.min(firstDepth, maxDepth); depth <= maxDepth; depth++)
+		{
+			int score = negamax(player, opponent, hash, toMove, depth,
+					-INFINITY, INFINITY, 0);
+
+			if (aborted)
+				break;
+
+			bestScore = score;
+			bestMove = pv[0][0];
+			bestLine = Arrays.copyOf(pv[0], pvLength[0]);
+			depthDone = depth;
+
+			// Nothing left to search once every line reaches the end of the game
+			if (depth >= numEmpty)
+				break;
+		}
+
+		return new SearchResult(bestMove, bestScore, depthDone, bestLine, nodes,
+				System.nanoTime() - start);
+	}
+
+
+	/**
+	 * Negamax alpha-beta search.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param hash The position's Zobrist hash.
+	 * @param toMove The color of the player to move.
+	 * @param depth How many more plies to search.
+	 * @param alpha The score the player to move is already sure of.
+	 * @param beta The score the opponent is already sure of (negated).
+	 * @param ply How many plies from the root this position is.
+	 * @return The position's score for the player to move.
+	 */
+	private int negamax(long player, long opponent, long hash, Color toMove,
+			int depth, int alpha, int beta, int ply)
+	{
+		pvLength[ply] = ply;
+
+		if (outOfBudget())
+			return 0;
+
+		long moves = GameLogic.getValidMoves(player, opponent);
+
+		if (moves == 0)
+			return getFinalScore(player, opponent);
+
+		if (depth == 0)
+			return evaluator.evaluate(player, opponent);
+
+		int tableMove = TranspositionTable.NO_MOVE;
+		long entry = table.probe(hash);
+
+		if (entry != TranspositionTable.MISS)
+		{
+			tableMove = TranspositionTable.getMove(entry);
+
+			if (ply > 0 && TranspositionTable.getDepth(entry) >= depth)
+			{
+				int score = TranspositionTable.getScore(entry);
+				int bound = TranspositionTable.getBound(entry);
+
+				if (bound == TranspositionTable.BOUND_EXACT
+						|| (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+						|| (bound == TranspositionTable.BOUND_UPPER && score <= alpha))
+					return score;
+			}
+		}
+
+		int numMoves = orderMoves(moves, tableMove, ply);
+		int[] moveList = moveLists[ply];
+
+		int originalAlpha = alpha;
+		int bestScore = -INFINITY;
+		int bestMove = TranspositionTable.NO_MOVE;
+		Color next = opposite(toMove);
+
+		for (int i = 0; i < numMoves; i++)
+		{
+			int cell = moveList[i];
+			long flips = GameLogic.getFlips(player, opponent, cell);
+
+			int score = -negamax(opponent ^ flips, player | flips | (1L << cell),
+					Zobrist.hashMove(hash, toMove, cell, flips), next,
+					depth - 1, -beta, -alpha, ply + 1);
+
+			if (aborted)
+				return 0;
+
+			if (score > bestScore)
+			{
+				bestScore = score;
+				bestMove = cell;
+
+				if (score > alpha)
+				{
+					alpha = score;
+					updatePrincipalVariation(ply, cell);
+				}
+
+				if (alpha >= beta)
+				{
+					history[cell] += depth * depth;
+					break;
+				}
+			}
+		}
+
+		int bound = (bestScore <= originalAlpha) ? TranspositionTable.BOUND_UPPER
+				: (bestScore >= beta) ? TranspositionTable.BOUND_LOWER
+				: TranspositionTable.BOUND_EXACT;
+
+		table.store(hash, depth, bound, bestScore, bestMove);
+
+		return bestScore;
+	}
+
+
+	/**
+	 * Counts a node & returns true if the search has used up its
+	 * budget (and must stop).
+	 *
+	 * @return True if the search must stop, false if not.
+	 */
+	private boolean outOfBudget()
+	{
+		nodes++;
+
+		if (nodeLimit != 0 && nodes > nodeLimit)
+			aborted = true;
+
+		else if (nodes % CLOCK_CHECK_INTERVAL == 0 && (System.nanoTime() > deadline
+				|| (stopSignal != null && stopSignal.get())))
+			aborted = true;
+
+		return aborted;
+	}
+
+
+	/**
+	 * Fills the ply's move list with the moves in the mask, best
+	 * candidates first.
+	 *
+	 * @param moves Mask of the legal moves.
+	 * @param tableMove The transposition table's move (or NO_MOVE).
+	 * @param ply The ply whose move list to fill.
+	 * @return The number of moves.
+	 */
+	private int orderMoves(long moves, int tableMove, int ply)
+	{
+		int[] moveList = moveLists[ply];
+		int[] scores = moveScores[ply];
+		int numMoves = 0;
+
+		while (moves != 0)
+		{
+			int cell = Long.numberOfTrailingZeros(moves);
+			moves &= moves - 1;
+
+			int score = (cell == tableMove) ? TABLE_MOVE_BONUS
+					: (history[cell] << 4) + CELL_ORDER[cell];
+
+			// Insertion sort, highest score first
+			int i = numMoves++;
+
+			while (i > 0 && scores[i - 1] < score)
+			{
+				moveList[i] = moveList[i - 1];
+				scores[i] = scores[i - 1];
+				i--;
+			}
+
+			moveList[i] = cell;
+			scores[i] = score;
+		}
+
+		return numMoves;
+	}
+
+
+	/**
+	 * Makes the ply's principal variation the given move followed
+	 * by the next ply's principal variation.
+	 *
+	 * @param ply The ply.
+	 * @param cell The ply's best move.
+	 */
+	private void updatePrincipalVariation(int ply, int cell)
+	{
+		pv[ply][ply] = cell;
+
+		for (int i = ply + 1; i < pvLength[ply + 1]; i++)
+			pv[ply][i] = pv[ply + 1][i];
+
+		pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+	}
+
+
+	/**
+	 * Returns the number of positions the last search visited.
+	 * @return The number of nodes.
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+
+	/**
+	 * Scores a finished game for the player to move:
+	 * WIN_SCORE + the disc difference if they won, -WIN_SCORE + the
+	 * disc difference if they lost, 0 for a tie.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @return The finished game's score.
+	 */
+	static public int getFinalScore(long player, long opponent)
+	{
+		return getFinalScore(Long.bitCount(player) - Long.bitCount(opponent));
+	}
+
+
+	/**
+	 * Scores a finished game with the given disc difference (see
+	 * getFinalScore(long, long)).
+	 *
+	 * @param difference The disc difference for the player to move.
+	 * @return The finished game's score.
+	 */
+	static public int getFinalScore(int difference)
+	{
+		if (difference > 0)
+			return WIN_SCORE + difference;
+
+		if (difference < 0)
+			return -WIN_SCORE + difference;
+
+		return 0;
+	}
+
+
+
+	/**
+	 * Returns the disc difference of a finished game's score (see
+	 * getFinalScore), or 0 if the score isn't a finished game's.
+	 *
+	 * @param score A search score.
+	 * @return The disc difference.
+	 */
+	static public int getDiscDifference(int score)
+	{
+		if (score > WIN_SCORE)
+			return score - WIN_SCORE;
+
+		if (score < -WIN_SCORE)
+			return score + WIN_SCORE;
+
+		return 0;
+	}
+
+
+	/**
+	 * Returns the opposite color of the provided one.
+	 *
+	 * @param color The color.
+	 * @return The opposite color.
+	 */
+	static Color opposite(Color color)
+	{
+		return (color == Color.BLACK) ? Color.WHITE : Color.BLACK;
+	}
+}
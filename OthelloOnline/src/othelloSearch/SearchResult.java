@@ -0,0 +1,159 @@
+package othelloSearch;
+
+
+/**
+ * The outcome of a search: the best move found, its score, the
+ * principal variation (the line of play the search expects) & how
+ * much work it took. Immutable.
+ *
+ * @author ubuntu
+ *
+ */
+final public class SearchResult
+{
+	// The best move's cell (row * 8 + col), or NO_MOVE if the player
+	// to move has no moves.
+	private final int bestMove;
+
+	// The best move's score for the player to move
+	private final int score;
+
+	// The deepest search that finished
+	private final int depth;
+
+	// The expected line of play, starting with the best move
+	private final int[] principalVariation;
+
+	// The positions searched & the time it took
+	private final long nodes;
+	private final long nanos;
+
+
+	/**
+	 * Creates a search result.
+	 *
+	 * @param theBestMove The best move's cell, or NO_MOVE.
+	 * @param theScore The best move's score.
+	 * @param theDepth The deepest search that finished.
+	 * @param thePrincipalVariation The expected line of play.
+	 * @param theNodes The number of positions searched.
+	 * @param theNanos The time the search took, in nanoseconds.
+	 */
+	public SearchResult(int theBestMove, int theScore, int theDepth,
+			int[] thePrincipalVariation, long theNodes, long theNanos)
+	{
+		bestMove = theBestMove;
+		score = theScore;
+		depth = theDepth;
+		principalVariation = thePrincipalVariation.clone();
+		nodes = theNodes;
+		nanos = theNanos;
+	}
+
+
+	/**
+	 * Returns the best move's cell (row * 8 + col).
+	 * @return The best move's cell, or NO_MOVE if there
+	 * are no moves.
+	 */
+	public int getBestMove()
+	{
+		return bestMove;
+	}
+
+
+	/**
+	 * Returns the best move's row.
+	 * @return The best move's row.
+	 */
+	public int getRow()
+	{
+		return bestMove / 8;
+	}
+
+
+	/**
+	 * Returns the best move's column.
+	 * @return The best move's column.
+	 */
+	public int getCol()
+	{
+		return bestMove % 8;
+	}
+
+
+	/**
+	 * Returns the best move's score for the player to move.
+	 * Scores beyond +/- SearchEngine.WIN_SCORE are won or lost
+	 * games (see SearchEngine.getDiscDifference).
+	 * @return The best move's score.
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+
+
+	/**
+	 * Returns the depth of the deepest search that finished.
+	 * @return The depth searched.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+
+	/**
+	 * Returns the expected line of play (cells, row * 8 + col),
+	 * starting with the best move.
+	 * @return A copy of the principal variation.
+	 */
+	public int[] getPrincipalVariation()
+	{
+		return principalVariation.clone();
+	}
+
+
+	/**
+	 * Returns the number of positions searched.
+	 * @return The number of nodes.
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+
+	/**
+	 * Returns how long the search took, in nanoseconds.
+	 * @return The search time.
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+
+
+	/**
+	 * Returns the number of positions searched per second.
+	 * @return The search speed.
+	 */
+	public long getNodesPerSecond()
+	{
+		return (nanos == 0) ? 0 : nodes * 1000000000L / nanos;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		StringBuilder pv = new StringBuilder();
+
+		for (int cell : principalVariation)
+			pv.append(' ').append(cell / 8).append(',').append(cell % 8);
+
+		return "depth " + depth + " score " + score + " nodes " + nodes
+				+ " nps " + getNodesPerSecond() + " pv" + pv;
+	}
+}
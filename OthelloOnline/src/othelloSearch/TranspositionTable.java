@@ -0,0 +1,324 @@
+package othelloSearch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A fixed-size hash table of search results, keyed by a position's
+ * Zobrist hash (see othelloGame.Zobrist). Any number of search threads
+ * can read & write it at once without locks.
+ *
+ * Each entry is two longs in one preallocated array: the entry's
+ * data (depth, bound, score & best move packed into one long) and the
+ * position's hash XORed with that data. A probe only trusts an entry
+ * if XORing the two longs back gives the probed hash, so an entry
+ * that another thread was halfway through writing (or a hash that
+ * merely shares the slot) reads as a miss instead of a wrong result.
+ *
+ * Entries live in buckets of two. The first slot keeps the deepest
+ * result (results from an earlier search are always replaceable); the
+ * second slot always takes whatever the first slot turned away.
+ *
+ * @author ubuntu
+ *
+ */
+public class TranspositionTable
+{
+	// Bound types. A stored score is the position's exact score,
+	// a lower bound on it (the search failed high) or an upper bound
+	// on it (the search failed low). Never 0, so a data word of 0
+	// means "no entry".
+	static public final int BOUND_LOWER = 1;
+	static public final int BOUND_UPPER = 2;
+	static public final int BOUND_EXACT = 3;
+
+	// Returned by probe when the table has no entry for the hash.
+	static public final long MISS = 0L;
+
+	// The best move stored when there isn't one.
+	static public final int NO_MOVE = 0xFF;
+
+	// A generation interval (see setGenerationInterval), in
+	// milliseconds, for tables shared by searches running at once
+	static public final long SHARED_GENERATION_INTERVAL = 1000;
+
+	// Where each field sits in the data word:
+	// score (16 bits, signed) | depth (8) | bound (2) | move (8) | generation (8)
+	static private final int DEPTH_SHIFT = 16;
+	static private final int BOUND_SHIFT = 24;
+	static private final int MOVE_SHIFT = 26;
+	static private final int GENERATION_SHIFT = 34;
+
+	// Bytes per entry & entries per bucket
+	static private final int ENTRY_BYTES = 16;
+	static private final int BUCKET_SIZE = 2;
+
+	// The entries: longs 2i & 2i + 1 are entry i's (hash ^ data) & data.
+	private final long[] entries;
+
+	// Number of buckets minus one (the number of buckets is a power of 2).
+	private final int bucketMask;
+
+	// The current search's generation. Entries from older generations
+	// can always be replaced.
+	private volatile int generation;
+
+	// The shortest time between generations & when the current one
+	// started, in nanoseconds (guarded by this)
+	private long generationInterval;
+	private long generationStart = System.nanoTime();
+
+	// Probe & store statistics
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+
+
+	/**
+	 * Creates an empty table that uses (at most) the given number of
+	 * megabytes. The number of buckets is rounded down to a power of 2.
+	 *
+	 * @param sizeInMB The table's size in megabytes.
+	 * @throws IllegalArgumentException Thrown if the size isn't positive
+	 * or is too big for one array.
+	 */
+	public TranspositionTable(int sizeInMB) throws IllegalArgumentException
+	{
+		if (sizeInMB <= 0 || sizeInMB > 8192)
+			throw new IllegalArgumentException("The table's size must be between 1 "
+					+ "& 8192 MB.");
+
+		long numBuckets = Long.highestOneBit(((long) sizeInMB << 20)
+				/ (ENTRY_BYTES * BUCKET_SIZE));
+
+		bucketMask = (int) (numBuckets - 1);
+		entries = new long[(int) (numBuckets * BUCKET_SIZE * 2)];
+	}
+
+
+	/**
+	 * Looks up the entry for the given hash.
+	 *
+	 * @param hash The position's Zobrist hash.
+	 * @return The entry's data word (read it with getScore, getDepth,
+	 * getBound & getMove), or MISS if there is no entry for the hash.
+	 */
+	public long probe(long hash)
+	{
+		int index = bucketIndex(hash);
+
+		for (int slot = 0; slot < BUCKET_SIZE; slot++, index += 2)
+		{
+			long data = entries[index + 1];
+			long check = entries[index];
+
+			if (data != MISS && (check ^ data) == hash)
+			{
+				hits.increment();
+				return data;
+			}
+		}
+
+		misses.increment();
+		return MISS;
+	}
+
+
+	/**
+	 * Stores a search result for the given hash.
+	 *
+	 * @param hash The position's Zobrist hash.
+	 * @param depth The depth the position was searched to (0-255).
+	 * @param bound BOUND_EXACT, BOUND_LOWER or BOUND_UPPER.
+	 * @param score The score (-32768 to 32767).
+	 * @param move The best move's cell (row * 8 + col), or NO_MOVE.
+	 */
+	public void store(long hash, int depth, int bound, int score, int move)
+	{
+		long data = ((long) score & 0xFFFFL)
+				| ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT)
+				| ((long) (move & 0xFF) << MOVE_SHIFT)
+				| ((long) (generation & 0xFF) << GENERATION_SHIFT);
+
+		int index = bucketIndex(hash);
+
+		// Depth-preferred slot: take it if it's the same position, an old
+		// search's result or a shallower result. Otherwise, fall back to
+		// the always-replace slot.
+		long oldData = entries[index + 1];
+		boolean samePosition = (entries[index] ^ oldData) == hash;
+
+		if (oldData != MISS && !samePosition
+				&& getGeneration(oldData) == (generation & 0xFF)
+				&& getDepth(oldData) > depth)
+			index += 2;
+
+		entries[index] = hash ^ data;
+		entries[index + 1] = data;
+
+		stores.increment();
+	}
+
+
+	/**
+	 * Returns the index in the entries array of the first entry in
+	 * the hash's bucket.
+	 *
+	 * @param hash The position's hash.
+	 * @return The index of the bucket's first entry.
+	 */
+	private int bucketIndex(long hash)
+	{
+		return ((int) (hash ^ (hash >>> 32)) & bucketMask) * BUCKET_SIZE * 2;
+	}
+
+
+	/**
+	 * Marks the start of a new search, making every entry stored so
+	 * far replaceable. Call once per search, from the thread running
+	 * it (not from helper threads; see SearchEngine.searchInGeneration).
+	 * If a generation interval is set, the entries are only made
+	 * replaceable once that long has passed since the last time.
+	 */
+	public synchronized void newSearch()
+	{
+		long now = System.nanoTime();
+
+		if (now - generationStart < generationInterval)
+			return;
+
+		generationStart = now;
+		generation++;
+	}
+
+
+	/**
+	 * Sets the shortest time between generations. For a table shared by
+	 * searches that run at the same time (request threads on a server,
+	 * say), where a new generation for every search would make each
+	 * search's entries replaceable by the others: the generations then
+	 * mark time rather than searches.
+	 *
+	 * @param millis The shortest time between generations in
+	 * milliseconds (0, the default, for a generation per search).
+	 * @throws IllegalArgumentException Thrown if millis is negative.
+	 */
+	public synchronized void setGenerationInterval(long millis) throws IllegalArgumentException
+	{
+		if (millis < 0)
+			throw new IllegalArgumentException("Bad generation interval: " + millis);
+
+		generationInterval = millis * 1000000L;
+	}
+
+
+	/**
+	 * Removes every entry & resets the statistics. Not safe to call
+	 * while a search is using the table.
+	 */
+	public void clear()
+	{
+		Arrays.fill(entries, 0L);
+
+		hits.reset();
+		misses.reset();
+		stores.reset();
+	}
+
+
+	/**
+	 * Returns the entry's score.
+	 * @param data An entry's data word.
+	 * @return The entry's score.
+	 */
+	static public int getScore(long data)
+	{
+		return (short) data;
+	}
+
+
+	/**
+	 * Returns the entry's search depth.
+	 * @param data An entry's data word.
+	 * @return The entry's search depth.
+	 */
+	static public int getDepth(long data)
+	{
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+
+	/**
+	 * Returns the entry's bound type.
+	 * @param data An entry's data word.
+	 * @return BOUND_EXACT, BOUND_LOWER or BOUND_UPPER.
+	 */
+	static public int getBound(long data)
+	{
+		return (int) (data >>> BOUND_SHIFT) & 0x3;
+	}
+
+
+	/**
+	 * Returns the entry's best move.
+	 * @param data An entry's data word.
+	 * @return The best move's cell (row * 8 + col), or NO_MOVE.
+	 */
+	static public int getMove(long data)
+	{
+		return (int) (data >>> MOVE_SHIFT) & 0xFF;
+	}
+
+
+	/**
+	 * Returns the generation of the search that stored the entry.
+	 * @param data An entry's data word.
+	 * @return The entry's generation (0-255).
+	 */
+	static private int getGeneration(long data)
+	{
+		return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+	}
+
+
+	/**
+	 * Returns the number of probes that found an entry.
+	 * @return The number of hits.
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+
+	/**
+	 * Returns the number of probes that found no entry.
+	 * @return The number of misses.
+	 */
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+
+	/**
+	 * Returns the number of results stored.
+	 * @return The number of stores.
+	 */
+	public long getStores()
+	{
+		return stores.sum();
+	}
+
+
+	/**
+	 * Returns the number of entries the table can hold.
+	 * @return The table's capacity.
+	 */
+	public int getCapacity()
+	{
+		return entries.length / 2;
+	}
+}
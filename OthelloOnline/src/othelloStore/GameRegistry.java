@@ -0,0 +1,440 @@
+package othelloStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import othelloGame.Othello;
+
+
+/**
+ * Keeps the games being played in memory, as live Othello objects that
+ * are changed in place, & writes them back to a GameStore behind the
+ * players' backs: a change only marks its game dirty, & a background
+ * thread (the flusher) writes dirty games to the store in batches,
+ * forcing each batch to disk at once. A game moved in several times
+ * between batches is written once.
+ *
+ * How long changes may stay in memory is set by two times. The flusher
+ * runs every flush interval; each run writes the games that would
+ * otherwise be dirty for longer than the max dirty age by the next run
+ * (& leaves the rest to coalesce with later changes). So a change is on
+ * disk within the max dirty age (plus the time a batch takes), & a
+ * crash loses at most that much play.
+ *
+ * Games can be used in place or copied. A game returned by get is
+ * shared: synchronize on it while reading or changing it, & call
+ * changed (still holding it) after changing it. Or load a copy, play on
+ * it, & save it back, as with a GameStore (save turns down a copy that
+ * someone else has moved in since, as MoveJournal.save does).
+ *
+ * Any number of threads can use a registry at once. Games stay in
+ * memory until they're freed, so a registry holds up to the store's
+ * capacity of them. Call close when done with the registry to write
+ * what's left.
+ *
+ * @author ubuntu
+ *
+ */
+public class GameRegistry implements AutoCloseable
+{
+	// Defaults for the flusher's times, in milliseconds
+	static public final long DEFAULT_MAX_DIRTY_AGE = 1000;
+	static public final long DEFAULT_FLUSH_INTERVAL = 250;
+
+	// Each thread's buffer for copying games
+	static private final ThreadLocal<ByteBuffer> RECORDS = ThreadLocal.withInitial(
+			() -> ByteBuffer.allocate(Othello.SAVE_BYTES));
+
+
+	/**
+	 * A live game & whether it has changes the store doesn't.
+	 */
+	static private class Entry
+	{
+		final Othello game;
+
+		// Guarded by the game: whether it's dirty & since when (in
+		// System.nanoTime)
+		boolean dirty;
+		long dirtySince;
+
+		Entry(Othello theGame)
+		{
+			game = theGame;
+		}
+	}
+
+
+	// Where the games are written
+	private final GameStore store;
+
+	// The live games, by ID (null if not loaded)
+	private final AtomicReferenceArray<Entry> entries;
+
+	// Held while a game is made live or removed, so a game being freed
+	// isn't loaded back in
+	private final Object slotLock = new Object();
+
+	// IDs of the dirty games
+	private final Set<Integer> dirtyIds = ConcurrentHashMap.newKeySet();
+
+	// The flusher's times, in nanoseconds
+	private final long maxDirtyAge;
+	private final long flushInterval;
+
+	// Runs the flusher
+	private final ScheduledExecutorService flusher;
+
+
+	/**
+	 * Creates a registry writing to the given store, with the default
+	 * max dirty age & flush interval.
+	 *
+	 * @param theStore The store.
+	 */
+	public GameRegistry(GameStore theStore)
+	{
+		this(theStore, DEFAULT_MAX_DIRTY_AGE, DEFAULT_FLUSH_INTERVAL);
+	}
+
+
+	/**
+	 * Creates a registry writing to the given store.
+	 *
+	 * @param theStore The store.
+	 * @param maxDirtyAgeMillis How long a change may stay in memory
+	 * only, in milliseconds.
+	 * @param flushIntervalMillis How often the flusher runs, in
+	 * milliseconds (at most maxDirtyAgeMillis).
+	 * @throws IllegalArgumentException Thrown if the flush interval
+	 * isn't positive or is longer than the max dirty age.
+	 */
+	public GameRegistry(GameStore theStore, long maxDirtyAgeMillis, long flushIntervalMillis)
+			throws IllegalArgumentException
+	{
+		if (flushIntervalMillis <= 0 || flushIntervalMillis > maxDirtyAgeMillis)
+			throw new IllegalArgumentException("The flush interval must be positive & at most "
+					+ "the max dirty age.");
+
+		store = theStore;
+		entries = new AtomicReferenceArray<>(store.getCapacity());
+		maxDirtyAge = TimeUnit.MILLISECONDS.toNanos(maxDirtyAgeMillis);
+		flushInterval = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "othello-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		flusher.scheduleWithFixedDelay(this::flushDue, flushInterval, flushInterval,
+				TimeUnit.NANOSECONDS);
+	}
+
+
+	/**
+	 * Stores a new game & keeps it live. The game is written to the
+	 * store right away (which gives it its ID).
+	 *
+	 * @param game The game. Shared from now on (see get).
+	 * @return The game's ID.
+	 * @throws IllegalStateException Thrown if the store is full.
+	 */
+	public int create(Othello game) throws IllegalStateException
+	{
+		synchronized (slotLock) {
+			int id = store.create(game);
+			entries.set(id, new Entry(game));
+
+			return id;
+		}
+	}
+
+
+	/**
+	 * Returns a live game, loading it from the store if it isn't live
+	 * yet. Synchronize on the game while using it.
+	 *
+	 * @param id The game's ID.
+	 * @return The game, or null if there's no game with that ID.
+	 */
+	public Othello get(int id)
+	{
+		if (id < 0 || id >= entries.length())
+			return null;
+
+		Entry entry = entries.get(id);
+
+		if (entry != null)
+			return entry.game;
+
+		synchronized (slotLock) {
+			// Another thread may have loaded it meanwhile.
+			entry = entries.get(id);
+
+			if (entry != null)
+				return entry.game;
+
+			Othello game = new Othello();
+
+			if (!store.load(id, game))
+				return null;
+
+			entries.set(id, new Entry(game));
+			return game;
+		}
+	}
+
+
+	/**
+	 * Copies a game into the given one (see get).
+	 *
+	 * @param id The game's ID.
+	 * @param game The game to load it into.
+	 * @return True if it was loaded, false if there's no game with that
+	 * ID.
+	 */
+	public boolean load(int id, Othello game)
+	{
+		Othello live = get(id);
+
+		if (live == null)
+			return false;
+
+		ByteBuffer record = RECORDS.get();
+		record.clear();
+
+		synchronized (live) {
+			live.saveGame(record);
+		}
+
+		record.flip();
+		game.loadGame(record);
+		return true;
+	}
+
+
+	/**
+	 * Copies a game (loaded with load, then played on) back into the
+	 * live game, to be written by the flusher. A game that someone else
+	 * has moved in since it was loaded isn't saved.
+	 *
+	 * @param id The game's ID.
+	 * @param game The game.
+	 * @return True if the game was saved, false if it was moved in since
+	 * it was loaded.
+	 * @throws IllegalArgumentException Thrown if there's no game with
+	 * that ID.
+	 */
+	public boolean save(int id, Othello game) throws IllegalArgumentException
+	{
+		Othello live = get(id);
+
+		if (live == null)
+			throw new IllegalArgumentException("No game with ID " + id);
+
+		ByteBuffer record = RECORDS.get();
+		record.clear();
+		game.saveGame(record);
+		record.flip();
+
+		synchronized (live) {
+			if (live.getTurnNumber() != game.getTurnNumber() - game.getNumMovesMade())
+				return false;
+
+			live.loadGame(record);
+			changed(id);
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Gets a game's turn number, without copying the game.
+	 *
+	 * @param id The game's ID.
+	 * @return The turn number.
+	 * @throws IllegalArgumentException Thrown if there's no game with
+	 * that ID.
+	 */
+	public int getTurnNumber(int id) throws IllegalArgumentException
+	{
+		Othello live = get(id);
+
+		if (live == null)
+			throw new IllegalArgumentException("No game with ID " + id);
+
+		synchronized (live) {
+			return live.getTurnNumber();
+		}
+	}
+
+
+	/**
+	 * Marks a game as changed, to be written by the flusher. Call while
+	 * holding the game's lock, after changing it.
+	 *
+	 * @param id The game's ID.
+	 */
+	public void changed(int id)
+	{
+		Entry entry = (id < 0 || id >= entries.length()) ? null : entries.get(id);
+
+		if (entry == null)
+			return;
+
+		synchronized (entry.game) {
+			if (entry.dirty)
+				return;
+
+			entry.dirty = true;
+			entry.dirtySince = System.nanoTime();
+		}
+
+		dirtyIds.add(id);
+	}
+
+
+	/**
+	 * Removes a game if it's finished (see GameStore.freeFinished),
+	 * from memory as well as from the store.
+	 *
+	 * @param id The game's ID.
+	 * @return True if the game was removed, false if there was no game
+	 * with that ID or it isn't finished.
+	 */
+	public boolean freeFinished(int id)
+	{
+		Othello game = get(id);
+
+		if (game == null)
+			return false;
+
+		synchronized (slotLock) {
+			synchronized (game) {
+				if (!game.isFinished())
+					return false;
+
+				Entry entry = entries.get(id);
+
+				// It was freed (& maybe reused) meanwhile.
+				if (entry == null || entry.game != game)
+					return false;
+
+				// Write it first, as the store only frees finished games.
+				if (entry.dirty)
+				{
+					store.save(id, game);
+					entry.dirty = false;
+				}
+
+				entries.set(id, null);
+				return store.freeFinished(id);
+			}
+		}
+	}
+
+
+	/**
+	 * Writes every dirty game to the store now & forces it to disk.
+	 *
+	 * @throws IOException Thrown if the store can't be forced to disk.
+	 */
+	public void flush() throws IOException
+	{
+		flush(Long.MAX_VALUE);
+	}
+
+
+	/**
+	 * Stops the flusher & writes every dirty game. The store stays
+	 * open.
+	 *
+	 * @throws IOException Thrown if the store can't be forced to disk.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		flusher.shutdown();
+
+		try {
+			flusher.awaitTermination(1, TimeUnit.MINUTES);
+		}
+
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		flush();
+	}
+
+
+	/**
+	 * The flusher's run: writes the games that would be dirty for too
+	 * long by the next run.
+	 */
+	private void flushDue()
+	{
+		try {
+			flush(System.nanoTime() - (maxDirtyAge - flushInterval));
+		}
+
+		// The games stay dirty, so the next run tries again.
+		catch (IOException | RuntimeException e) {
+			return;
+		}
+	}
+
+
+	/**
+	 * Writes the games dirty since the given time (or earlier) to the
+	 * store, then forces the store to disk.
+	 *
+	 * @param dirtySince The time (in System.nanoTime), or Long.MAX_VALUE
+	 * for every dirty game.
+	 * @throws IOException Thrown if the store can't be forced to disk.
+	 */
+	private synchronized void flush(long dirtySince) throws IOException
+	{
+		int written = 0;
+
+		for (Integer id : dirtyIds)
+		{
+			Entry entry = entries.get(id);
+
+			if (entry == null)
+			{
+				dirtyIds.remove(id);
+				continue;
+			}
+
+			synchronized (entry.game) {
+				if (!entry.dirty)
+				{
+					dirtyIds.remove(id);
+					continue;
+				}
+
+				if (dirtySince != Long.MAX_VALUE && entry.dirtySince - dirtySince > 0)
+					continue;
+
+				// A change from now on marks it dirty (& adds it) again.
+				store.save(id, entry.game);
+				entry.dirty = false;
+				dirtyIds.remove(id);
+			}
+
+			written++;
+		}
+
+		if (written > 0)
+			store.force();
+	}
+}
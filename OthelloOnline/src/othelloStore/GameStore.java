@@ -0,0 +1,588 @@
+package othelloStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+import othelloGame.Othello;
+
+
+/**
+ * Keeps many games in one memory-mapped file, each in a fixed-size
+ * slot holding its binary save record (see Othello.saveGame(ByteBuffer)).
+ * A game's ID is its slot's number, so loading or saving a game is a
+ * copy to or from the mapped file: no file opens, no parsing & no
+ * system calls. The operating system writes changed slots back to the
+ * file in the background; call force to make sure they're on disk.
+ *
+ * Freed slots (of finished games) go on a free list & are reused by
+ * the next new games before any unused slot is. The free list & the
+ * number of slots ever used are kept in the file's header, so a store
+ * opened again carries on where it left off.
+ *
+ * The header also has a stamp, which changes every time the store is
+ * opened on its own (rather than by a MoveJournal, which keeps it). A
+ * journal's snapshots carry the stamp, so a journal can tell that the
+ * store was changed without it since (see readStamp).
+ *
+ * The file: a header of HEADER_BYTES bytes (magic number "OGST",
+ * version, slot size, number of slots, first free slot or -1 & number
+ * of slots ever used, as ints, then the stamp, a long), then the
+ * slots. A slot is SLOT_BYTES
+ * bytes: whether it holds a game (an int, 1 if so), the next free slot
+ * (an int, if it's free), then the game's record.
+ *
+ * Any number of threads can use a store at once. Reads never lock: they
+ * copy the slot & check (with a lock stripe's optimistic stamp) that
+ * no write touched it meanwhile, only locking if one did. Writes to
+ * different slots mostly go ahead at once.
+ *
+ * @author ubuntu
+ *
+ */
+public class GameStore implements AutoCloseable
+{
+	// The file's first four bytes ("OGST") & format version
+	static public final int MAGIC = 0x4F475354;
+	static public final int VERSION = 1;
+
+	// Bytes in the header & in each slot (a slot is a cache line)
+	static public final int HEADER_BYTES = 64;
+	static public final int SLOT_BYTES = 64;
+
+	// Returned by create when a game can't be stored (never an ID)
+	static public final int NO_GAME = -1;
+
+	// Returned by readStamp when there's no store (never a new stamp;
+	// stores from before stamps have it too)
+	static public final long NO_STAMP = 0;
+
+	// Where the header's fields are
+	static private final int SLOT_BYTES_OFFSET = 8;
+	static private final int CAPACITY_OFFSET = 12;
+	static private final int FREE_HEAD_OFFSET = 16;
+	static private final int USED_OFFSET = 20;
+	static private final int STAMP_OFFSET = 24;
+
+	// Where a slot's fields are
+	static private final int IN_USE_OFFSET = 0;
+	static private final int NEXT_FREE_OFFSET = 4;
+	static private final int RECORD_OFFSET = 8;
+
+	// Where the flags & turn number are in a record, & the flag
+	// that says the game is finished (see Othello.saveGame)
+	static private final int FLAGS_OFFSET = 5;
+	static private final int TURN_NUMBER_OFFSET = 8;
+	static private final int FINISHED_FLAG = 1;
+
+	// Passed to write when any turn number will do
+	static private final int ANY_TURN = -1;
+
+	// The number of lock stripes (a power of 2); slot i uses stripe
+	// i % NUM_STRIPES
+	static private final int NUM_STRIPES = 1024;
+
+	// The file & its mapping
+	private final FileChannel channel;
+	private final MappedByteBuffer slots;
+
+	// The number of slots
+	private final int capacity;
+
+	// Guard the slots' contents
+	private final StampedLock[] stripes = new StampedLock[NUM_STRIPES];
+
+	// Each thread's copy of the record it's loading or saving
+	static private final ThreadLocal<ByteBuffer> RECORDS = ThreadLocal.withInitial(
+			() -> ByteBuffer.allocate(Othello.SAVE_BYTES));
+
+
+	/**
+	 * Opens the store in the given file, creating it (with room for the
+	 * given number of games) if the file doesn't exist or is empty.
+	 *
+	 * @param file The store's file.
+	 * @param theCapacity The number of games a new store has room for.
+	 * An existing store keeps its own.
+	 * @throws IOException Thrown if the file can't be opened or mapped.
+	 * @throws IllegalArgumentException Thrown if the file isn't a store
+	 * (of this version), or the capacity is too small or too big.
+	 */
+	public GameStore(File file, int theCapacity) throws IOException, IllegalArgumentException
+	{
+		this(file, theCapacity, false);
+	}
+
+
+	/**
+	 * Opens the store in the given file, creating it (with room for the
+	 * given number of games) if the file doesn't exist or is empty.
+	 *
+	 * @param file The store's file.
+	 * @param theCapacity The number of games a new store has room for.
+	 * An existing store keeps its own.
+	 * @param keepStamp Whether an existing store keeps its stamp (it's
+	 * opened by a journal) rather than getting a new one.
+	 * @throws IOException Thrown if the file can't be opened or mapped.
+	 * @throws IllegalArgumentException Thrown if the file isn't a store
+	 * (of this version), or the capacity is too small or too big.
+	 */
+	GameStore(File file, int theCapacity, boolean keepStamp)
+			throws IOException, IllegalArgumentException
+	{
+		if (theCapacity < 1 || theCapacity > (Integer.MAX_VALUE - HEADER_BYTES) / SLOT_BYTES)
+			throw new IllegalArgumentException("Bad store capacity: " + theCapacity);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+
+		try {
+			boolean isNew = (channel.size() == 0);
+
+			if (isNew)
+				raf.setLength(HEADER_BYTES + (long) theCapacity * SLOT_BYTES);
+
+			else if (channel.size() < HEADER_BYTES)
+				throw new IllegalArgumentException(file + " isn't a game store.");
+
+			slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+
+			if (isNew)
+			{
+				slots.putInt(0, MAGIC);
+				slots.putInt(4, VERSION);
+				slots.putInt(SLOT_BYTES_OFFSET, SLOT_BYTES);
+				slots.putInt(CAPACITY_OFFSET, theCapacity);
+				slots.putInt(FREE_HEAD_OFFSET, NO_GAME);
+				slots.putInt(USED_OFFSET, 0);
+			}
+
+			if (slots.getInt(0) != MAGIC)
+				throw new IllegalArgumentException(file + " isn't a game store.");
+
+			if (slots.getInt(4) != VERSION || slots.getInt(SLOT_BYTES_OFFSET) != SLOT_BYTES)
+				throw new IllegalArgumentException(file + " is a game store of another version.");
+
+			capacity = slots.getInt(CAPACITY_OFFSET);
+
+			if (channel.size() != HEADER_BYTES + (long) capacity * SLOT_BYTES)
+				throw new IllegalArgumentException(file + " is the wrong size for its games.");
+
+			if (isNew || !keepStamp || slots.getLong(STAMP_OFFSET) == NO_STAMP)
+				slots.putLong(STAMP_OFFSET, newStamp());
+		}
+
+		catch (IOException | IllegalArgumentException e) {
+			channel.close();
+			throw e;
+		}
+
+		for (int i = 0; i < NUM_STRIPES; i++)
+			stripes[i] = new StampedLock();
+	}
+
+
+	/**
+	 * Stores a new game in a free slot.
+	 *
+	 * @param game The game.
+	 * @return The game's ID.
+	 * @throws IllegalStateException Thrown if the store is full.
+	 */
+	public synchronized int create(Othello game) throws IllegalStateException
+	{
+		int id = slots.getInt(FREE_HEAD_OFFSET);
+
+		if (id != NO_GAME)
+			slots.putInt(FREE_HEAD_OFFSET, slots.getInt(getSlot(id) + NEXT_FREE_OFFSET));
+
+		else
+		{
+			id = slots.getInt(USED_OFFSET);
+
+			if (id == capacity)
+				throw new IllegalStateException("The game store is full.");
+
+			slots.putInt(USED_OFFSET, id + 1);
+		}
+
+		write(id, game, true, ANY_TURN);
+		return id;
+	}
+
+
+	/**
+	 * Loads a stored game.
+	 *
+	 * @param id The game's ID.
+	 * @param game Where to load it.
+	 * @return True if the game was loaded, false if there's no game
+	 * with that ID (in which case the game isn't changed).
+	 */
+	public boolean load(int id, Othello game)
+	{
+		if (id < 0 || id >= capacity)
+			return false;
+
+		int slot = getSlot(id);
+		StampedLock stripe = stripes[id & (NUM_STRIPES - 1)];
+		ByteBuffer record = RECORDS.get();
+		long stamp = stripe.tryOptimisticRead();
+		boolean inUse = copyRecord(slot, record);
+
+		// A write got in the way; copy it again with the lock held.
+		if (!stripe.validate(stamp))
+		{
+			stamp = stripe.readLock();
+
+			try {
+				inUse = copyRecord(slot, record);
+			}
+
+			finally {
+				stripe.unlockRead(stamp);
+			}
+		}
+
+		if (!inUse)
+			return false;
+
+		record.clear();
+		game.loadGame(record);
+		return true;
+	}
+
+
+	/**
+	 * Replaces a stored game.
+	 *
+	 * @param id The game's ID.
+	 * @param game The game.
+	 * @throws IllegalArgumentException Thrown if there's no game with
+	 * that ID.
+	 */
+	public void save(int id, Othello game) throws IllegalArgumentException
+	{
+		if (!write(id, game, false, ANY_TURN))
+			throw new IllegalArgumentException("No game with ID " + id);
+	}
+
+
+	/**
+	 * Replaces a stored game if it's still at the given turn number
+	 * (checked & replaced at once, so of two saves from the same turn
+	 * only the first is kept, & a game whose slot was freed & reused
+	 * isn't overwritten).
+	 *
+	 * @param id The game's ID.
+	 * @param turnNumber The turn number the stored game must have.
+	 * @param game The game.
+	 * @return True if the game was saved, false if the stored game is
+	 * at another turn (or was removed meanwhile).
+	 * @throws IllegalArgumentException Thrown if there's no game with
+	 * that ID.
+	 */
+	public boolean compareAndSave(int id, int turnNumber, Othello game)
+			throws IllegalArgumentException
+	{
+		if (turnNumber < 0)
+			throw new IllegalArgumentException("Bad turn number: " + turnNumber);
+
+		if (!contains(id))
+			throw new IllegalArgumentException("No game with ID " + id);
+
+		return write(id, game, false, turnNumber);
+	}
+
+
+	/**
+	 * Removes a game, freeing its slot for a new one.
+	 *
+	 * @param id The game's ID.
+	 * @return True if the game was removed, false if there was no game
+	 * with that ID.
+	 */
+	public synchronized boolean free(int id)
+	{
+		if (!contains(id))
+			return false;
+
+		int slot = getSlot(id);
+		StampedLock stripe = stripes[id & (NUM_STRIPES - 1)];
+		long stamp = stripe.writeLock();
+
+		try {
+			slots.putInt(slot + IN_USE_OFFSET, 0);
+			slots.putInt(slot + NEXT_FREE_OFFSET, slots.getInt(FREE_HEAD_OFFSET));
+		}
+
+		finally {
+			stripe.unlockWrite(stamp);
+		}
+
+		slots.putInt(FREE_HEAD_OFFSET, id);
+		return true;
+	}
+
+
+	/**
+	 * Removes a game if it's finished, freeing its slot for a new one.
+	 * Checking & removing happen at once, so a game that's just taken
+	 * a finished one's slot is never removed by mistake.
+	 *
+	 * @param id The game's ID.
+	 * @return True if the game was removed, false if there was no game
+	 * with that ID or it isn't finished.
+	 */
+	public synchronized boolean freeFinished(int id)
+	{
+		if (!isFinished(id))
+			return false;
+
+		return free(id);
+	}
+
+
+	/**
+	 * Returns whether there's a game with the given ID & it's
+	 * finished, without loading the game.
+	 *
+	 * @param id The ID.
+	 * @return True if there's a finished game with that ID, false if
+	 * not.
+	 */
+	public boolean isFinished(int id)
+	{
+		return contains(id)
+				&& (slots.get(getSlot(id) + RECORD_OFFSET + FLAGS_OFFSET) & FINISHED_FLAG) != 0;
+	}
+
+
+	/**
+	 * Returns whether there's a game with the given ID.
+	 *
+	 * @param id The ID.
+	 * @return True if there's a game with that ID, false if not.
+	 */
+	public boolean contains(int id)
+	{
+		return id >= 0 && id < capacity && slots.getInt(getSlot(id) + IN_USE_OFFSET) == 1;
+	}
+
+
+	/**
+	 * Returns a stored game's turn number, without loading the game.
+	 *
+	 * @param id The game's ID.
+	 * @return The turn number.
+	 * @throws IllegalArgumentException Thrown if there's no game with
+	 * that ID.
+	 */
+	public int getTurnNumber(int id) throws IllegalArgumentException
+	{
+		if (!contains(id))
+			throw new IllegalArgumentException("No game with ID " + id);
+
+		// An int is read whole, so no torn value is possible.
+		return slots.getInt(getSlot(id) + RECORD_OFFSET + TURN_NUMBER_OFFSET);
+	}
+
+
+	/**
+	 * Returns the number of games the store has room for.
+	 * @return The number of slots.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+
+	/**
+	 * Returns the size of the store's file (the header & every slot).
+	 * @return The size in bytes.
+	 */
+	public int getFileSize()
+	{
+		return HEADER_BYTES + capacity * SLOT_BYTES;
+	}
+
+
+	/**
+	 * Copies the whole store, as its file would hold it, starting at the
+	 * buffer's position (which moves past it). The copy is consistent:
+	 * writes wait while it's made, so it has no half-written game.
+	 *
+	 * @param buffer Where to copy the store. Needs at least getFileSize
+	 * bytes left.
+	 * @throws java.nio.BufferOverflowException Thrown if the buffer
+	 * doesn't have room for the store.
+	 */
+	public synchronized void copyTo(ByteBuffer buffer)
+	{
+		long[] stamps = new long[NUM_STRIPES];
+
+		for (int i = 0; i < NUM_STRIPES; i++)
+			stamps[i] = stripes[i].writeLock();
+
+		try {
+			ByteBuffer all = slots.duplicate();
+			all.clear();
+			buffer.put(all);
+		}
+
+		finally {
+			for (int i = 0; i < NUM_STRIPES; i++)
+				stripes[i].unlockWrite(stamps[i]);
+		}
+	}
+
+
+	/**
+	 * Writes every change to the store to disk.
+	 *
+	 * @throws IOException Thrown if the changes can't be written.
+	 */
+	public void force() throws IOException
+	{
+		slots.force();
+	}
+
+
+	/**
+	 * Writes every change to disk & closes the file.
+	 *
+	 * @throws IOException Thrown if the changes can't be written.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try {
+			slots.force();
+		}
+
+		finally {
+			channel.close();
+		}
+	}
+
+
+	/**
+	 * Reads a store's stamp from the start of its file (or a copy of
+	 * it, see copyTo).
+	 *
+	 * @param header The file's first bytes, from the buffer's position
+	 * (which doesn't move).
+	 * @return The stamp, or NO_STAMP if there's no whole header there
+	 * or it isn't a store's.
+	 */
+	static long readStamp(ByteBuffer header)
+	{
+		if (header.remaining() < HEADER_BYTES || header.getInt(header.position()) != MAGIC)
+			return NO_STAMP;
+
+		return header.getLong(header.position() + STAMP_OFFSET);
+	}
+
+
+	/**
+	 * Makes a stamp for a store (any long but NO_STAMP).
+	 *
+	 * @return The stamp.
+	 */
+	static private long newStamp()
+	{
+		long stamp;
+
+		do
+			stamp = ThreadLocalRandom.current().nextLong();
+		while (stamp == NO_STAMP);
+
+		return stamp;
+	}
+
+
+	/**
+	 * Writes a game's record into its slot.
+	 *
+	 * @param id The game's ID.
+	 * @param game The game.
+	 * @param create Whether the slot is a new game's (& so is marked as
+	 * holding a game) rather than an existing game's.
+	 * @param turnNumber For an existing game, the turn number it must
+	 * have, or ANY_TURN.
+	 * @return True if the record was written, false if the existing
+	 * game is gone or at another turn.
+	 */
+	private boolean write(int id, Othello game, boolean create, int turnNumber)
+	{
+		if (id < 0 || id >= capacity)
+			return false;
+
+		ByteBuffer record = RECORDS.get();
+		record.clear();
+		game.saveGame(record);
+
+		int slot = getSlot(id);
+		StampedLock stripe = stripes[id & (NUM_STRIPES - 1)];
+		long stamp = stripe.writeLock();
+
+		try {
+			// Checked under the lock, which free takes too.
+			if (!create && (slots.getInt(slot + IN_USE_OFFSET) != 1 || (turnNumber != ANY_TURN
+					&& slots.getInt(slot + RECORD_OFFSET + TURN_NUMBER_OFFSET) != turnNumber)))
+				return false;
+
+			for (int i = 0; i + 8 <= Othello.SAVE_BYTES; i += 8)
+				slots.putLong(slot + RECORD_OFFSET + i, record.getLong(i));
+
+			slots.putInt(slot + RECORD_OFFSET + Othello.SAVE_BYTES - 4,
+					record.getInt(Othello.SAVE_BYTES - 4));
+
+			if (create)
+				slots.putInt(slot + IN_USE_OFFSET, 1);
+
+			return true;
+		}
+
+		finally {
+			stripe.unlockWrite(stamp);
+		}
+	}
+
+
+	/**
+	 * Copies a slot's record.
+	 *
+	 * @param slot The slot's offset in the file.
+	 * @param record Where to copy it.
+	 * @return Whether the slot holds a game.
+	 */
+	private boolean copyRecord(int slot, ByteBuffer record)
+	{
+		for (int i = 0; i + 8 <= Othello.SAVE_BYTES; i += 8)
+			record.putLong(i, slots.getLong(slot + RECORD_OFFSET + i));
+
+		record.putInt(Othello.SAVE_BYTES - 4,
+				slots.getInt(slot + RECORD_OFFSET + Othello.SAVE_BYTES - 4));
+
+		return slots.getInt(slot + IN_USE_OFFSET) == 1;
+	}
+
+
+	/**
+	 * Returns the offset of a game's slot in the file.
+	 *
+	 * @param id The game's ID.
+	 * @return The slot's offset.
+	 */
+	private int getSlot(int id)
+	{
+		return HEADER_BYTES + id * SLOT_BYTES;
+	}
+}
@@ -0,0 +1,911 @@
+package othelloStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import othelloGame.Color;
+import othelloGame.Othello;
+
+
+/**
+ * Makes a GameStore's games durable by journaling every change to them
+ * rather than by writing the games themselves: each move is appended
+ * to the journal as a record of RECORD_BYTES bytes (the game's ID &
+ * the move's cell), as are new & freed games. The store's own file is
+ * then just a working copy.
+ *
+ * Every change is on disk before it returns, & before the store (which
+ * other threads read) has it, so no one sees a change that a crash
+ * could still lose; if the journal can't be written, the change isn't
+ * made & no later one is journaled. Changes to different
+ * games that arrive together share one write & one fsync (a group
+ * commit): the first to wait writes everything appended so far, & the
+ * others wait for it instead of writing themselves.
+ *
+ * Every so often (after setSnapshotInterval records), a background
+ * thread snapshots the store: the journal moves on to a new file, the
+ * store is copied as it stands at that point & the copy is written
+ * next to the journal, after which older journal files & snapshots are
+ * deleted. Opening a journal rebuilds the store from the latest whole
+ * snapshot (snapshots are checksummed, see SaveFile), replaying the
+ * journal's moves after it through Othello.playTurn, then snapshots it
+ * again. If the store was changed without the journal since the
+ * snapshot (it was opened on its own, so its stamp isn't the
+ * snapshot's, see GameStore), the store file is newer than anything
+ * the journal has: it's kept as it is & snapshotted instead, & the
+ * older journal files are dropped.
+ *
+ * The directory holds "journal.N" & "snapshot.N" files, snapshot N
+ * being the store as it was when journal N began. A record is its type
+ * (1 for a new game, 2 for a move, 3 for a freed game), the game's ID
+ * (an int) & the move's cell (row * 8 + col; for a new game, who the
+ * computer plays: 0 for no one, 1 for black, 2 for white). A record
+ * cut short by a crash, at the end of the last journal file, is
+ * ignored.
+ *
+ * Any number of threads can use a journal at once. Call close when
+ * done with it.
+ *
+ * @author ubuntu
+ *
+ */
+public class MoveJournal implements AutoCloseable
+{
+	// Bytes in a record: its type, the game's ID & the move's cell
+	static public final int RECORD_BYTES = 6;
+
+	// Records between snapshots, unless set otherwise
+	static public final int DEFAULT_SNAPSHOT_INTERVAL = 1 << 20;
+
+	// The record types
+	static private final byte NEW_GAME = 1;
+	static private final byte MOVE = 2;
+	static private final byte FREED_GAME = 3;
+
+	// Who the computer plays, in a new game's record
+	static private final byte NO_COMPUTER = 0;
+	static private final byte COMPUTER_BLACK = 1;
+	static private final byte COMPUTER_WHITE = 2;
+
+	// The size of each buffer records wait in to be written
+	static private final int BUFFER_BYTES = 1 << 16;
+
+	// Returned by restoreSnapshot when the store file is kept as it is
+	static private final int STORE_FILE_KEPT = -1;
+
+	// The start of the journal & snapshot files' names (the rest is
+	// the number)
+	static private final String JOURNAL_PREFIX = "journal.";
+	static private final String SNAPSHOT_PREFIX = "snapshot.";
+
+	// The number of game locks (a power of 2); game i uses lock
+	// i % NUM_GAME_LOCKS
+	static private final int NUM_GAME_LOCKS = 1024;
+
+	// Where the journal & snapshots are
+	private final File directory;
+
+	// The games
+	private final GameStore store;
+
+	// Shared by every change & held alone by a snapshot, so a snapshot
+	// has every change before it & none after it
+	private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock();
+
+	// Keeps the store's & the journal's order of new & freed games the
+	// same (so replaying them gives every game the same ID)
+	private final Object slotLock = new Object();
+
+	// Keep the store's & the journal's order of each game's changes
+	// the same
+	private final Object[] gameLocks = new Object[NUM_GAME_LOCKS];
+
+	// Only one snapshot at a time
+	private final Object snapshotLock = new Object();
+
+	// The records not written yet, & the ones being written (guarded
+	// by this, as are the fields down to failure)
+	private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+	private ByteBuffer writing = ByteBuffer.allocate(BUFFER_BYTES);
+
+	// Bytes appended since the journal was opened, & how many of them
+	// are on disk
+	private long appended;
+	private long durable;
+
+	// Whether a thread is writing records (the others wait for it)
+	private boolean flushing;
+
+	// The current journal file & its number
+	private FileChannel channel;
+	private int segment;
+
+	// Why the journal can't be written, or null if it can
+	private IOException failure;
+
+	// Records since the last snapshot, & how many start another
+	private final AtomicInteger sinceSnapshot = new AtomicInteger();
+	private volatile int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+
+	// Takes snapshots in the background, one at a time
+	private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+	private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "othello-snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+
+	/**
+	 * Opens the journal in the given directory (creating it if need
+	 * be) & rebuilds the store from it. If there's no snapshot yet, or
+	 * the store was changed without the journal since the last one,
+	 * the store starts as the store file holds it (or empty, if there's
+	 * no store file).
+	 *
+	 * @param theDirectory Where the journal & snapshots are.
+	 * @param storeFile The store's working copy. Overwritten with the
+	 * snapshot unless it's newer.
+	 * @param capacity The number of games a new store has room for.
+	 * @throws IOException Thrown if a file can't be read or written.
+	 * @throws IllegalArgumentException Thrown if a snapshot isn't a
+	 * store, none is whole, or the journal doesn't fit its snapshot.
+	 */
+	public MoveJournal(File theDirectory, File storeFile, int capacity)
+			throws IOException, IllegalArgumentException
+	{
+		directory = theDirectory;
+		directory.mkdirs();
+
+		for (int i = 0; i < NUM_GAME_LOCKS; i++)
+			gameLocks[i] = new Object();
+
+		// A snapshot that was still being written is of no use.
+		for (File file : listFiles())
+			if (file.getName().endsWith(SaveFile.TEMP_SUFFIX))
+				Files.delete(file.toPath());
+
+		List<Integer> snapshots = getNumbers(SNAPSHOT_PREFIX);
+		List<Integer> journals = getNumbers(JOURNAL_PREFIX);
+		int first = restoreSnapshot(snapshots, journals, storeFile);
+
+		store = new GameStore(storeFile, capacity, true);
+
+		try {
+			segment = Math.max(first, 0);
+
+			// The journal files are older than the store file, so none
+			// is replayed; the new one is numbered after them all.
+			if (first == STORE_FILE_KEPT)
+			{
+				if (!journals.isEmpty())
+					segment = journals.get(journals.size() - 1);
+
+				if (!snapshots.isEmpty())
+					segment = Math.max(segment, snapshots.get(snapshots.size() - 1));
+			}
+
+			else
+			{
+				for (int i = 0; i < journals.size(); i++)
+				{
+					if (journals.get(i) < first)
+						continue;
+
+					replay(getFile(JOURNAL_PREFIX, journals.get(i)), i == journals.size() - 1);
+					segment = journals.get(i);
+				}
+			}
+
+			segment++;
+			channel = openSegment(segment);
+
+			// The store is as it was when this journal file began, so
+			// it's that file's snapshot.
+			writeSnapshot(segment);
+		}
+
+		catch (IOException | RuntimeException e) {
+			if (channel != null)
+				channel.close();
+
+			store.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Returns the journal's store, for reading games. Change them only
+	 * through the journal.
+	 *
+	 * @return The store.
+	 */
+	public GameStore getStore()
+	{
+		return store;
+	}
+
+
+	/**
+	 * Sets how many records start a snapshot.
+	 *
+	 * @param records The number of records between snapshots.
+	 * @throws IllegalArgumentException Thrown if records is less than 1.
+	 */
+	public void setSnapshotInterval(int records) throws IllegalArgumentException
+	{
+		if (records < 1)
+			throw new IllegalArgumentException("Bad snapshot interval: " + records);
+
+		snapshotInterval = records;
+	}
+
+
+	/**
+	 * Stores a new game & journals it.
+	 *
+	 * @param game The game. Must be a new game (no moves made yet).
+	 * @return The game's ID.
+	 * @throws IllegalArgumentException Thrown if the game isn't new.
+	 * @throws IllegalStateException Thrown if the store is full or the
+	 * journal can't be written.
+	 */
+	public int create(Othello game) throws IllegalArgumentException, IllegalStateException
+	{
+		if (game.getTurnNumber() != 0)
+			throw new IllegalArgumentException("Only new games can be journaled.");
+
+		byte computer = (game.getComputerPlayer() == Color.BLACK) ? COMPUTER_BLACK
+				: (game.getComputerPlayer() == Color.WHITE) ? COMPUTER_WHITE : NO_COMPUTER;
+		int id;
+
+		changeLock.readLock().lock();
+
+		try {
+			long position;
+
+			synchronized (slotLock) {
+				id = store.create(game);
+
+				try {
+					position = append(NEW_GAME, id, computer);
+				}
+
+				catch (IllegalStateException e) {
+					store.free(id);
+					throw e;
+				}
+			}
+
+			// No one knows the new game's ID until it's on disk, so it
+			// can be taken back if it doesn't get there.
+			try {
+				sync(position);
+			}
+
+			catch (IllegalStateException e) {
+				store.free(id);
+				throw e;
+			}
+		}
+
+		finally {
+			changeLock.readLock().unlock();
+		}
+
+		countRecords(1);
+		return id;
+	}
+
+
+	/**
+	 * Saves a game to the store & journals the moves made since it was
+	 * loaded from the store. Load the game again before saving it again.
+	 *
+	 * @param id The game's ID.
+	 * @param game The game, as loaded from the store, then played on.
+	 * @return True if the game was saved, false if the stored game
+	 * changed since it was loaded (someone else played a move), in
+	 * which case neither the store nor the journal is changed.
+	 * @throws IllegalStateException Thrown if the journal can't be
+	 * written (the store isn't changed then either).
+	 */
+	public boolean save(int id, Othello game) throws IllegalStateException
+	{
+		int numMoves = game.getNumMovesMade();
+
+		if (numMoves == 0)
+			return store.contains(id);
+
+		changeLock.readLock().lock();
+
+		try {
+			// The moves are on disk before the store has them, so no
+			// one sees a move that could still be lost. Other games'
+			// moves share the wait (see sync).
+			synchronized (gameLocks[id & (NUM_GAME_LOCKS - 1)]) {
+				int turnNumber = game.getTurnNumber() - numMoves;
+
+				if (!store.contains(id) || store.getTurnNumber(id) != turnNumber)
+					return false;
+
+				long position = 0;
+
+				for (int i = 0; i < numMoves; i++)
+					position = append(MOVE, id, (byte) game.getMoveMade(i));
+
+				sync(position);
+				store.compareAndSave(id, turnNumber, game);
+			}
+		}
+
+		finally {
+			changeLock.readLock().unlock();
+		}
+
+		countRecords(numMoves);
+		return true;
+	}
+
+
+	/**
+	 * Removes a game if it's finished (see GameStore.freeFinished) &
+	 * journals it.
+	 *
+	 * @param id The game's ID.
+	 * @return True if the game was removed, false if there was no game
+	 * with that ID or it isn't finished.
+	 * @throws IllegalStateException Thrown if the journal can't be
+	 * written.
+	 */
+	public boolean freeFinished(int id) throws IllegalStateException
+	{
+		changeLock.readLock().lock();
+
+		try {
+			// Frees & new games must reach the store in the journal's
+			// order, so the slot lock is held until the free is on disk.
+			synchronized (slotLock) {
+				synchronized (gameLocks[id & (NUM_GAME_LOCKS - 1)]) {
+					if (!store.isFinished(id))
+						return false;
+
+					sync(append(FREED_GAME, id, NO_COMPUTER));
+					store.freeFinished(id);
+				}
+			}
+		}
+
+		finally {
+			changeLock.readLock().unlock();
+		}
+
+		countRecords(1);
+		return true;
+	}
+
+
+	/**
+	 * Snapshots the store now: moves the journal on to a new file,
+	 * writes the store as it stands to a snapshot & deletes the older
+	 * journal files & snapshots. Changes wait only while the store is
+	 * copied, not while the snapshot is written.
+	 *
+	 * @throws IOException Thrown if a file can't be written.
+	 */
+	public void snapshot() throws IOException
+	{
+		synchronized (snapshotLock) {
+			int snapshotSegment;
+			ByteBuffer copy = ByteBuffer.allocate(store.getFileSize());
+
+			changeLock.writeLock().lock();
+
+			try {
+				synchronized (this) {
+					while (flushing)
+						waitForFlush();
+
+					if (failure != null)
+						throw failure;
+
+					pending.flip();
+
+					while (pending.hasRemaining())
+						channel.write(pending);
+
+					pending.clear();
+					channel.force(false);
+					channel.close();
+
+					segment++;
+					channel = openSegment(segment);
+					durable = appended;
+					snapshotSegment = segment;
+				}
+
+				store.copyTo(copy);
+				sinceSnapshot.set(0);
+			}
+
+			finally {
+				changeLock.writeLock().unlock();
+			}
+
+			copy.flip();
+			writeSnapshot(snapshotSegment, copy);
+		}
+	}
+
+
+	/**
+	 * Stops the background snapshots, snapshots the store (so opening
+	 * it again replays nothing) & closes the journal & the store.
+	 *
+	 * @throws IOException Thrown if a file can't be written.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		snapshotter.shutdown();
+
+		try {
+			snapshot();
+		}
+
+		finally {
+			synchronized (this) {
+				channel.close();
+			}
+
+			store.close();
+		}
+	}
+
+
+	/**
+	 * Adds a record to the ones waiting to be written.
+	 *
+	 * @param type The record's type.
+	 * @param id The game's ID.
+	 * @param cell The move's cell (or who the computer plays).
+	 * @return The journal's length with the record, in bytes (for sync).
+	 * @throws IllegalStateException Thrown if the journal can't be
+	 * written.
+	 */
+	private synchronized long append(byte type, int id, byte cell) throws IllegalStateException
+	{
+		if (failure != null)
+			throw new IllegalStateException("The journal can't be written.", failure);
+
+		// If the buffer's full, write it (or wait for whoever is).
+		while (pending.remaining() < RECORD_BYTES)
+		{
+			if (failure != null)
+				throw new IllegalStateException("The journal can't be written.", failure);
+
+			if (flushing)
+			{
+				waitForFlush();
+				continue;
+			}
+
+			try {
+				pending.flip();
+
+				while (pending.hasRemaining())
+					channel.write(pending);
+
+				pending.clear();
+			}
+
+			catch (IOException e) {
+				failure = e;
+			}
+		}
+
+		pending.put(type);
+		pending.putInt(id);
+		pending.put(cell);
+		appended += RECORD_BYTES;
+
+		return appended;
+	}
+
+
+	/**
+	 * Waits until the journal is on disk up to the given length. If no
+	 * one's writing it, writes everything appended so far (for every
+	 * waiting thread) & forces it to disk.
+	 *
+	 * @param position The length, in bytes.
+	 * @throws IllegalStateException Thrown if the journal can't be
+	 * written (after which no more records can be appended).
+	 */
+	private void sync(long position) throws IllegalStateException
+	{
+		ByteBuffer batch;
+		FileChannel batchChannel;
+		long batchEnd;
+
+		synchronized (this) {
+			boolean interrupted = false;
+
+			// Not cut short by an interrupt: the caller's records are in
+			// the journal now, so their change has to be made (or the
+			// journal has to fail) before the caller goes on.
+			while (durable < position && flushing)
+			{
+				try {
+					wait();
+				}
+
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+
+			if (interrupted)
+				Thread.currentThread().interrupt();
+
+			if (failure != null)
+				throw new IllegalStateException("The journal can't be written.", failure);
+
+			if (durable >= position)
+				return;
+
+			// Take everything appended so far; new records go in the
+			// other buffer meanwhile.
+			flushing = true;
+			batch = pending;
+			pending = writing;
+			writing = batch;
+			batchChannel = channel;
+			batchEnd = appended;
+		}
+
+		IOException error = null;
+
+		try {
+			batch.flip();
+
+			while (batch.hasRemaining())
+				batchChannel.write(batch);
+
+			batchChannel.force(false);
+		}
+
+		catch (IOException e) {
+			error = e;
+		}
+
+		finally {
+			batch.clear();
+		}
+
+		synchronized (this) {
+			flushing = false;
+
+			if (error != null)
+				failure = error;
+
+			else
+				durable = Math.max(durable, batchEnd);
+
+			notifyAll();
+		}
+
+		if (error != null)
+			throw new IllegalStateException("The journal can't be written.", error);
+	}
+
+
+	/**
+	 * Waits for whoever is writing the journal to finish. Call only
+	 * while holding this object's lock.
+	 *
+	 * @throws IllegalStateException Thrown if the wait is interrupted.
+	 */
+	private void waitForFlush() throws IllegalStateException
+	{
+		try {
+			wait();
+		}
+
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the journal.", e);
+		}
+	}
+
+
+	/**
+	 * Counts records toward the next snapshot, starting it in the
+	 * background once there are enough.
+	 *
+	 * @param numRecords The number of records just journaled.
+	 */
+	private void countRecords(int numRecords)
+	{
+		if (sinceSnapshot.addAndGet(numRecords) < snapshotInterval
+				|| !snapshotQueued.compareAndSet(false, true))
+			return;
+
+		snapshotter.execute(() -> {
+			try {
+				snapshot();
+			}
+
+			// The journal still has every change, so nothing is lost;
+			// the next interval tries again.
+			catch (IOException e) {
+				sinceSnapshot.set(0);
+			}
+
+			finally {
+				snapshotQueued.set(false);
+			}
+		});
+	}
+
+
+	/**
+	 * Replays a journal file's records on the store.
+	 *
+	 * @param file The journal file.
+	 * @param last Whether it's the last journal file (whose last
+	 * record may have been cut short by a crash).
+	 * @throws IOException Thrown if the file can't be read.
+	 * @throws IllegalArgumentException Thrown if a record doesn't fit
+	 * the store.
+	 */
+	private void replay(File file, boolean last) throws IOException, IllegalArgumentException
+	{
+		ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		Othello game = new Othello();
+
+		while (records.remaining() >= RECORD_BYTES)
+		{
+			byte type = records.get();
+			int id = records.getInt();
+			byte cell = records.get();
+
+			switch (type) {
+
+			case NEW_GAME:
+				game.createNewGame();
+				game.setComputerPlayer((cell == COMPUTER_BLACK) ? Color.BLACK
+						: (cell == COMPUTER_WHITE) ? Color.WHITE : null);
+
+				if (store.create(game) != id)
+					throw new IllegalArgumentException(file + " doesn't fit its snapshot.");
+				break;
+
+			case MOVE:
+				if (!store.load(id, game) || cell < 0 || cell >= 64
+						|| (game.getSuggestions() & (1L << cell)) == 0)
+					throw new IllegalArgumentException(file + " doesn't fit its snapshot.");
+
+				game.playTurn(cell / 8, cell % 8);
+				store.save(id, game);
+				break;
+
+			case FREED_GAME:
+				if (!store.free(id))
+					throw new IllegalArgumentException(file + " doesn't fit its snapshot.");
+				break;
+
+			default:
+				// Only a crash mid-write leaves a bad record, & only at
+				// the end of the last file.
+				if (last)
+					return;
+
+				throw new IllegalArgumentException(file + " has a bad record.");
+			}
+		}
+	}
+
+
+	/**
+	 * Writes a copy of the store as a journal file's snapshot (see
+	 * SaveFile.write, so a snapshot is never half-written & a torn one
+	 * is found out), then deletes the older journal files & snapshots.
+	 *
+	 * @param number The journal file's number.
+	 * @param copy The store's copy (see GameStore.copyTo).
+	 * @throws IOException Thrown if the snapshot can't be written.
+	 */
+	private void writeSnapshot(int number, ByteBuffer copy) throws IOException
+	{
+		SaveFile.write(getFile(SNAPSHOT_PREFIX, number), copy);
+
+		for (int older : getNumbers(SNAPSHOT_PREFIX))
+			if (older < number)
+				Files.deleteIfExists(getFile(SNAPSHOT_PREFIX, older).toPath());
+
+		for (int older : getNumbers(JOURNAL_PREFIX))
+			if (older < number)
+				Files.deleteIfExists(getFile(JOURNAL_PREFIX, older).toPath());
+	}
+
+
+	/**
+	 * Writes the store as it is now as a journal file's snapshot. Only
+	 * while no changes can happen (opening the journal).
+	 *
+	 * @param number The journal file's number.
+	 * @throws IOException Thrown if the snapshot can't be written.
+	 */
+	private void writeSnapshot(int number) throws IOException
+	{
+		ByteBuffer copy = ByteBuffer.allocate(store.getFileSize());
+		store.copyTo(copy);
+		copy.flip();
+
+		writeSnapshot(number, copy);
+	}
+
+
+	/**
+	 * Copies the latest whole snapshot over the store file, skipping
+	 * torn ones (see SaveFile.read) & ones the journal doesn't carry on
+	 * from (a journal file after them is missing). If the store file's
+	 * stamp isn't the snapshot's, the store was changed without the
+	 * journal since, so the store file is left as it is.
+	 *
+	 * @param snapshots The snapshots' numbers, smallest first.
+	 * @param journals The journal files' numbers, smallest first.
+	 * @param storeFile The store file.
+	 * @return The snapshot's number, 0 if there are no snapshots, or
+	 * STORE_FILE_KEPT if the store file is newer than the snapshot (the
+	 * store file is left as it is in both cases).
+	 * @throws IOException Thrown if the store file can't be written.
+	 * @throws IllegalArgumentException Thrown if there are snapshots
+	 * but none of them can be used.
+	 */
+	private int restoreSnapshot(List<Integer> snapshots, List<Integer> journals,
+			File storeFile) throws IOException, IllegalArgumentException
+	{
+		if (snapshots.isEmpty())
+			return 0;
+
+		for (int i = snapshots.size() - 1; i >= 0; i--)
+		{
+			int number = snapshots.get(i);
+			int next = number;
+
+			// Journal files are numbered one after another.
+			for (int journal : journals)
+				if (journal == next)
+					next++;
+
+			if (!journals.isEmpty() && next <= journals.get(journals.size() - 1))
+				continue;
+
+			ByteBuffer copy = SaveFile.read(getFile(SNAPSHOT_PREFIX, number));
+
+			if (copy == null)
+				continue;
+
+			long storeStamp = readStamp(storeFile);
+
+			if (storeStamp != GameStore.NO_STAMP && storeStamp != GameStore.readStamp(copy))
+				return STORE_FILE_KEPT;
+
+			try (FileChannel out = FileChannel.open(storeFile.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE)) {
+				while (copy.hasRemaining())
+					out.write(copy);
+			}
+
+			return number;
+		}
+
+		throw new IllegalArgumentException("No whole snapshot in " + directory);
+	}
+
+
+	/**
+	 * Reads the store file's stamp (see GameStore.readStamp).
+	 *
+	 * @param storeFile The store file.
+	 * @return The stamp, or GameStore.NO_STAMP if there's no store file
+	 * or it isn't a store.
+	 * @throws IOException Thrown if the store file can't be read.
+	 */
+	static private long readStamp(File storeFile) throws IOException
+	{
+		if (!storeFile.exists())
+			return GameStore.NO_STAMP;
+
+		ByteBuffer header = ByteBuffer.allocate(GameStore.HEADER_BYTES);
+
+		try (FileChannel in = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ)) {
+			while (header.hasRemaining())
+				if (in.read(header) < 0)
+					return GameStore.NO_STAMP;
+		}
+
+		header.flip();
+		return GameStore.readStamp(header);
+	}
+
+
+	/**
+	 * Creates a new journal file.
+	 *
+	 * @param number The file's number.
+	 * @return The file, open for appending.
+	 * @throws IOException Thrown if the file can't be created.
+	 */
+	private FileChannel openSegment(int number) throws IOException
+	{
+		return FileChannel.open(getFile(JOURNAL_PREFIX, number).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+
+	/**
+	 * Returns a journal file or snapshot.
+	 *
+	 * @param prefix JOURNAL_PREFIX or SNAPSHOT_PREFIX.
+	 * @param number The file's number.
+	 * @return The file.
+	 */
+	private File getFile(String prefix, int number)
+	{
+		return new File(directory, prefix + number);
+	}
+
+
+	/**
+	 * Returns the numbers of the journal files or snapshots there are.
+	 *
+	 * @param prefix JOURNAL_PREFIX or SNAPSHOT_PREFIX.
+	 * @return The numbers, smallest first.
+	 */
+	private List<Integer> getNumbers(String prefix)
+	{
+		List<Integer> numbers = new ArrayList<>();
+
+		for (File file : listFiles())
+		{
+			String name = file.getName();
+
+			if (name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d+"))
+				numbers.add(Integer.parseInt(name.substring(prefix.length())));
+		}
+
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+
+	/**
+	 * Returns the files in the journal's directory.
+	 *
+	 * @return The files (none if the directory can't be read).
+	 */
+	private File[] listFiles()
+	{
+		File[] files = directory.listFiles();
+
+		return (files == null) ? new File[0] : files;
+	}
+}
@@ -0,0 +1,207 @@
+package othelloStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import othelloGame.Othello;
+
+
+/**
+ * Writes & reads whole files that readers can't catch half-written. A
+ * write goes to a temporary file next to the real one, is forced to
+ * disk, & is then renamed over the real file in one step, so a reader
+ * sees the old contents or the new, never a mix, & never waits for the
+ * writer. The contents end with a trailer (their length & a CRC32 of
+ * them), so a file that was cut short or garbled anyway (by a crash
+ * before the rename reached the disk, say) is found out & skipped
+ * rather than read.
+ *
+ * The file: the contents, then the trailer of TRAILER_BYTES bytes (the
+ * contents' length & their CRC32, as ints). A temporary file's name is
+ * the real file's, then a number, then TEMP_SUFFIX; one left behind by
+ * a crash can be deleted.
+ *
+ * @author ubuntu
+ *
+ */
+public final class SaveFile
+{
+	// Bytes in the trailer: the contents' length & CRC32
+	static public final int TRAILER_BYTES = 8;
+
+	// The end of a temporary file's name
+	static public final String TEMP_SUFFIX = ".tmp";
+
+
+	/**
+	 * Ensures no one tries to make an object out of this stateless
+	 * class.
+	 */
+	private SaveFile()
+	{
+	}
+
+
+	/**
+	 * Writes the given contents to a file, replacing what it held in
+	 * one step. Readers never see the file half-written.
+	 *
+	 * @param file The file.
+	 * @param contents The contents (from its position to its limit;
+	 * read to the end).
+	 * @throws IOException Thrown if the file can't be written (in which
+	 * case it's left as it was).
+	 */
+	static public void write(File file, ByteBuffer contents) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+		trailer.putInt(contents.remaining());
+		crc.update(contents.duplicate());
+		trailer.putInt((int) crc.getValue());
+		trailer.flip();
+
+		Path directory = file.getAbsoluteFile().getParentFile().toPath();
+		Path temp = Files.createTempFile(directory, file.getName() + ".", TEMP_SUFFIX);
+
+		try {
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				ByteBuffer[] buffers = { contents, trailer };
+
+				while (trailer.hasRemaining())
+					out.write(buffers);
+
+				out.force(true);
+			}
+
+			Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		forceDirectory(directory);
+	}
+
+
+	/**
+	 * Reads a file's contents, if the file is whole.
+	 *
+	 * @param file The file.
+	 * @return The contents (from position 0), or null if the file
+	 * doesn't exist, can't be read, or isn't whole (its trailer doesn't
+	 * match its contents).
+	 */
+	static public ByteBuffer read(File file)
+	{
+		ByteBuffer contents;
+
+		try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = in.size();
+
+			if (size < TRAILER_BYTES || size > Integer.MAX_VALUE)
+				return null;
+
+			contents = ByteBuffer.allocate((int) size);
+
+			while (contents.hasRemaining())
+				if (in.read(contents) < 0)
+					return null;
+		}
+
+		// Gone or unreadable: as good as torn.
+		catch (IOException e) {
+			return null;
+		}
+
+		int length = contents.getInt(contents.capacity() - TRAILER_BYTES);
+		int checksum = contents.getInt(contents.capacity() - TRAILER_BYTES + 4);
+
+		if (length != contents.capacity() - TRAILER_BYTES)
+			return null;
+
+		contents.flip();
+		contents.limit(length);
+
+		CRC32 crc = new CRC32();
+		crc.update(contents.duplicate());
+
+		return ((int) crc.getValue() == checksum) ? contents : null;
+	}
+
+
+	/**
+	 * Writes a game to a file, as its binary save record (see
+	 * Othello.saveGame(ByteBuffer)), replacing what it held in one
+	 * step.
+	 *
+	 * @param file The file.
+	 * @param game The game.
+	 * @throws IOException Thrown if the file can't be written (in which
+	 * case it's left as it was).
+	 */
+	static public void writeGame(File file, Othello game) throws IOException
+	{
+		ByteBuffer record = ByteBuffer.allocate(Othello.SAVE_BYTES);
+		game.saveGame(record);
+		record.flip();
+
+		write(file, record);
+	}
+
+
+	/**
+	 * Reads a game written by writeGame, if the file is whole.
+	 *
+	 * @param file The file.
+	 * @param game The game to load it into.
+	 * @return True if it was loaded, false if the file doesn't exist,
+	 * can't be read or isn't a whole save (the game is left as it
+	 * was).
+	 */
+	static public boolean readGame(File file, Othello game)
+	{
+		ByteBuffer record = read(file);
+
+		if (record == null || !Othello.isBinarySave(record))
+			return false;
+
+		try {
+			game.loadGame(record);
+			return true;
+		}
+
+		catch (IllegalArgumentException | BufferUnderflowException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Forces a directory's entries (a rename into it) to disk, where
+	 * the system allows it (it doesn't everywhere; the rename is then
+	 * as durable as the system makes it).
+	 *
+	 * @param directory The directory.
+	 */
+	static private void forceDirectory(Path directory)
+	{
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+
+		catch (IOException e) {
+			return;
+		}
+	}
+}
@@ -0,0 +1,646 @@
+package othelloTools;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.function.LongSupplier;
+
+import othelloGame.BitBoard;
+import othelloGame.Board;
+import othelloGame.GameLogic;
+import othelloGame.Othello;
+import othelloGame.Piece;
+import othelloSearch.MoveAnalyzer;
+import othelloSearch.MoveScore;
+import othelloSearch.PositionalEvaluator;
+import othelloSearch.SearchEngine;
+import othelloSearch.TranspositionTable;
+import othelloStore.GameStore;
+import othelloStore.SaveFile;
+import servlets.Util;
+
+
+/**
+ * Micro-benchmarks for the hot paths of the game & the servlets:
+ * checking a suggestion, playing a turn, copying the board into an
+ * array, saving & loading a game (as text, as a binary record & in a
+ * game store), reading the turn number from a game store & through
+ * the servlets (Util) & rendering the board (with hints) as HTML. Each
+ * runs on a set of midgame & endgame positions from engine games.
+ *
+ * The servlet benchmarks use the server's own games (see Util), so they
+ * add a game per position to the store in the working directory, kept
+ * as -Dothello.persistence says. Run it from a scratch directory.
+ *
+ * Each benchmark is warmed up, then timed over several fixed-length
+ * iterations (like JMH's average-time mode), & reports the average time
+ * per operation with a 99.9% confidence interval, the bytes allocated per
+ * operation & the garbage collections during the timed iterations.
+ *
+ * "run" writes the results to a CSV file (a baseline). "compare" reads
+ * two result files & flags every benchmark that got slower beyond both
+ * runs' error (exiting with status 1 if any did), so a before & after
+ * comparison is: run on the old code, run on the new code, compare.
+ *
+ * Usage: Benchmarks run resultsFile [nameFilter]
+ *        Benchmarks compare baselineFile resultsFile
+ *
+ * @author ubuntu
+ *
+ */
+final public class Benchmarks
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private Benchmarks() {}
+
+
+	// How many warmup & timed iterations each benchmark gets & how long
+	// each iteration is
+	static private final int WARMUP_ITERATIONS = 5;
+	static private final int MEASURED_ITERATIONS = 10;
+	static private final long ITERATION_NANOS = 200000000L;
+
+	// Operations run between looks at the clock
+	static private final int BATCH_SIZE = 64;
+
+	// The number of positions of each kind (a power of 2) & how many
+	// empty cells they have
+	static private final int NUM_POSITIONS = 16;
+	static private final int MIDGAME_EMPTIES = 32;
+	static private final int ENDGAME_EMPTIES = 12;
+
+	// Student's t for a two-sided 99.9% interval with MEASURED_ITERATIONS - 1
+	// degrees of freedom
+	static private final double T_999 = 4.781;
+
+	// The results file's first line
+	static private final String HEADER = "benchmark,ns_per_op,error_ns,bytes_per_op,gc_collections";
+
+	// Keeps benchmark results alive, so the JIT can't drop the work
+	static private long sink;
+
+
+	/**
+	 * A benchmark: an operation to time, which returns something the
+	 * harness consumes.
+	 */
+	static private class Benchmark
+	{
+		final String name;
+		final LongSupplier operation;
+
+		Benchmark(String theName, LongSupplier theOperation)
+		{
+			name = theName;
+			operation = theOperation;
+		}
+	}
+
+
+	/**
+	 * One benchmark's results.
+	 */
+	static private class Result
+	{
+		final double nanosPerOp;
+		final double error;
+		final double bytesPerOp;
+		final long collections;
+
+		Result(double theNanosPerOp, double theError, double theBytesPerOp, long theCollections)
+		{
+			nanosPerOp = theNanosPerOp;
+			error = theError;
+			bytesPerOp = theBytesPerOp;
+			collections = theCollections;
+		}
+	}
+
+
+	/**
+	 * Runs the benchmarks or compares two results files.
+	 *
+	 * @param args "run", the results file & (optionally) a string the
+	 * benchmarks to run have in their names; or "compare", the baseline
+	 * file & the results file.
+	 * @throws IOException Thrown if a file can't be read or written.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length >= 2 && args[0].equals("run"))
+			run(new File(args[1]), (args.length > 2) ? args[2] : "");
+
+		else if (args.length >= 3 && args[0].equals("compare"))
+		{
+			if (!compare(readResults(new File(args[1])), readResults(new File(args[2]))))
+				System.exit(1);
+		}
+
+		else
+		{
+			System.out.println("Usage: Benchmarks run resultsFile [nameFilter]");
+			System.out.println("       Benchmarks compare baselineFile resultsFile");
+		}
+	}
+
+
+	/**
+	 * Sets up the benchmarks (& their scratch game store),
+	 * then runs every one whose name has the filter in it.
+	 *
+	 * @param resultsFile The results file.
+	 * @param filter The filter ("" for every benchmark).
+	 * @throws IOException Thrown if a file can't be written.
+	 */
+	static private void run(File resultsFile, String filter) throws IOException
+	{
+		File storeFile = File.createTempFile("othello-benchmark", ".store");
+		storeFile.deleteOnExit();
+
+		List<Benchmark> benchmarks = new ArrayList<>();
+
+		try (GameStore store = new GameStore(storeFile, 2 * NUM_POSITIONS)) {
+			addBenchmarks(benchmarks, "midgame", makePositions(MIDGAME_EMPTIES), store);
+			addBenchmarks(benchmarks, "endgame", makePositions(ENDGAME_EMPTIES), store);
+			run(benchmarks, resultsFile, filter);
+		}
+	}
+
+
+	/**
+	 * Runs every benchmark whose name has the filter in it, prints the
+	 * results & writes them to the results file.
+	 *
+	 * @param benchmarks The benchmarks.
+	 * @param resultsFile The results file.
+	 * @param filter The filter ("" for every benchmark).
+	 * @throws IOException Thrown if the results file can't be written.
+	 */
+	static private void run(List<Benchmark> benchmarks, File resultsFile, String filter)
+			throws IOException
+	{
+
+		System.out.printf("%-28s %14s %12s %14s %6s%n", "benchmark", "ns/op", "error",
+				"bytes/op", "gcs");
+
+		try (PrintWriter out = new PrintWriter(resultsFile)) {
+			out.println(HEADER);
+
+			for (Benchmark benchmark : benchmarks)
+			{
+				if (!benchmark.name.contains(filter))
+					continue;
+
+				Result result = measure(benchmark);
+
+				System.out.printf("%-28s %14.1f %12.1f %14.1f %6d%n", benchmark.name,
+						result.nanosPerOp, result.error, result.bytesPerOp, result.collections);
+				out.printf("%s,%.3f,%.3f,%.3f,%d%n", benchmark.name, result.nanosPerOp,
+						result.error, result.bytesPerOp, result.collections);
+			}
+		}
+
+		System.out.println("Results written to " + resultsFile);
+	}
+
+
+	/**
+	 * Adds the benchmarks for one set of positions.
+	 *
+	 * @param benchmarks The benchmarks (added to).
+	 * @param kind What the positions are ("midgame" or "endgame").
+	 * @param games The positions.
+	 * @param store A scratch store for the game store benchmarks.
+	 * @throws IOException Thrown if the scratch files can't be written.
+	 */
+	static private void addBenchmarks(List<Benchmark> benchmarks, String kind, Othello[] games,
+			GameStore store) throws IOException
+	{
+		int mask = games.length - 1;
+		int[] next = new int[1];
+
+		// The suggestion checks go through every cell of every position.
+		benchmarks.add(new Benchmark("isValidSuggestion/" + kind, () -> {
+			int i = next[0]++;
+			Othello game = games[(i >>> 6) & mask];
+			int cell = i & 63;
+
+			return GameLogic.isValidSuggestion(game.getBoard(), game.getCurrentPlayer(),
+					cell / BitBoard.SIZE, cell % BitBoard.SIZE) ? 1 : 0;
+		}));
+
+		// Each turn is taken back, so the positions stay the same.
+		benchmarks.add(new Benchmark("playTurn/" + kind, () -> {
+			Othello game = games[next[0]++ & mask];
+			int cell = Long.numberOfTrailingZeros(game.getSuggestions());
+
+			game.playTurn(cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+			long hash = game.getHash();
+			game.unmakeMove();
+
+			return hash;
+		}));
+
+		Board[] boards = new Board[games.length];
+
+		for (int i = 0; i < games.length; i++)
+			boards[i] = copyBoard(games[i]);
+
+		benchmarks.add(new Benchmark("getArray/" + kind, () -> {
+			Piece[][] array = boards[next[0]++ & mask].getArray();
+			return array.length + ((array[3][3] == null) ? 0 : 1);
+		}));
+
+		String[] saves = new String[games.length];
+
+		for (int i = 0; i < games.length; i++)
+			saves[i] = save(games[i]);
+
+		benchmarks.add(new Benchmark("saveGame/" + kind, () ->
+				save(games[next[0]++ & mask]).length()));
+
+		Othello loaded = new Othello();
+
+		benchmarks.add(new Benchmark("loadGame/" + kind, () -> {
+			loaded.loadGame(new Scanner(saves[next[0]++ & mask]));
+			return loaded.getHash();
+		}));
+
+		ByteBuffer record = ByteBuffer.allocate(Othello.SAVE_BYTES);
+		ByteBuffer[] records = new ByteBuffer[games.length];
+
+		for (int i = 0; i < games.length; i++)
+		{
+			records[i] = ByteBuffer.allocate(Othello.SAVE_BYTES);
+			games[i].saveGame(records[i]);
+		}
+
+		benchmarks.add(new Benchmark("saveBinary/" + kind, () -> {
+			record.clear();
+			games[next[0]++ & mask].saveGame(record);
+			return record.getLong(Othello.SAVE_BYTES - 8);
+		}));
+
+		benchmarks.add(new Benchmark("loadBinary/" + kind, () -> {
+			ByteBuffer save = records[next[0]++ & mask];
+			save.rewind();
+			loaded.loadGame(save);
+			return loaded.getHash();
+		}));
+
+		int[] ids = new int[games.length];
+
+		for (int i = 0; i < games.length; i++)
+			ids[i] = store.create(games[i]);
+
+		benchmarks.add(new Benchmark("storeLoad/" + kind, () -> {
+			store.load(ids[next[0]++ & mask], loaded);
+			return loaded.getHash();
+		}));
+
+		benchmarks.add(new Benchmark("storeSave/" + kind, () -> {
+			int i = next[0]++ & mask;
+			store.save(ids[i], games[i]);
+			return i;
+		}));
+
+		benchmarks.add(new Benchmark("storeTurnNumber/" + kind, () ->
+				store.getTurnNumber(ids[next[0]++ & mask])));
+
+		// The positions as the server's games, as Reload reads them.
+		int[] serverIds = new int[games.length];
+
+		for (int i = 0; i < games.length; i++)
+			serverIds[i] = addServerGame(games[i]);
+
+		benchmarks.add(new Benchmark("getTurnNumber/" + kind, () ->
+				Util.getTurnNumber(serverIds[next[0]++ & mask])));
+
+		// Each position in its own checksummed save file (see SaveFile).
+		File[] gameFiles = new File[games.length];
+
+		for (int i = 0; i < games.length; i++)
+		{
+			gameFiles[i] = File.createTempFile("othello-benchmark", ".save");
+			gameFiles[i].deleteOnExit();
+			SaveFile.writeGame(gameFiles[i], games[i]);
+		}
+
+		benchmarks.add(new Benchmark("saveFileRead/" + kind, () -> {
+			SaveFile.readGame(gameFiles[next[0]++ & mask], loaded);
+			return loaded.getHash();
+		}));
+
+		// The board as GamePage renders it, with each position's hints.
+		MoveAnalyzer analyzer = new MoveAnalyzer(new TranspositionTable(4),
+				new PositionalEvaluator());
+		analyzer.setMaxDepth(2);
+		MoveScore[][] hints = new MoveScore[games.length][];
+
+		for (int i = 0; i < games.length; i++)
+			hints[i] = analyzer.analyze(games[i]);
+
+		benchmarks.add(new Benchmark("makeHtmlBoard/" + kind, () -> {
+			int i = next[0]++ & mask;
+			return Util.makeHtmlBoard(games[i], serverIds[i], "MakeMove", hints[i]).length();
+		}));
+	}
+
+
+	/**
+	 * Adds a position to the server's games (see Util), by playing its
+	 * moves in a new game.
+	 *
+	 * @param position The position (played from the start).
+	 * @return The new game's ID.
+	 * @throws IllegalStateException Thrown if the server's store is
+	 * full or can't be written.
+	 */
+	static private int addServerGame(Othello position) throws IllegalStateException
+	{
+		int id = Util.createGame(null);
+		Othello game = Util.loadGame(id);
+
+		for (int i = 0; i < position.getNumMovesMade(); i++)
+		{
+			int cell = position.getMoveMade(i);
+			game.playTurn(cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+		}
+
+		Util.saveGame(id, game);
+		return id;
+	}
+
+
+	/**
+	 * Warms a benchmark up, then times it.
+	 *
+	 * @param benchmark The benchmark.
+	 * @return Its results.
+	 */
+	static private Result measure(Benchmark benchmark)
+	{
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+			iterate(benchmark.operation);
+
+		long bytesBefore = allocatedBytes();
+		long collectionsBefore = collections();
+		double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+		long ops = 0;
+
+		for (int i = 0; i < MEASURED_ITERATIONS; i++)
+		{
+			long start = System.nanoTime();
+			long iterationOps = iterate(benchmark.operation);
+
+			nanosPerOp[i] = (double) (System.nanoTime() - start) / iterationOps;
+			ops += iterationOps;
+		}
+
+		long bytes = allocatedBytes() - bytesBefore;
+
+		double mean = 0;
+
+		for (double time : nanosPerOp)
+			mean += time / MEASURED_ITERATIONS;
+
+		double variance = 0;
+
+		for (double time : nanosPerOp)
+			variance += (time - mean) * (time - mean) / (MEASURED_ITERATIONS - 1);
+
+		return new Result(mean, T_999 * Math.sqrt(variance / MEASURED_ITERATIONS),
+				(bytesBefore < 0) ? -1 : (double) bytes / ops, collections() - collectionsBefore);
+	}
+
+
+	/**
+	 * Runs an operation in batches for one iteration's time.
+	 *
+	 * @param operation The operation.
+	 * @return The number of times it ran.
+	 */
+	static private long iterate(LongSupplier operation)
+	{
+		long end = System.nanoTime() + ITERATION_NANOS;
+		long ops = 0;
+		long result = 0;
+
+		do {
+			for (int i = 0; i < BATCH_SIZE; i++)
+				result += operation.getAsLong();
+
+			ops += BATCH_SIZE;
+		}
+		while (System.nanoTime() < end);
+
+		sink += result;
+		return ops;
+	}
+
+
+	/**
+	 * Returns the bytes this thread has allocated so far.
+	 * @return The bytes, or -1 if the JVM can't tell.
+	 */
+	static private long allocatedBytes()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+
+		return ((com.sun.management.ThreadMXBean) threads)
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+
+	/**
+	 * Returns the number of garbage collections so far.
+	 * @return The total over every collector.
+	 */
+	static private long collections()
+	{
+		long total = 0;
+
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(collector.getCollectionCount(), 0);
+
+		return total;
+	}
+
+
+	/**
+	 * Makes test positions by playing engine games (after a few random
+	 * moves, with a fixed seed, so every run uses the same positions)
+	 * until the given number of cells are empty.
+	 *
+	 * @param empties The number of empty cells.
+	 * @return The positions.
+	 */
+	static private Othello[] makePositions(int empties)
+	{
+		Random random = new Random(empties);
+		SearchEngine engine = new SearchEngine(new TranspositionTable(4), new PositionalEvaluator());
+		engine.setMaxDepth(2);
+
+		Othello[] positions = new Othello[NUM_POSITIONS];
+
+		for (int i = 0; i < NUM_POSITIONS; i++)
+		{
+			Othello game;
+
+			do {
+				game = new Othello();
+
+				for (int ply = 0; ply < BitBoard.SIZE * BitBoard.SIZE - 4 - empties
+						&& !game.isFinished(); ply++)
+				{
+					if (ply < 4)
+						RandomMoves.play(game, random);
+
+					else
+					{
+						int cell = engine.search(game).getBestMove();
+						game.makeMove(cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+					}
+				}
+			}
+			while (game.isFinished());
+
+			positions[i] = game;
+		}
+
+		return positions;
+	}
+
+
+	/**
+	 * Copies a game's pieces onto a new board.
+	 *
+	 * @param game The game.
+	 * @return The board.
+	 */
+	static private Board copyBoard(Othello game)
+	{
+		Board board = new BitBoard();
+		board.clearAll();
+
+		for (int row = 0; row < BitBoard.SIZE; row++)
+			for (int col = 0; col < BitBoard.SIZE; col++)
+				if (game.getBoard().getPiece(row, col) != null)
+					board.setPiece(row, col, game.getBoard().getPiece(row, col));
+
+		return board;
+	}
+
+
+	/**
+	 * Saves a game to a string, the way the servlets save it to a file.
+	 *
+	 * @param game The game.
+	 * @return The save.
+	 */
+	static private String save(Othello game)
+	{
+		StringWriter save = new StringWriter();
+
+		try (PrintWriter out = new PrintWriter(save)) {
+			game.saveGame(out);
+		}
+
+		return save.toString();
+	}
+
+
+	/**
+	 * Reads a results file.
+	 *
+	 * @param file The file.
+	 * @return Each benchmark's results, in the file's order.
+	 * @throws FileNotFoundException Thrown if the file doesn't exist.
+	 * @throws IllegalArgumentException Thrown if it isn't a results file.
+	 */
+	static private Map<String, Result> readResults(File file)
+			throws FileNotFoundException, IllegalArgumentException
+	{
+		Map<String, Result> results = new LinkedHashMap<>();
+
+		try (Scanner in = new Scanner(file)) {
+			if (!in.hasNextLine() || !in.nextLine().equals(HEADER))
+				throw new IllegalArgumentException(file + " isn't a benchmark results file.");
+
+			while (in.hasNextLine())
+			{
+				String[] fields = in.nextLine().split(",");
+
+				if (fields.length != 5)
+					continue;
+
+				results.put(fields[0], new Result(Double.parseDouble(fields[1]),
+						Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+						Long.parseLong(fields[4])));
+			}
+		}
+
+		return results;
+	}
+
+
+	/**
+	 * Prints how each benchmark changed between two runs.
+	 *
+	 * @param baseline The earlier run's results.
+	 * @param results The later run's results.
+	 * @return True if no benchmark got slower beyond the runs' error.
+	 */
+	static private boolean compare(Map<String, Result> baseline, Map<String, Result> results)
+	{
+		boolean ok = true;
+
+		System.out.printf("%-28s %14s %14s %9s %14s %14s%n", "benchmark", "baseline ns/op",
+				"ns/op", "change", "baseline B/op", "B/op");
+
+		for (Map.Entry<String, Result> entry : results.entrySet())
+		{
+			Result before = baseline.get(entry.getKey());
+			Result after = entry.getValue();
+
+			if (before == null)
+				continue;
+
+			String verdict = "";
+
+			if (after.nanosPerOp - after.error > before.nanosPerOp + before.error)
+			{
+				verdict = "SLOWER";
+				ok = false;
+			}
+
+			else if (after.nanosPerOp + after.error < before.nanosPerOp - before.error)
+				verdict = "faster";
+
+			System.out.printf("%-28s %14.1f %14.1f %+8.1f%% %14.1f %14.1f  %s%n", entry.getKey(),
+					before.nanosPerOp, after.nanosPerOp,
+					100 * (after.nanosPerOp / before.nanosPerOp - 1), before.bytesPerOp,
+					after.bytesPerOp, verdict);
+		}
+
+		return ok;
+	}
+}
@@ -0,0 +1,289 @@
+package othelloTools;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import othelloGame.BitBoard;
+import othelloGame.CanonicalPosition;
+import othelloGame.Color;
+import othelloGame.Othello;
+import othelloSearch.OpeningBook;
+import othelloSearch.PositionalEvaluator;
+import othelloSearch.SearchEngine;
+import othelloSearch.TranspositionTable;
+
+
+/**
+ * Builds an opening book (see othelloSearch.OpeningBook) from games,
+ * either played by the engine against itself or read from a file.
+ *
+ * Every move in the first bookPlies plies of a game goes into the book.
+ * A move's weight is the points the player who made it went on to
+ * score: 2 for each win, 1 for each draw & 0 for each loss (1 if the
+ * game's record stops before the end). Moves that never scored are
+ * left out.
+ *
+ * Self-play games start with a few random moves, so the engine doesn't
+ * play the same game every time.
+ *
+ * Imported games are one game per line, as moves in the usual notation
+ * (column letter a-h, then row number 1-8: "f5d6c3d3c4..."). Blank
+ * lines & lines starting with # are skipped. A game is read up to its
+ * first move that can't be played here: a pass (which this game
+ * doesn't have, so archives' endgames often hold one) or a bad move.
+ * The moves before it still go in the book, but the game's result then
+ * isn't known.
+ *
+ * Usage: BookBuilder bookFile selfplay numGames [bookPlies] [msPerMove]
+ *        BookBuilder bookFile import gamesFile [bookPlies]
+ *
+ * @author ubuntu
+ *
+ */
+final public class BookBuilder
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private BookBuilder() {}
+
+
+	// How many plies of each game go in the book by default
+	static private final int DEFAULT_BOOK_PLIES = 12;
+
+	// How long the engine thinks about each self-play move by default
+	static private final int DEFAULT_MOVE_TIME = 100;
+
+	// How many random moves start each self-play game
+	static private final int RANDOM_PLIES = 3;
+
+	// Size of the self-play transposition table
+	static private final int TABLE_MB = 64;
+
+
+	/**
+	 * Builds the book.
+	 *
+	 * @param args The book file, then "selfplay" & the number of games,
+	 * or "import" & the games file, then the number of plies per game
+	 * to keep (default 12) & (for self-play) the time per move in
+	 * milliseconds (default 100).
+	 * @throws IOException Thrown if a file can't be read or written.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 3)
+		{
+			System.out.println("Usage: BookBuilder bookFile selfplay numGames [bookPlies] [msPerMove]");
+			System.out.println("       BookBuilder bookFile import gamesFile [bookPlies]");
+			return;
+		}
+
+		File bookFile = new File(args[0]);
+		int bookPlies = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_BOOK_PLIES;
+
+		// Canonical hash -> move (in the canonical orientation) -> weight
+		SortedMap<Long, SortedMap<Integer, Integer>> moves = new TreeMap<>();
+		int numGames;
+
+		switch (args[1]) {
+			case "selfplay":
+			{
+				int moveTime = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_MOVE_TIME;
+				numGames = Integer.parseInt(args[2]);
+
+				selfPlay(numGames, bookPlies, moveTime, moves);
+				break;
+			}
+
+			case "import":
+				numGames = importGames(new File(args[2]), bookPlies, moves);
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown source: " + args[1]
+						+ " (use selfplay or import).");
+		}
+
+		OpeningBook.write(bookFile, moves);
+
+		System.out.println(numGames + " games, " + moves.size() + " positions, "
+				+ new OpeningBook(bookFile).getNumRecords() + " moves written to "
+				+ bookFile);
+	}
+
+
+	/**
+	 * Plays the engine against itself & adds the games' openings to
+	 * the book.
+	 *
+	 * @param numGames The number of games to play.
+	 * @param bookPlies The number of plies of each game to add.
+	 * @param moveTime The time per move in milliseconds.
+	 * @param moves The book's moves so far (added to).
+	 */
+	static private void selfPlay(int numGames, int bookPlies, int moveTime,
+			SortedMap<Long, SortedMap<Integer, Integer>> moves)
+	{
+		Random random = new Random(1);
+		SearchEngine engine = new SearchEngine(new TranspositionTable(TABLE_MB),
+				new PositionalEvaluator());
+		engine.setTimeLimit(moveTime);
+
+		for (int i = 0; i < numGames; i++)
+		{
+			Othello game = new Othello();
+			int[] played = new int[SearchEngine.MAX_PLY];
+			int numPlayed = 0;
+
+			while (!game.isFinished())
+			{
+				int cell;
+
+				if (numPlayed < RANDOM_PLIES)
+					cell = RandomMoves.pick(game.getSuggestions(), random);
+
+				else
+					cell = engine.search(game).getBestMove();
+
+				played[numPlayed++] = cell;
+				game.makeMove(cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+			}
+
+			addGame(played, numPlayed, true, false, bookPlies, moves);
+
+			if ((i + 1) % 10 == 0)
+				System.out.println((i + 1) + " games played");
+		}
+	}
+
+
+	/**
+	 * Reads games from a file & adds their openings to the book. Games
+	 * whose first move can't be played are reported & skipped, as are
+	 * the moves after a pass or bad move (reported if that cuts the
+	 * opening short).
+	 *
+	 * @param gamesFile The games file.
+	 * @param bookPlies The number of plies of each game to add.
+	 * @param moves The book's moves so far (added to).
+	 * @return The number of games added.
+	 * @throws FileNotFoundException Thrown if the file doesn't exist.
+	 */
+	static private int importGames(File gamesFile, int bookPlies,
+			SortedMap<Long, SortedMap<Integer, Integer>> moves) throws FileNotFoundException
+	{
+		int numGames = 0;
+		int lineNumber = 0;
+
+		try (Scanner in = new Scanner(gamesFile)) {
+			while (in.hasNextLine())
+			{
+				String line = in.nextLine().replaceAll("\\s", "").toLowerCase();
+				lineNumber++;
+
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				int[] played = parseGame(line);
+
+				if (played.length == 0)
+				{
+					System.out.println("Skipping line " + lineNumber + ": not a legal game.");
+					continue;
+				}
+
+				boolean cutShort = (2 * played.length < line.length());
+
+				if (played.length < Math.min(bookPlies, line.length() / 2))
+					System.out.println("Line " + lineNumber + ": only the first " + played.length
+							+ " moves can be played (a pass or bad move follows).");
+
+				addGame(played, played.length, false, cutShort, bookPlies, moves);
+				numGames++;
+			}
+		}
+
+		return numGames;
+	}
+
+
+	/**
+	 * Turns a game's moves ("f5d6c3...") into cells, up to the first
+	 * one that can't be played in order (a pass or a bad move).
+	 *
+	 * @param line The moves.
+	 * @return The cells (row * 8 + col) of the moves before it (none if
+	 * the first can't be played).
+	 */
+	static private int[] parseGame(String line)
+	{
+		int[] played = new int[Math.min(line.length() / 2, SearchEngine.MAX_PLY)];
+		Othello game = new Othello();
+
+		for (int i = 0; i < played.length; i++)
+		{
+			int col = line.charAt(2 * i) - 'a';
+			int row = line.charAt(2 * i + 1) - '1';
+
+			if (col < 0 || col >= BitBoard.SIZE || row < 0 || row >= BitBoard.SIZE
+					|| (game.getSuggestions() & BitBoard.cellMask(row, col)) == 0)
+				return Arrays.copyOf(played, i);
+
+			played[i] = row * BitBoard.SIZE + col;
+			game.playTurn(row, col);
+		}
+
+		return played;
+	}
+
+
+	/**
+	 * Replays a game & adds the moves of its opening to the book.
+	 *
+	 * @param played The game's moves (cells).
+	 * @param numPlayed The number of moves.
+	 * @param complete Whether the moves are the whole game (so its
+	 * result counts).
+	 * @param cutShort Whether the game went on past the moves (after a
+	 * pass), so its result isn't known even if the board looks
+	 * finished.
+	 * @param bookPlies The number of plies to add.
+	 * @param moves The book's moves so far (added to).
+	 */
+	static private void addGame(int[] played, int numPlayed, boolean complete, boolean cutShort,
+			int bookPlies, SortedMap<Long, SortedMap<Integer, Integer>> moves)
+	{
+		Othello game = new Othello();
+
+		for (int i = 0; i < numPlayed; i++)
+			game.playTurn(played[i] / BitBoard.SIZE, played[i] % BitBoard.SIZE);
+
+		// The final disc difference for black (if the game finished)
+		int blackMargin = Long.bitCount(game.getBoard().getPieceMask(Color.BLACK))
+				- Long.bitCount(game.getBoard().getPieceMask(Color.WHITE));
+		boolean finished = complete || (!cutShort && game.isFinished());
+
+		game = new Othello();
+
+		for (int i = 0; i < Math.min(numPlayed, bookPlies); i++)
+		{
+			int margin = (game.getCurrentPlayer() == Color.BLACK) ? blackMargin : -blackMargin;
+			int points = !finished ? 1 : (margin > 0) ? 2 : (margin == 0) ? 1 : 0;
+
+			CanonicalPosition position = new CanonicalPosition(game);
+
+			moves.computeIfAbsent(position.getHash(), k -> new TreeMap<>())
+					.merge(position.toCanonical(played[i]), points, Integer::sum);
+
+			game.playTurn(played[i] / BitBoard.SIZE, played[i] % BitBoard.SIZE);
+		}
+	}
+}
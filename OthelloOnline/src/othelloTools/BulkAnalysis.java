@@ -0,0 +1,260 @@
+package othelloTools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import othelloGame.BitBoard;
+import othelloGame.Color;
+import othelloGame.Othello;
+import othelloSearch.Evaluator;
+import othelloSearch.MoveAnalyzer;
+import othelloSearch.MoveScore;
+import othelloSearch.PatternEvaluator;
+import othelloSearch.PositionalEvaluator;
+import othelloSearch.TranspositionTable;
+
+
+/**
+ * Scores every position of a file of played games, to find blunders.
+ * For each position it scores every legal move with a shallow search
+ * (see othelloSearch.MoveAnalyzer) & writes how much worse the played
+ * move scored than the best one.
+ *
+ * The games are streamed: one thread reads & replays them through
+ * Othello, handing each position to a pool of worker threads (one per
+ * core by default). Results are written in the games' order. Only a
+ * few positions per worker are in flight at once; once that many are
+ * waiting, reading stops until the oldest is done & written. So memory
+ * stays the same however big the file is, & the workers are never
+ * short of positions.
+ *
+ * Games are one per line, as moves in the usual notation (column letter
+ * a-h, then row number 1-8: "f5d6c3d3c4..."), as for BookBuilder. Blank
+ * lines & lines starting with # are skipped. Moves after an illegal
+ * move (or a pass, which this game doesn't have) are skipped with a
+ * note in the results.
+ *
+ * Each result is one line: the game's line number, the ply, the color
+ * to move, the played & best moves, their scores (for the player to
+ * move) & the loss (best score minus played score; 0 if the best move
+ * was played).
+ *
+ * Usage: BulkAnalysis gamesFile resultsFile [evaluator] [depth] [endgameEmpties] [threads]
+ *
+ * @author ubuntu
+ *
+ */
+final public class BulkAnalysis
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private BulkAnalysis() {}
+
+
+	// Defaults for the search depth after each move & for the number of
+	// empty cells the workers solve exactly from
+	static private final int DEFAULT_DEPTH = 2;
+	static private final int DEFAULT_ENDGAME_EMPTIES = 8;
+
+	// Positions in flight per worker
+	static private final int POSITIONS_PER_WORKER = 4;
+
+	// Size of the transposition table the workers share
+	static private final int TABLE_MB = 64;
+
+	// How often to print progress
+	static private final long REPORT_NANOS = 10000000000L;
+
+
+	/**
+	 * Analyzes the games.
+	 *
+	 * @param args The games file, the results file, then (optionally)
+	 * the evaluator ("positional", the default, or a pattern weights
+	 * file), the search depth after each move (default 2), the number of
+	 * empty cells to solve exactly from (default 8) & the number of
+	 * worker threads (default: all cores).
+	 * @throws IOException Thrown if a file can't be read or written.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: BulkAnalysis gamesFile resultsFile [evaluator] [depth] "
+					+ "[endgameEmpties] [threads]");
+			return;
+		}
+
+		File gamesFile = new File(args[0]);
+		File resultsFile = new File(args[1]);
+		Evaluator evaluator = (args.length < 3 || args[2].equals("positional"))
+				? new PositionalEvaluator() : new PatternEvaluator(new File(args[2]));
+		int depth = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_DEPTH;
+		int endgameEmpties = (args.length > 4) ? Integer.parseInt(args[4])
+				: DEFAULT_ENDGAME_EMPTIES;
+		int numThreads = (args.length > 5) ? Integer.parseInt(args[5])
+				: Runtime.getRuntime().availableProcessors();
+
+		// Each worker keeps its own analyzer (they aren't thread-safe).
+		TranspositionTable table = new TranspositionTable(TABLE_MB);
+		table.setGenerationInterval(TranspositionTable.SHARED_GENERATION_INTERVAL);
+		ThreadLocal<MoveAnalyzer> analyzers = ThreadLocal.withInitial(() -> {
+			MoveAnalyzer analyzer = new MoveAnalyzer(table, evaluator);
+			analyzer.setMaxDepth(depth);
+			analyzer.setEndgameEmpties(endgameEmpties);
+			return analyzer;
+		});
+
+		ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+
+		// The positions in flight, oldest first
+		Queue<Future<String>> inFlight = new ArrayDeque<>();
+		int maxInFlight = numThreads * POSITIONS_PER_WORKER;
+
+		long start = System.nanoTime();
+		long lastReport = start;
+		long numPositions = 0;
+		int lineNumber = 0;
+
+		try (BufferedReader in = new BufferedReader(new FileReader(gamesFile));
+				PrintWriter out = new PrintWriter(resultsFile)) {
+			out.println("# line ply toMove played best playedScore bestScore loss");
+
+			String line;
+
+			while ((line = in.readLine()) != null)
+			{
+				line = line.replaceAll("\\s", "").toLowerCase();
+				lineNumber++;
+
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				Othello game = new Othello();
+
+				for (int ply = 0; 2 * ply + 1 < line.length(); ply++)
+				{
+					int col = line.charAt(2 * ply) - 'a';
+					int row = line.charAt(2 * ply + 1) - '1';
+
+					if (col < 0 || col >= BitBoard.SIZE || row < 0 || row >= BitBoard.SIZE
+							|| (game.getSuggestions() & BitBoard.cellMask(row, col)) == 0)
+					{
+						String note = "# line " + lineNumber + ": move " + (ply + 1) + " ("
+								+ line.substring(2 * ply, 2 * ply + 2) + ") isn't legal; "
+								+ "skipping the rest";
+
+						inFlight.add(CompletableFuture.completedFuture(note));
+						break;
+					}
+
+					Color toMove = game.getCurrentPlayer();
+					long player = game.getBoard().getPieceMask(toMove);
+					long opponent = game.getBoard().getPieceMask(
+							(toMove == Color.BLACK) ? Color.WHITE : Color.BLACK);
+					int played = row * BitBoard.SIZE + col;
+					String prefix = lineNumber + " " + (ply + 1) + " " + toMove + " ";
+
+					// Wait for the oldest position if too many are in flight.
+					while (inFlight.size() >= maxInFlight)
+						out.println(waitFor(inFlight.remove()));
+
+					inFlight.add(workers.submit(() -> prefix + describe(
+							analyzers.get().analyze(player, opponent, toMove), played)));
+					numPositions++;
+
+					game.playTurn(row, col);
+				}
+
+				if (System.nanoTime() - lastReport > REPORT_NANOS)
+				{
+					lastReport = System.nanoTime();
+					System.out.printf("%d positions read, %.0f positions/s%n", numPositions,
+							numPositions * 1e9 / (lastReport - start));
+				}
+			}
+
+			while (!inFlight.isEmpty())
+				out.println(waitFor(inFlight.remove()));
+		}
+
+		finally {
+			workers.shutdownNow();
+		}
+
+		long nanos = System.nanoTime() - start;
+		System.out.printf("%d positions analyzed in %.1f s (%.0f positions/s)%n", numPositions,
+				nanos / 1e9, numPositions * 1e9 / Math.max(nanos, 1));
+	}
+
+
+	/**
+	 * Describes how the played move compares to the best one.
+	 *
+	 * @param scores The position's moves' scores, best first.
+	 * @param played The played move's cell.
+	 * @return The played & best moves, their scores & the loss.
+	 */
+	static private String describe(MoveScore[] scores, int played)
+	{
+		MoveScore best = scores[0];
+		MoveScore playedScore = best;
+
+		for (MoveScore score : scores)
+			if (score.getCell() == played)
+				playedScore = score;
+
+		return describeCell(played) + " " + describeCell(best.getCell()) + " "
+				+ playedScore.getScore() + " " + best.getScore() + " "
+				+ (best.getScore() - playedScore.getScore());
+	}
+
+
+	/**
+	 * Waits for a position's result.
+	 *
+	 * @param result The position's pending result.
+	 * @return The result.
+	 * @throws IllegalStateException Thrown if the analysis failed or the
+	 * wait was interrupted.
+	 */
+	static private String waitFor(Future<String> result) throws IllegalStateException
+	{
+		try {
+			return result.get();
+		}
+
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for an analysis.", e);
+		}
+
+		catch (ExecutionException e) {
+			throw new IllegalStateException("An analysis failed.", e.getCause());
+		}
+	}
+
+
+	/**
+	 * Names a cell in the usual notation (column letter, row number).
+	 *
+	 * @param cell The cell (row * 8 + col).
+	 * @return The cell's name, like "f5".
+	 */
+	static private String describeCell(int cell)
+	{
+		return "" + (char) ('a' + cell % BitBoard.SIZE) + (cell / BitBoard.SIZE + 1);
+	}
+}
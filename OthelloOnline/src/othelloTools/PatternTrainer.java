@@ -0,0 +1,361 @@
+package othelloTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import othelloGame.Color;
+import othelloGame.GameLogic;
+import othelloGame.Othello;
+import othelloSearch.PatternEvaluator;
+import othelloSearch.PositionalEvaluator;
+import othelloSearch.SearchEngine;
+import othelloSearch.TranspositionTable;
+
+
+/**
+ * Makes a weights file for othelloSearch.PatternEvaluator.
+ *
+ * Plays games of the engine (with the positional evaluator & a shallow
+ * search) against itself, starting each with random moves. Once few
+ * enough cells are empty the engine plays perfectly, so every position
+ * of a game is labelled with the final margin under perfect play from
+ * there, seen from its player to move's side. Then fits the pattern
+ * weights to the labels by stochastic gradient descent, holding back
+ * every tenth game to report how well the weights predict games they
+ * weren't fitted to (& how well they still do once written as 16-bit
+ * weights).
+ *
+ * Usage: PatternTrainer weightsFile numGames [numPhases] [epochs] [depth]
+ *
+ * @author ubuntu
+ *
+ */
+final public class PatternTrainer
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private PatternTrainer() {}
+
+
+	// Defaults for the number of phases, passes over the positions &
+	// search depth
+	static private final int DEFAULT_PHASES = 10;
+	static private final int DEFAULT_EPOCHS = 20;
+	static private final int DEFAULT_DEPTH = 4;
+
+	// How many random moves start each game
+	static private final int RANDOM_PLIES = 10;
+
+	// Size of the transposition table the games share
+	static private final int TABLE_MB = 64;
+
+	// The learning rate (shared by all the weights a position uses) &
+	// how much it shrinks after each epoch
+	static private final double LEARNING_RATE = 0.5 / PatternEvaluator.NUM_INSTANCES;
+	static private final double LEARNING_DECAY = 0.85;
+
+
+	/**
+	 * One game's positions, with their labels.
+	 */
+	static private class Game
+	{
+		// Masks of the player to move's & the opponent's pieces
+		long[] players = new long[SearchEngine.MAX_PLY];
+		long[] opponents = new long[SearchEngine.MAX_PLY];
+
+		// The final margin for the player to move, in discs
+		int[] margins = new int[SearchEngine.MAX_PLY];
+
+		// The number of positions
+		int numPositions;
+	}
+
+
+	/**
+	 * Plays the games, fits the weights & writes them.
+	 *
+	 * @param args The weights file, the number of games, then the number
+	 * of phases (default 10), epochs (default 20) & search depth
+	 * (default 4).
+	 * @throws IOException Thrown if the file can't be written.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: PatternTrainer weightsFile numGames [numPhases] [epochs] [depth]");
+			return;
+		}
+
+		File weightsFile = new File(args[0]);
+		int numGames = Integer.parseInt(args[1]);
+		int numPhases = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PHASES;
+		int epochs = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_EPOCHS;
+		int depth = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_DEPTH;
+
+		long start = System.nanoTime();
+		List<Game> games = playGames(numGames, depth);
+
+		System.out.printf("%d games played in %.1f s%n", numGames, (System.nanoTime() - start) / 1e9);
+
+		float[][] weights = new float[numPhases][PatternEvaluator.PHASE_SIZE];
+		int[] indexes = new int[PatternEvaluator.NUM_INSTANCES];
+		Random random = new Random(1);
+		double rate = LEARNING_RATE;
+
+		for (int epoch = 1; epoch <= epochs; epoch++)
+		{
+			double trainingError = 0;
+			long trainingCount = 0;
+
+			// Visit the training games in a new order each epoch.
+			int[] order = IntStream.range(0, games.size()).filter(i -> i % 10 != 0).toArray();
+			shuffle(order, random);
+
+			for (int game : order)
+			{
+				Game g = games.get(game);
+
+				for (int i = 0; i < g.numPositions; i++)
+				{
+					float[] phaseWeights = weights[PatternEvaluator.getPhase(
+							Long.bitCount(g.players[i] | g.opponents[i]), numPhases)];
+					double error = g.margins[i] - predict(phaseWeights, g.players[i], g.opponents[i],
+							indexes);
+					float step = (float) (rate * error);
+
+					// Keep the weights of a pattern read either way round
+					// equal, so equivalent positions score alike.
+					for (int index : indexes)
+					{
+						int symmetric = PatternEvaluator.getSymmetricIndex(index);
+						phaseWeights[index] += step;
+
+						if (symmetric != index)
+							phaseWeights[symmetric] += step;
+					}
+
+					trainingError += error * error;
+					trainingCount++;
+				}
+			}
+
+			System.out.printf("epoch %2d: training error %.2f discs, held-out error %.2f discs%n",
+					epoch, Math.sqrt(trainingError / Math.max(trainingCount, 1)),
+					heldOutError(games, weights, indexes));
+
+			rate *= LEARNING_DECAY;
+		}
+
+		short[][] units = new short[numPhases][PatternEvaluator.PHASE_SIZE];
+
+		for (int phase = 0; phase < numPhases; phase++)
+			for (int i = 0; i < PatternEvaluator.PHASE_SIZE; i++)
+				units[phase][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE,
+						Math.round(weights[phase][i] * PatternEvaluator.UNITS_PER_DISC)));
+
+		PatternEvaluator.write(weightsFile, units);
+		System.out.printf("Weights written to %s (held-out error %.2f discs as written)%n",
+				weightsFile, writtenError(games, new PatternEvaluator(weightsFile)));
+	}
+
+
+	/**
+	 * Plays the games, using every core.
+	 *
+	 * @param numGames The number of games.
+	 * @param depth How deep the engine searches (before the endgame).
+	 * @return The games.
+	 */
+	static private List<Game> playGames(int numGames, int depth)
+	{
+		TranspositionTable table = new TranspositionTable(TABLE_MB);
+		table.setGenerationInterval(TranspositionTable.SHARED_GENERATION_INTERVAL);
+
+		ThreadLocal<SearchEngine> engines = ThreadLocal.withInitial(() -> {
+			SearchEngine engine = new SearchEngine(table, new PositionalEvaluator());
+			engine.setMaxDepth(depth);
+			return engine;
+		});
+
+		return IntStream.range(0, numGames).parallel()
+				.mapToObj(i -> playGame(engines.get(), new Random(i)))
+				.collect(Collectors.toList());
+	}
+
+
+	/**
+	 * Plays one game & labels its positions.
+	 *
+	 * @param engine The engine.
+	 * @param random Picks the opening moves.
+	 * @return The game.
+	 */
+	static private Game playGame(SearchEngine engine, Random random)
+	{
+		Game game = new Game();
+		Othello start = new Othello();
+		Color toMove = start.getCurrentPlayer();
+		long player = start.getBoard().getPieceMask(toMove);
+		long opponent = start.getBoard().getPieceMask(
+				(toMove == Color.BLACK) ? Color.WHITE : Color.BLACK);
+		long moves;
+
+		while ((moves = GameLogic.getValidMoves(player, opponent)) != 0)
+		{
+			int cell;
+
+			if (game.numPositions < RANDOM_PLIES)
+				cell = RandomMoves.pick(moves, random);
+
+			else
+				cell = engine.search(player, opponent, toMove).getBestMove();
+
+			game.players[game.numPositions] = player;
+			game.opponents[game.numPositions++] = opponent;
+
+			long flips = GameLogic.getFlips(player, opponent, cell);
+			long nextPlayer = opponent & ~flips;
+
+			opponent = player | flips | (1L << cell);
+			player = nextPlayer;
+			toMove = (toMove == Color.BLACK) ? Color.WHITE : Color.BLACK;
+		}
+
+		// The player who can't move (& so ends the game) is to move now.
+		int margin = Long.bitCount(player) - Long.bitCount(opponent);
+
+		for (int i = game.numPositions - 1; i >= 0; i--)
+		{
+			margin = -margin;
+			game.margins[i] = margin;
+		}
+
+		return game;
+	}
+
+
+	/**
+	 * Predicts a position's margin with the weights so far.
+	 *
+	 * @param phaseWeights The weights for the position's phase.
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param indexes Where to put the position's pattern indexes.
+	 * @return The predicted margin, in discs.
+	 */
+	static private double predict(float[] phaseWeights, long player, long opponent, int[] indexes)
+	{
+		PatternEvaluator.getIndexes(player, opponent, indexes);
+		double prediction = 0;
+
+		for (int index : indexes)
+			prediction += phaseWeights[index];
+
+		return prediction;
+	}
+
+
+	/**
+	 * Returns the root-mean-square error of the weights' predictions on
+	 * the held-back games (every tenth).
+	 *
+	 * @param games The games.
+	 * @param weights The weights.
+	 * @param indexes Scratch space for pattern indexes.
+	 * @return The error, in discs.
+	 */
+	static private double heldOutError(List<Game> games, float[][] weights, int[] indexes)
+	{
+		double error = 0;
+		long count = 0;
+
+		for (int game = 0; game < games.size(); game += 10)
+		{
+			Game g = games.get(game);
+
+			for (int i = 0; i < g.numPositions; i++)
+			{
+				float[] phaseWeights = weights[PatternEvaluator.getPhase(
+						Long.bitCount(g.players[i] | g.opponents[i]), weights.length)];
+				double difference = g.margins[i] - predict(phaseWeights, g.players[i],
+						g.opponents[i], indexes);
+
+				error += difference * difference;
+				count++;
+			}
+		}
+
+		return Math.sqrt(error / Math.max(count, 1));
+	}
+
+
+	/**
+	 * Returns the root-mean-square error of a written weights file's
+	 * evaluator on the held-back games (every tenth), scoring all their
+	 * positions in one batch.
+	 *
+	 * @param games The games.
+	 * @param evaluator The evaluator with the written weights.
+	 * @return The error, in discs.
+	 */
+	static private double writtenError(List<Game> games, PatternEvaluator evaluator)
+	{
+		int count = 0;
+
+		for (int game = 0; game < games.size(); game += 10)
+			count += games.get(game).numPositions;
+
+		long[] players = new long[count];
+		long[] opponents = new long[count];
+		int[] margins = new int[count];
+		int[] scores = new int[count];
+		int position = 0;
+
+		for (int game = 0; game < games.size(); game += 10)
+		{
+			Game g = games.get(game);
+
+			System.arraycopy(g.players, 0, players, position, g.numPositions);
+			System.arraycopy(g.opponents, 0, opponents, position, g.numPositions);
+			System.arraycopy(g.margins, 0, margins, position, g.numPositions);
+			position += g.numPositions;
+		}
+
+		evaluator.evaluate(players, opponents, scores, count);
+		double error = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			double difference = margins[i] - (double) scores[i] / PatternEvaluator.UNITS_PER_DISC;
+			error += difference * difference;
+		}
+
+		return Math.sqrt(error / Math.max(count, 1));
+	}
+
+
+	/**
+	 * Shuffles the array in place.
+	 *
+	 * @param array The array.
+	 * @param random The source of randomness.
+	 */
+	static private void shuffle(int[] array, Random random)
+	{
+		for (int i = array.length - 1; i > 0; i--)
+		{
+			int j = random.nextInt(i + 1);
+			int swap = array[i];
+			array[i] = array[j];
+			array[j] = swap;
+		}
+	}
+}
@@ -0,0 +1,352 @@
+package othelloTools;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+import othelloGame.ArrayBoard;
+import othelloGame.BitBoard;
+import othelloGame.Color;
+import othelloGame.GameLogic;
+import othelloGame.Othello;
+import othelloGame.Piece;
+
+
+/**
+ * Checks the move generator by counting the positions (leaf nodes)
+ * reachable in exactly N plies ("perft"), for N = 1, 2, ... up to a
+ * maximum, & reports how fast it counted them.
+ *
+ * The counts come from the mask based rules (GameLogic.getValidMoves &
+ * GameLogic.getFlips, which Othello plays moves with). From the start
+ * position they're checked against the published counts. Up to a
+ * smaller depth they're also checked against the legacy path, which
+ * finds moves one cell at a time with GameLogic.isValidSuggestionByScan
+ * & flips them by walking lines on an ArrayBoard, as the game did before
+ * it used masks; at every position the two must agree on the moves &
+ * the flips.
+ *
+ * By default a player with no moves passes (a pass counts as a ply) &
+ * the game ends when neither can move, as in the published counts.
+ * With "nopasses" the game ends as soon as the player to move can't
+ * move, as in this game (see Othello.isFinished). Either way a finished
+ * game counts as one leaf.
+ *
+ * Exits with status 1 if any check fails, so it can gate changes to the
+ * move generator.
+ *
+ * Usage: Perft maxDepth [legacyDepth] [saveFile | start] [passes | nopasses]
+ *
+ * @author ubuntu
+ *
+ */
+final public class Perft
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private Perft() {}
+
+
+	// The number of leaves at each depth from the start position with
+	// passes (REFERENCE_COUNTS[depth - 1])
+	static private final long[] REFERENCE_COUNTS = {4L, 12L, 56L, 244L, 1396L, 8200L,
+			55092L, 390216L, 3005288L, 24571284L, 212258800L};
+
+	// The default depth of the legacy check (it's hundreds of times slower)
+	static private final int DEFAULT_LEGACY_DEPTH = 6;
+
+	// The directions a line can go from a cell, as (row, col) steps
+	static private final int[][] DIRECTIONS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1},
+			{0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+	// Whether a player with no moves passes (or the game ends)
+	static private boolean passes = true;
+
+	// The first difference the legacy check found (null if none)
+	static private String legacyMismatch;
+
+
+	/**
+	 * Runs the counts & checks.
+	 *
+	 * @param args The maximum depth, then (optionally) the legacy check's
+	 * maximum depth (default 6), a save file to start from (or "start")
+	 * & "passes" or "nopasses".
+	 * @throws FileNotFoundException Thrown if the save file doesn't exist.
+	 */
+	public static void main(String[] args) throws FileNotFoundException
+	{
+		if (args.length < 1)
+		{
+			System.out.println("Usage: Perft maxDepth [legacyDepth] [saveFile | start] "
+					+ "[passes | nopasses]");
+			return;
+		}
+
+		int maxDepth = Integer.parseInt(args[0]);
+		int legacyDepth = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_LEGACY_DEPTH;
+		boolean fromStart = (args.length < 3 || args[2].equals("start"));
+		passes = (args.length < 4 || !args[3].equals("nopasses"));
+
+		Othello game = new Othello();
+
+		if (!fromStart)
+		{
+			try (Scanner in = new Scanner(new File(args[2]))) {
+				game.loadGame(in);
+			}
+		}
+
+		Color toMove = game.getCurrentPlayer();
+		long player = game.getBoard().getPieceMask(toMove);
+		long opponent = game.getBoard().getPieceMask(opposite(toMove));
+		boolean failed = false;
+
+		System.out.println("depth           nodes      time(ms)        nodes/s  reference  legacy");
+
+		for (int depth = 1; depth <= maxDepth; depth++)
+		{
+			long start = System.nanoTime();
+			long nodes = perft(player, opponent, depth, false);
+			long nanos = System.nanoTime() - start;
+
+			String reference = "-";
+
+			if (fromStart && passes && depth <= REFERENCE_COUNTS.length)
+			{
+				boolean matches = (nodes == REFERENCE_COUNTS[depth - 1]);
+				reference = matches ? "ok" : "WRONG (" + REFERENCE_COUNTS[depth - 1] + ")";
+				failed |= !matches;
+			}
+
+			String legacy = "-";
+
+			if (depth <= legacyDepth)
+			{
+				legacyMismatch = null;
+				long legacyNodes = legacyPerft(player, opponent, toMove, depth, false);
+
+				if (legacyMismatch == null && legacyNodes != nodes)
+					legacyMismatch = legacyNodes + " nodes";
+
+				legacy = (legacyMismatch == null) ? "ok" : "WRONG (" + legacyMismatch + ")";
+				failed |= (legacyMismatch != null);
+			}
+
+			System.out.printf("%5d %15d %13.1f %14d  %-9s  %s%n", depth, nodes, nanos / 1e6,
+					nodes * 1000000000L / Math.max(nanos, 1), reference, legacy);
+		}
+
+		if (failed)
+		{
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+	}
+
+
+	/**
+	 * Counts the leaves depth plies below the position, with the mask
+	 * based rules.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param depth The number of plies (at least 1).
+	 * @param passed Whether the last ply was a pass.
+	 * @return The number of leaves.
+	 */
+	static private long perft(long player, long opponent, int depth, boolean passed)
+	{
+		long moves = GameLogic.getValidMoves(player, opponent);
+
+		if (moves == 0)
+		{
+			if (!passes || passed)
+				return 1;
+
+			return (depth == 1) ? 1 : perft(opponent, player, depth - 1, true);
+		}
+
+		if (depth == 1)
+			return Long.bitCount(moves);
+
+		long nodes = 0;
+
+		while (moves != 0)
+		{
+			int cell = Long.numberOfTrailingZeros(moves);
+			moves &= moves - 1;
+
+			long flips = GameLogic.getFlips(player, opponent, cell);
+			nodes += perft(opponent ^ flips, player | flips | (1L << cell), depth - 1, false);
+		}
+
+		return nodes;
+	}
+
+
+	/**
+	 * Counts the leaves depth plies below the position, with the legacy
+	 * rules, & checks the moves & flips at every position against the
+	 * mask based rules. Records the first difference in legacyMismatch.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param toMove The color of the player to move.
+	 * @param depth The number of plies (at least 1).
+	 * @param passed Whether the last ply was a pass.
+	 * @return The number of leaves.
+	 */
+	static private long legacyPerft(long player, long opponent, Color toMove, int depth,
+			boolean passed)
+	{
+		ArrayBoard board = makeBoard(player, opponent, toMove);
+		long moves = 0;
+
+		for (int row = 0; row < BitBoard.SIZE; row++)
+			for (int col = 0; col < BitBoard.SIZE; col++)
+				if (GameLogic.isValidSuggestionByScan(board.getView(), toMove, row, col))
+					moves |= BitBoard.cellMask(row, col);
+
+		if (moves != GameLogic.getValidMoves(player, opponent) && legacyMismatch == null)
+			legacyMismatch = "moves differ at " + describe(player, opponent, toMove);
+
+		if (moves == 0)
+		{
+			if (!passes || passed)
+				return 1;
+
+			return (depth == 1) ? 1
+					: legacyPerft(opponent, player, opposite(toMove), depth - 1, true);
+		}
+
+		if (depth == 1)
+			return Long.bitCount(moves);
+
+		long nodes = 0;
+
+		for (long rest = moves; rest != 0; rest &= rest - 1)
+		{
+			int cell = Long.numberOfTrailingZeros(rest);
+			ArrayBoard after = makeBoard(player, opponent, toMove);
+
+			legacyMove(after, toMove, cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+
+			long newPlayer = after.getPieceMask(toMove);
+			long flips = newPlayer & ~player & ~(1L << cell);
+
+			if (flips != GameLogic.getFlips(player, opponent, cell) && legacyMismatch == null)
+				legacyMismatch = "flips differ for " + describeCell(cell) + " at "
+						+ describe(player, opponent, toMove);
+
+			nodes += legacyPerft(after.getPieceMask(opposite(toMove)), newPlayer,
+					opposite(toMove), depth - 1, false);
+		}
+
+		return nodes;
+	}
+
+
+	/**
+	 * Makes an array board holding the position.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The board.
+	 */
+	static private ArrayBoard makeBoard(long player, long opponent, Color toMove)
+	{
+		ArrayBoard board = new ArrayBoard();
+		board.clearAll();
+
+		for (int cell = 0; cell < BitBoard.SIZE * BitBoard.SIZE; cell++)
+		{
+			if ((player & (1L << cell)) != 0)
+				board.setPiece(cell / BitBoard.SIZE, cell % BitBoard.SIZE,
+						Piece.valueOf(toMove, true));
+
+			else if ((opponent & (1L << cell)) != 0)
+				board.setPiece(cell / BitBoard.SIZE, cell % BitBoard.SIZE,
+						Piece.valueOf(opposite(toMove), true));
+		}
+
+		return board;
+	}
+
+
+	/**
+	 * Plays a move the way the game did before it used masks: finds
+	 * the lines that flip with GameLogic.getNextTo &
+	 * GameLogic.getNextToValidLines, then walks each one, flipping
+	 * pieces until it reaches one of the player's.
+	 *
+	 * @param board The board.
+	 * @param toMove The color of the player to move.
+	 * @param row The move's row.
+	 * @param col The move's column.
+	 */
+	static private void legacyMove(ArrayBoard board, Color toMove, int row, int col)
+	{
+		boolean[][] nextTo = GameLogic.getNextTo(board.getView(), opposite(toMove), row, col);
+		boolean[][] validLines = GameLogic.getNextToValidLines(board.getView(), nextTo, toMove,
+				row, col);
+
+		for (int[] direction : DIRECTIONS)
+		{
+			if (!validLines[direction[0] + 1][direction[1] + 1])
+				continue;
+
+			int r = row + direction[0], c = col + direction[1];
+
+			while (board.getPiece(r, c).getColor() != toMove)
+			{
+				board.flipPiece(r, c);
+				r += direction[0];
+				c += direction[1];
+			}
+		}
+
+		board.setPiece(row, col, Piece.valueOf(toMove, true));
+	}
+
+
+	/**
+	 * Describes a position for a failure report.
+	 *
+	 * @param player Mask of the pieces of the player to move.
+	 * @param opponent Mask of the opponent's pieces.
+	 * @param toMove The color of the player to move.
+	 * @return The description.
+	 */
+	static private String describe(long player, long opponent, Color toMove)
+	{
+		return String.format("%s to move, %s 0x%016X, other 0x%016X", toMove, toMove,
+				player, opponent);
+	}
+
+
+	/**
+	 * Names a cell in the usual notation (column letter, row number).
+	 *
+	 * @param cell The cell (row * 8 + col).
+	 * @return The cell's name, like "f5".
+	 */
+	static private String describeCell(int cell)
+	{
+		return "" + (char) ('a' + cell % BitBoard.SIZE) + (cell / BitBoard.SIZE + 1);
+	}
+
+
+	/**
+	 * Returns the other color.
+	 * @param color A color.
+	 * @return The other color.
+	 */
+	static private Color opposite(Color color)
+	{
+		return (color == Color.BLACK) ? Color.WHITE : Color.BLACK;
+	}
+}
@@ -0,0 +1,53 @@
+package othelloTools;
+
+import java.util.Random;
+
+import othelloGame.BitBoard;
+import othelloGame.Othello;
+
+
+/**
+ * Plays random legal moves, for making test positions & randomized
+ * openings.
+ *
+ * @author ubuntu
+ *
+ */
+final public class RandomMoves
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private RandomMoves() {}
+
+
+	/**
+	 * Returns a random cell from the mask.
+	 *
+	 * @param moves A mask with at least one cell.
+	 * @param random The source of randomness.
+	 * @return A random cell (row * 8 + col) from the mask.
+	 */
+	static public int pick(long moves, Random random)
+	{
+		for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--)
+			moves &= moves - 1;
+
+		return Long.numberOfTrailingZeros(moves);
+	}
+
+
+	/**
+	 * Plays a random legal move in the game. The game must not be
+	 * finished.
+	 *
+	 * @param game The game.
+	 * @param random The source of randomness.
+	 */
+	static public void play(Othello game, Random random)
+	{
+		int cell = pick(game.getSuggestions(), random);
+		game.makeMove(cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+	}
+}
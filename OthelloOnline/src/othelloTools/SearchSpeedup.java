@@ -0,0 +1,114 @@
+package othelloTools;
+
+import java.util.Random;
+
+import othelloGame.Othello;
+import othelloSearch.ParallelSearch;
+import othelloSearch.PositionalEvaluator;
+import othelloSearch.SearchResult;
+import othelloSearch.TranspositionTable;
+
+
+/**
+ * Measures how parallel search scales. Searches the same positions to
+ * a fixed depth with 1, 2, 4, ... threads & prints each thread count's
+ * nodes per second & speedup (time to depth with one thread divided by
+ * time to depth with that many threads).
+ *
+ * Usage: SearchSpeedup [maxThreads] [depth] [numPositions]
+ *
+ * @author ubuntu
+ *
+ */
+final public class SearchSpeedup
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private SearchSpeedup() {}
+
+
+	// Size of the transposition table each run uses
+	static private final int TABLE_MB = 64;
+
+
+	/**
+	 * Runs the measurement.
+	 *
+	 * @param args maxThreads (default: all cores), depth (default 10)
+	 * & numPositions (default 8).
+	 */
+	public static void main(String[] args)
+	{
+		int maxThreads = (args.length > 0) ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors();
+		int depth = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		int numPositions = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+
+		Othello[] positions = makePositions(numPositions);
+
+		System.out.println("threads      time(ms)         nodes      nodes/s   speedup");
+
+		double oneThreadTime = 0;
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2)
+		{
+			long nodes = 0;
+			long nanos = 0;
+
+			TranspositionTable table = new TranspositionTable(TABLE_MB);
+
+			try (ParallelSearch search = new ParallelSearch(table,
+					new PositionalEvaluator(), threads)) {
+				search.setMaxDepth(depth);
+
+				for (Othello position : positions)
+				{
+					table.clear();
+
+					SearchResult result = search.search(position);
+					nodes += result.getNodes();
+					nanos += result.getNanos();
+				}
+			}
+
+			if (threads == 1)
+				oneThreadTime = nanos;
+
+			System.out.printf("%7d %13.1f %13d %12d %9.2f%n", threads, nanos / 1e6, nodes,
+					nodes * 1000000000L / Math.max(nanos, 1), oneThreadTime / nanos);
+		}
+	}
+
+
+	/**
+	 * Makes midgame test positions by playing random moves from the
+	 * start (with a fixed seed, so every run uses the same ones).
+	 *
+	 * @param numPositions The number of positions.
+	 * @return The positions.
+	 */
+	static private Othello[] makePositions(int numPositions)
+	{
+		Random random = new Random(20);
+		Othello[] positions = new Othello[numPositions];
+
+		for (int i = 0; i < numPositions; i++)
+		{
+			Othello game;
+
+			do {
+				game = new Othello();
+
+				for (int move = 0; move < 20 && !game.isFinished(); move++)
+					RandomMoves.play(game, random);
+			}
+			while (game.isFinished());
+
+			positions[i] = game;
+		}
+
+		return positions;
+	}
+}
@@ -0,0 +1,422 @@
+package othelloTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import othelloGame.BitBoard;
+import othelloGame.Color;
+import othelloGame.Othello;
+import othelloSearch.Evaluator;
+import othelloSearch.MctsEngine;
+import othelloSearch.PatternEvaluator;
+import othelloSearch.PositionalEvaluator;
+import othelloSearch.SearchEngine;
+import othelloSearch.TranspositionTable;
+
+
+/**
+ * Plays two engines against each other over many games on every core,
+ * to tell whether a change made the engine stronger.
+ *
+ * Games are played in pairs: each pair starts with the same random
+ * opening moves, & the engines swap colors for the second game, so the
+ * opening's luck cancels out. Each pair's result is written to the
+ * results file as soon as it finishes (one line: the pair's number &
+ * engine A's final disc margin as black & as white), & a summary is
+ * printed every so often: games per hour, A's wins, draws & losses, its
+ * average margin & the Elo difference between the engines with a 95%
+ * confidence interval (from the spread of the pairs' scores).
+ *
+ * An engine is given as its evaluator ("positional", or a pattern
+ * weights file) followed by comma-separated limits: dN searches N
+ * plies deep, nN searches N positions, tN thinks for N milliseconds &
+ * eN solves endgames from N empty cells (e0 never). With no limits it
+ * searches 4 plies. For example: "positional,d6" or "my.weights,n20000,e12".
+ * An engine can also be "mcts" (Monte Carlo tree search, see
+ * othelloSearch.MctsEngine) or "mcts+rave", whose only limit is nN
+ * playouts per move (default 5000), like "mcts+rave,n20000".
+ *
+ * Usage: Tournament resultsFile numGames engineA engineB [randomPlies] [threads]
+ *
+ * @author ubuntu
+ *
+ */
+final public class Tournament
+{
+	/**
+	 * So no one foolishly tries to create an
+	 * object of this class.
+	 */
+	private Tournament() {}
+
+
+	// Default number of random moves that open each pair of games
+	static private final int DEFAULT_RANDOM_PLIES = 8;
+
+	// Default search depth of an engine with no limits
+	static private final int DEFAULT_DEPTH = 4;
+
+	// Size of each engine's transposition table (every engine has its
+	// own, so neither engine benefits from the other's searches)
+	static private final int TABLE_MB = 4;
+
+	// Size of each Monte Carlo engine's tree
+	static private final int TREE_MB = 32;
+
+	// How often to print the summary
+	static private final long REPORT_NANOS = 10000000000L;
+
+	// 97.5th percentile of the normal distribution (for the 95% interval)
+	static private final double Z_95 = 1.959964;
+
+
+	/**
+	 * An engine, whatever kind it is.
+	 */
+	static private interface Player
+	{
+		/**
+		 * Picks the move to play.
+		 *
+		 * @param game The game (not finished). Must not be changed.
+		 * @return The move's cell (row * 8 + col).
+		 */
+		int pickMove(Othello game);
+	}
+
+
+	/**
+	 * A summary of the results so far, from engine A's side.
+	 */
+	static private class Summary
+	{
+		int wins, draws, losses;
+		long totalMargin;
+
+		// Sums of the pairs' scores (0 - 1 each, a win worth 1) & of
+		// their squares
+		double pairScores, pairScoreSquares;
+		int numPairs;
+
+		/**
+		 * Adds a pair's result.
+		 *
+		 * @param result A's final margin as black & as white (& the
+		 * pair's number).
+		 */
+		void add(int[] result)
+		{
+			double pairScore = 0;
+
+			for (int game = 0; game < 2; game++)
+			{
+				int margin = result[game];
+
+				wins += (margin > 0) ? 1 : 0;
+				draws += (margin == 0) ? 1 : 0;
+				losses += (margin < 0) ? 1 : 0;
+				totalMargin += margin;
+				pairScore += (margin > 0) ? 0.5 : (margin == 0) ? 0.25 : 0;
+			}
+
+			pairScores += pairScore;
+			pairScoreSquares += pairScore * pairScore;
+			numPairs++;
+		}
+
+		/**
+		 * Describes the results.
+		 *
+		 * @param nanos The time taken so far.
+		 * @return The description.
+		 */
+		String describe(long nanos)
+		{
+			int games = wins + draws + losses;
+			double score = pairScores / Math.max(numPairs, 1);
+			double variance = pairScoreSquares / Math.max(numPairs, 1) - score * score;
+			double error = Z_95 * Math.sqrt(Math.max(variance, 0) / Math.max(numPairs - 1, 1));
+
+			return String.format("%.0f games/hour | %d games: A %d-%d-%d (W-D-L), "
+					+ "margin %+.2f | Elo %s (95%% CI %s to %s)",
+					games * 3.6e12 / Math.max(nanos, 1), games, wins, draws, losses,
+					(double) totalMargin / Math.max(games, 1), describeElo(score),
+					describeElo(score - error), describeElo(score + error));
+		}
+	}
+
+
+	/**
+	 * Runs the tournament.
+	 *
+	 * @param args The results file, the number of games (rounded up to
+	 * an even number), the two engines, then (optionally) the number of
+	 * random opening moves (default 8) & of threads (default: all cores).
+	 * @throws IOException Thrown if the results file or a weights file
+	 * can't be used.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 4)
+		{
+			System.out.println("Usage: Tournament resultsFile numGames engineA engineB "
+					+ "[randomPlies] [threads]");
+			System.out.println("  engine: positional|weightsFile[,dDepth][,nNodes][,tMillis]"
+					+ "[,eEmpties]");
+			System.out.println("      or: mcts|mcts+rave[,nPlayouts]");
+			return;
+		}
+
+		File resultsFile = new File(args[0]);
+		int numPairs = (Integer.parseInt(args[1]) + 1) / 2;
+		Supplier<Player> engineA = parseEngine(args[2]);
+		Supplier<Player> engineB = parseEngine(args[3]);
+		int randomPlies = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_RANDOM_PLIES;
+		int numThreads = (args.length > 5) ? Integer.parseInt(args[5])
+				: Runtime.getRuntime().availableProcessors();
+
+		// Each thread keeps its own pair of engines.
+		ThreadLocal<Player[]> engines = ThreadLocal.withInitial(
+				() -> new Player[] {engineA.get(), engineB.get()});
+
+		ExecutorService threads = Executors.newFixedThreadPool(numThreads);
+		CompletionService<int[]> pairs = new ExecutorCompletionService<>(threads);
+
+		for (int pair = 0; pair < numPairs; pair++)
+		{
+			long seed = pair;
+			pairs.submit(() -> playPair(engines.get(), seed, randomPlies));
+		}
+
+		Summary summary = new Summary();
+		long start = System.nanoTime();
+		long lastReport = start;
+
+		try (PrintWriter out = new PrintWriter(resultsFile)) {
+			out.printf("# A: %s  B: %s  random plies: %d%n", args[2], args[3], randomPlies);
+			out.println("# pair marginAsBlack marginAsWhite");
+
+			for (int done = 0; done < numPairs; done++)
+			{
+				int[] result = waitFor(pairs);
+				summary.add(result);
+				out.printf("%d %d %d%n", result[2], result[0], result[1]);
+
+				if (System.nanoTime() - lastReport > REPORT_NANOS)
+				{
+					out.flush();
+					lastReport = System.nanoTime();
+					System.out.println(summary.describe(lastReport - start));
+				}
+			}
+		}
+
+		finally {
+			threads.shutdownNow();
+		}
+
+		System.out.println(summary.describe(System.nanoTime() - start));
+	}
+
+
+	/**
+	 * Plays a pair of games from the same random opening, with engine A
+	 * black in the first & white in the second.
+	 *
+	 * @param engines Engine A & engine B.
+	 * @param seed Picks the opening.
+	 * @param randomPlies The number of random opening moves.
+	 * @return A's final margin as black, as white, & the pair's number
+	 * (the seed).
+	 */
+	static private int[] playPair(Player[] engines, long seed, int randomPlies)
+	{
+		int[] result = new int[3];
+
+		for (int game = 0; game < 2; game++)
+		{
+			Random random = new Random(seed);
+			Othello othello = new Othello();
+			Color colorA = (game == 0) ? Color.BLACK : Color.WHITE;
+
+			for (int ply = 0; ply < randomPlies && !othello.isFinished(); ply++)
+				RandomMoves.play(othello, random);
+
+			while (!othello.isFinished())
+			{
+				Player engine = engines[(othello.getCurrentPlayer() == colorA) ? 0 : 1];
+				int cell = engine.pickMove(othello);
+
+				othello.makeMove(cell / BitBoard.SIZE, cell % BitBoard.SIZE);
+			}
+
+			long black = othello.getBoard().getPieceMask(Color.BLACK);
+			long white = othello.getBoard().getPieceMask(Color.WHITE);
+			int margin = Long.bitCount(black) - Long.bitCount(white);
+
+			result[game] = (colorA == Color.BLACK) ? margin : -margin;
+		}
+
+		result[2] = (int) seed;
+		return result;
+	}
+
+
+	/**
+	 * Waits for the next pair to finish.
+	 *
+	 * @param pairs The pairs being played.
+	 * @return The pair's result.
+	 * @throws IllegalStateException Thrown if a game failed or the wait
+	 * was interrupted.
+	 */
+	static private int[] waitFor(CompletionService<int[]> pairs) throws IllegalStateException
+	{
+		try {
+			return pairs.take().get();
+		}
+
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a game.", e);
+		}
+
+		catch (ExecutionException e) {
+			throw new IllegalStateException("A game failed.", e.getCause());
+		}
+	}
+
+
+	/**
+	 * Turns an engine description into a way to make such engines.
+	 *
+	 * @param spec The description (see the class comment).
+	 * @return Makes a new engine each time it's called.
+	 * @throws IOException Thrown if a weights file can't be read.
+	 * @throws IllegalArgumentException Thrown if the description is bad.
+	 */
+	static private Supplier<Player> parseEngine(String spec)
+			throws IOException, IllegalArgumentException
+	{
+		String[] parts = spec.split(",");
+
+		if (parts[0].equals("mcts") || parts[0].equals("mcts+rave"))
+			return parseMcts(parts);
+
+		// Evaluators never change once made, so every engine can share one.
+		Evaluator evaluator = parts[0].equals("positional") ? new PositionalEvaluator()
+				: new PatternEvaluator(new File(parts[0]));
+
+		int depth = 0, endgameEmpties = SearchEngine.DEFAULT_ENDGAME_EMPTIES;
+		long nodes = 0, millis = 0;
+
+		for (int i = 1; i < parts.length; i++)
+		{
+			if (parts[i].length() < 2)
+				throw new IllegalArgumentException("Bad engine limit: " + parts[i]);
+
+			long value = Long.parseLong(parts[i].substring(1));
+
+			switch (parts[i].charAt(0)) {
+				case 'd':
+					depth = (int) value;
+					break;
+
+				case 'n':
+					nodes = value;
+					break;
+
+				case 't':
+					millis = value;
+					break;
+
+				case 'e':
+					endgameEmpties = (int) value;
+					break;
+
+				default:
+					throw new IllegalArgumentException("Bad engine limit: " + parts[i]);
+			}
+		}
+
+		if (depth == 0 && nodes == 0 && millis == 0)
+			depth = DEFAULT_DEPTH;
+
+		int maxDepth = depth, solveEmpties = endgameEmpties;
+		long nodeLimit = nodes, timeLimit = millis;
+
+		return () -> {
+			SearchEngine engine = new SearchEngine(new TranspositionTable(TABLE_MB), evaluator);
+
+			if (maxDepth > 0)
+				engine.setMaxDepth(maxDepth);
+
+			engine.setNodeLimit(nodeLimit);
+			engine.setTimeLimit(timeLimit);
+			engine.setEndgameEmpties(solveEmpties);
+			return game -> engine.search(game).getBestMove();
+		};
+	}
+
+
+	/**
+	 * Turns a Monte Carlo engine's description into a way to make such
+	 * engines.
+	 *
+	 * @param parts The description's comma-separated parts.
+	 * @return Makes a new engine each time it's called.
+	 * @throws IllegalArgumentException Thrown if the description is bad.
+	 */
+	static private Supplier<Player> parseMcts(String[] parts) throws IllegalArgumentException
+	{
+		boolean rave = parts[0].equals("mcts+rave");
+		int playouts = MctsEngine.DEFAULT_PLAYOUTS;
+
+		for (int i = 1; i < parts.length; i++)
+		{
+			if (parts[i].length() < 2 || parts[i].charAt(0) != 'n')
+				throw new IllegalArgumentException("Bad Monte Carlo engine limit: " + parts[i]);
+
+			playouts = Integer.parseInt(parts[i].substring(1));
+		}
+
+		int budget = playouts;
+
+		return () -> {
+			// One thread each: the tournament already keeps every core busy.
+			MctsEngine engine = new MctsEngine(TREE_MB, 1);
+			engine.setPlayouts(budget);
+			engine.setRave(rave);
+			return game -> engine.search(game).getBestMove();
+		};
+	}
+
+
+	/**
+	 * Describes the Elo difference that predicts a score (the fraction
+	 * of the points won). A score of 0 or 1 (or past it, as an interval's
+	 * bound near a sweep can be) predicts no finite difference, so it's
+	 * described as unbounded.
+	 *
+	 * @param score The score.
+	 * @return The Elo difference, like "+35.2", or "-inf" or "+inf".
+	 */
+	static private String describeElo(double score)
+	{
+		if (!(score > 0))
+			return "-inf";
+
+		if (score >= 1)
+			return "+inf";
+
+		return String.format("%+.1f", 400 * Math.log10(score / (1 - score)));
+	}
+}
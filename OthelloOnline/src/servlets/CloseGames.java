@@ -0,0 +1,43 @@
+package servlets;
+
+import java.io.IOException;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Opens the games when the webapp starts & closes them when it
+ * stops (see Util.close), so a redeployed webapp's games are
+ * written & let go of before the new one opens them.
+ * @author ubuntu
+ *
+ */
+@WebListener
+public class CloseGames implements ServletContextListener {
+
+
+	/**
+	 * Opens the games now rather than on the first request, so a
+	 * bad setting stops the webapp from starting.
+	 */
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+		event.getServletContext().log("Games are kept in " + Util.PERSISTENCE + " mode.");
+	}
+
+
+	/**
+	 * Closes the games.
+	 */
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		try {
+			Util.close();
+		}
+		
+		// Nothing more can be done; the rest of the moves are lost.
+		catch (IOException e) {
+			event.getServletContext().log("Can't write the games.", e);
+		}
+	}
+}
@@ -1,9 +1,7 @@
 package servlets;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Scanner;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -11,6 +9,9 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import othelloGame.Color;
+import othelloGame.Othello;
+
 /**
  * A servlet that creates the "game over" screen.
  * @author ubuntu
@@ -27,6 +28,17 @@ public class GameOver extends HttpServlet {
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) 
 			throws ServletException, IOException {
 		
+		// Load the game (if there's no such game, start one)
+		int id = Util.getGameId(request);
+		Othello game = Util.loadGame(id);
+		
+		if (game == null)
+		{
+			response.sendRedirect("NewGame");
+			return;
+		}
+		
+		
 		response.setContentType("text/html");
 		
 		PrintWriter out = response.getWriter();
@@ -41,95 +53,55 @@ public class GameOver extends HttpServlet {
 		out.println("</head>");
 		
 		
-		// Read the save file
-		File saveFile = new File(Util.SAVE_LOC);
-		
-		
-		// To read the save file
-		Scanner infile = new Scanner(saveFile);
-		
 		// Output the html response
 		out.println("<body>");
-		out.println(makeHtmlPage(infile));
+		out.println(makeHtmlPage(game, id));
 		out.println("<script src=\"js/reload.js\"></script>");
 		out.println("</body>");
 		out.println("</html>");
 				
 		// Close resources
-		infile.close();
 		out.close();
 	}
 	
 	
 	/**
-	 * Takes a Scanner object pointing to the save file;
-	 * returns a string containing the HTML page.
+	 * Takes a game & returns a string containing the HTML page.
 	 * 
-	 * @param infile Points to the save file.
+	 * @param game The game.
+	 * @param id The game's ID.
 	 * @return The HTML page.
 	 */
-	private String makeHtmlPage(Scanner infile)
+	private String makeHtmlPage(Othello game, int id)
 	{
-		// The final page
-		String htmlPage = "";
-		
-		// Important page components
-		String player1Score = "";
-		String player2Score = ""; 
-		String board = "";
-		String turnNumber = "";
+		String player1Score = Integer.toString(game.getScore(Color.BLACK));
+		String player2Score = Integer.toString(game.getScore(Color.WHITE));
+		String turnNumber = Integer.toString(game.getTurnNumber());
 		
-		String[] nextLine;
-		while (infile.hasNext())
-		{
-			nextLine = infile.next().split(":");
-			
-			switch (nextLine[0]) {
-				
-			case "turnNumber":
-				turnNumber = nextLine[1];
-				break;
-			
-			case "player1Score":
-				player1Score = nextLine[1];
-				break;
-				
-			case "player2Score":
-				player2Score = nextLine[1];
-				break;
-				
-			case "board":
-				board = Util.makeHtmlBoard(infile, "", turnNumber);  // Should change so it's not dependent on turnNumber being already defined.
-				break;
-				
-			default:
-				break;			
-			}
-		}
-		
-
 		// Compile the parts for the HTML page
-		htmlPage = board + "<div class=\"Box Information\">" + 
+		return Util.makeHtmlBoard(game, id, "", null) + "<div class=\"Box Information\">" + 
 			Util.makeTurnNumber(turnNumber) +
 			makeHtmlWinner(player1Score, player2Score) +
 			Util.makeHtmlScores(player1Score, player2Score) + 
-			makeNewGameButton() +
+			makeNewGameButton(id) +
 			Util.makeHiddenTurnNumber(turnNumber) +
+			Util.makeHiddenGameId(id) +
 			"</div>";
-		
-		return htmlPage;
 	}
 	
 	
 	/**
 	 * Makes the game over screen's new game button, which 
-	 * creates a new game.
+	 * creates a new game (& frees the finished one's place in
+	 * the game store).
 	 * 
+	 * @param id The finished game's ID.
 	 * @return An HTML string for a new game button.
 	 */
-	private String makeNewGameButton()
+	private String makeNewGameButton(int id)
 	{
-		return "<div><a href=\"NewGame\" class=\"NewGame\">New Game</a></div>";
+		return "<div><a href=\"NewGame?" + Util.GAME_PARAMETER + "=" + id + 
+				"\" class=\"NewGame\">New Game</a></div>";
 	}
 	
 	
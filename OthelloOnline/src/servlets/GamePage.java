@@ -1,40 +1,73 @@
 package servlets;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Scanner;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
 import othelloGame.Color;
 import othelloGame.Othello;
 import othelloGame.Piece;
+import othelloSearch.MoveScore;
 
 /**
  * Creates the HTML page for the main game screen.
+ * 
+ * The game shown is the one whose ID is in the "game" URL
+ * parameter (GamePage?game=12), or the session's last game if
+ * there's no ID. If there's no such game, a new one is started.
+ * 
+ * With hints on (GamePage?hints=on, remembered for the rest of
+ * the session; hints=off turns them off), every suggestion
+ * piece's cell is colored by how good its move is & labelled
+ * with its score. Hints are worked out in the background, so
+ * until they're ready the page says so & reloads itself.
  * @author ubuntu
  *
  */
 @WebServlet("/GamePage")
 public class GamePage extends HttpServlet {
 	private static final long serialVersionUID = 1L;
+	
+	// The session attribute that says whether hints are on
+	static private final String HINTS_ATTRIBUTE = "hints";
 
 
 	/**
-	 * Generates (by reading the game save file) & sends the main game 
-	 * screen to the client.
+	 * Generates (by loading the game from the game store) & sends the 
+	 * main game screen to the client.
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) 
 			throws ServletException, IOException, FileNotFoundException 
 	{	
+		// Load the game (if there's no such game, start one)
+		int id = Util.getGameId(request);
+		Othello game = Util.loadGame(id);
+		
+		if (game == null)
+		{
+			response.sendRedirect("NewGame");
+			return;
+		}
+		
+		// The game is finished.
+		else if (game.isFinished())
+		{
+			request.getRequestDispatcher("GameOver").forward(request, response);
+			return;
+		}
+		
+		Util.rememberGameId(request, id);
+		
+		
 		response.setContentType("text/html");
 		
 		PrintWriter out = response.getWriter();
@@ -46,147 +79,76 @@ public class GamePage extends HttpServlet {
 		out.println("<link rel=\"stylesheet\" href=\"css/gamePage.css\">");
 		out.println("</head>");
 		
-		// Read the save file
-		File saveFile = new File(Util.SAVE_LOC);
-		
-		// If the save file doesn't exist, create it.
-		if (!saveFile.exists())
-			Util.createNewSaveFile(saveFile);
+		// Turn hints on or off if asked to
+		HttpSession session = request.getSession();
+		String hintsParameter = request.getParameter("hints");
 		
-		// The game is finished.
-		else if (isFinished(saveFile))
-		{
-			request.getRequestDispatcher("GameOver").forward(request, response);
-			return;
-		}
+		if (hintsParameter != null)
+			session.setAttribute(HINTS_ATTRIBUTE, hintsParameter.equals("on"));
 		
+		boolean hintsOn = Boolean.TRUE.equals(session.getAttribute(HINTS_ATTRIBUTE));
+		MoveScore[] hints = hintsOn ? Util.getHints(game) : null;
 		
-		// To read the save file
-		Scanner infile = new Scanner(saveFile);
 		
 		// Output the html response
 		out.println("<body>");
-		out.println(makeHtmlPage(infile));
+		out.println(makeHtmlPage(game, id, hintsOn, hints));
 		out.println("<script src=\"js/reload.js\"></script>");
 		out.println("</body>");
 		out.println("</html>");
 		
 		// Close resources
-		infile.close();
 		out.close();
 	}
 	
 	
 	/**
-	 * Takes the save file & returns true if it reads that
-	 * the game is finished, false if otherwise.
+	 * Takes a game & returns a string containing the HTML page.
 	 * 
-	 * @param saveFile The save file.
-	 * @return True if the game is finishe, false if not.
-	 * @throws IllegalArgumentException Thrown if saveFile isn't the
-	 * save file.
-	 * @throws FileNotFoundException Throw if the save file can't be
-	 * accessed.
-	 */
-	private boolean isFinished(File saveFile) 
-			throws IllegalArgumentException, FileNotFoundException
-	{
-		Scanner infile = new Scanner(saveFile);
-		String line[] = infile.next().split(":");
-		
-		if (line[0].compareTo("finished") != 0)
-		{
-			infile.close();
-			throw new IllegalArgumentException("File object should point to "
-					+ "the first line in the save file.");
-		}
-			
-		infile.close();
-		return (line[1].compareTo("true") == 0);
-	}
-	
-	
-	
-	/**
-	 * Creates a new save file or overwrites
-	 * the old save file if there is one.
-	 * 
-	 * @param saveLoc The path to the save file.
-	 * @throws FileNotFoundException Thrown if the file
-	 * cannot be created.
+	 * @param game The game.
+	 * @param id The game's ID.
+	 * @param hintsOn Whether the player wants hints.
+	 * @param hints The current player's moves' scores, or
+	 * null if they aren't ready (or hints are off).
+	 * @return The HTML page.
 	 */
-	private void createNewSaveFile(File saveFile) 
-			throws FileNotFoundException
+	private String makeHtmlPage(Othello game, int id, boolean hintsOn, MoveScore[] hints)
 	{
-		Othello game = new Othello();
-		game.createNewGame();
+		String turnNumber = Integer.toString(game.getTurnNumber());
 		
-		PrintWriter outfile = new PrintWriter(saveFile);
-		game.saveGame(outfile);			
-		outfile.close();
+		return Util.makeHtmlBoard(game, id, "MakeMove", hints) + 
+				"<div class=\"Box Information\">" + 
+				makeHtmlCurrentPlayer(game.getCurrentPlayer().toString()) +
+				Util.makeTurnNumber(turnNumber) +
+				Util.makeHtmlScores(Integer.toString(game.getScore(Color.BLACK)), 
+						Integer.toString(game.getScore(Color.WHITE))) + 
+				Util.makeHiddenTurnNumber(turnNumber) +
+				Util.makeHiddenGameId(id) +
+				makeHintsSwitch(id, hintsOn, hints) +
+				"</div>";
 	}
 	
 	
 	/**
-	 * Takes a Scanner object pointing to the save file;
-	 * returns a string containing the HTML page.
+	 * Creates the HTML div element with the link that turns
+	 * hints on or off, & a note if they're on but not ready
+	 * yet (which reload.js looks for to reload the page).
 	 * 
-	 * @param infile Points to the save file.
-	 * @return The HTML page.
+	 * @param id The game's ID.
+	 * @param hintsOn Whether hints are on.
+	 * @param hints The hints, or null if they aren't ready.
+	 * @return An HTML div element with the hints switch.
 	 */
-	private String makeHtmlPage(Scanner infile)
+	private String makeHintsSwitch(int id, boolean hintsOn, MoveScore[] hints)
 	{
-		// The final page
-		String htmlPage = "";
+		String hintsSwitch = "<div> <p><a href=\"GamePage?" + Util.GAME_PARAMETER + "=" + 
+				id + "&hints=" + 
+				(hintsOn ? "off\">Hide hints" : "on\">Show hints") + "</a></p>";
 		
-		// Important page components
-		String player1Score = "";
-		String player2Score = ""; 
-		String currentPlayer = "";
-		String board = "";
-		String turnNumber = "";
+		if (hintsOn && hints == null)
+			hintsSwitch += "<p id=\"hintsPending\">Working out hints...</p>";
 		
-		String[] nextLine;
-		while (infile.hasNext())
-		{
-			nextLine = infile.next().split(":");
-			
-			switch (nextLine[0]) {
-				
-			case "turnNumber":
-				turnNumber = nextLine[1];
-				break;
-			
-			case "player1Score":
-				player1Score = nextLine[1];
-				break;
-				
-			case "player2Score":
-				player2Score = nextLine[1];
-				break;
-				
-			case "currentPlayer":
-				currentPlayer = nextLine[1];
-				break;
-				
-			case "board":
-				board = Util.makeHtmlBoard(infile, "MakeMove", turnNumber);  // Should change so it's not dependent on turnNumber being already defined.
-				break;
-				
-			default:
-				break;			
-			}
-		}
-		
-
-		htmlPage = board + "<div class=\"Box Information\">" + 
-				makeHtmlCurrentPlayer(currentPlayer) +
-				Util.makeTurnNumber(turnNumber) +
-				Util.makeHtmlScores(player1Score, player2Score) + 
-				Util.makeHiddenTurnNumber(turnNumber) +
-				"</div>";
-		
-		return htmlPage;
+		return hintsSwitch + "</div>";
 	}
 	
 	
@@ -233,95 +195,4 @@ public class GamePage extends HttpServlet {
 		return "<div><h1>Current Color: " +
 				currentPlayer + "</div>";
 	}
-	
-	
-	
-	/**
-	 * Takes a Scanner object pointing to the first row of
-	 * the game board in the save file; returns a string
-	 * containing the HTML representation of that board.
-	 * 
-	 * @param infile Points to the first row of the game
-	 * board in the save file.
-	 * 
-	 * @return An HTML representation of the board.
-	 */
-	private String makeHtmlBoard(Scanner infile, String turnNumber)
-	{		
-		String htmlBoard = "<div class=\"Box Board\"> <table>";
-		
-		htmlBoard += "<tr> <th> </th> <th>0</th> <th>1</th>"
-				+ "<th>2</th> <th>3</th> <th>4</th>"
-				+ "<th>5</th> <th>6</th> <th>7</th> </tr>";
-		
-		
-		String nextRow[];
-		int row = 0;
-		
-		while (infile.hasNext() && row < 8)
-		{		
-			nextRow = infile.next().split(";");
-			
-			htmlBoard += "<tr> <th>" + Integer.toString(row) 
-				+ "</th>";
-			
-			for (int col = 0; col < nextRow.length; col++)
-			{
-				switch(nextRow[col]) {
-				
-				case "B":
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-					"<img src=\"images/blackSolidPiece.png\" "
-					+ "alt=\"Black Solid Piece\">"
-						+ "</div>" + "</td>";
-					break;
-					
-				case "b":
-					
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-					"<a href=\"MakeMove?row=" + Integer.toString(row) + 
-					"&column=" + Integer.toString(col) +
-					"&turnNumber=" + turnNumber + "\">" +
-					"<img src=\"images/blackOutlinePiece.png\" "
-					+ "alt=\"Black Outline Piece\">" +
-						"</a>" + "</div>" + "</td>";
-					break;
-					
-				case "W":
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-					"<img src=\"images/whiteSolidPiece.png\" "
-					+ "alt=\"White Solid Piece\">"
-						+ "</div>" + "</td>";
-					break;
-					
-				case "w":
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-					"<a href=\"MakeMove?row=" + Integer.toString(row) + 
-					"&column=" + Integer.toString(col) + 
-					"&turnNumber=" + turnNumber + "\">" +
-					"<img src=\"images/whiteOutlinePiece.png\" "
-					+ "alt=\"White Outline Piece\">" +
-						"</a>" + "</div>" + "</td>";
-					break;
-					
-				case "null":
-					htmlBoard += "<td>"
-						+ "<div class=\"Piece\"></div>"
-						+ "</td>";
-					break;
-					
-				default:
-					break;
-				}
-			}
-			
-			htmlBoard += "</tr>";
-			
-			row++;
-		}
-		
-		htmlBoard += "</table> </div>";
-		
-		return htmlBoard;
-	}
 }
@@ -2,11 +2,7 @@ package servlets;
 
 import servlets.Util;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Scanner;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -16,7 +12,7 @@ import javax.servlet.http.HttpServletResponse;
 import othelloGame.Othello;
 
 /**
- * Alters the game save file to reflect a move by the player.
+ * Alters the game in the game store to reflect a move by the player.
  * @author ubuntu
  *
  */
@@ -26,7 +22,7 @@ public class MakeMove extends HttpServlet {
 
 	/**
 	 * Receives a VALID row and column of the cell the current player wishes to 
-	 * place their piece, then alters the game save file to reflect that move.
+	 * place their piece, then alters the stored game to reflect that move.
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) 
 			throws ServletException, IOException {
@@ -37,42 +33,42 @@ public class MakeMove extends HttpServlet {
 		int turnNumber = Integer.parseInt(request.getParameter("turnNumber"));
 		
 		
-		// Get the turn number from the save file
-		int expectedTurnNumber = Util.getTurnNumber(Util.SAVE_LOC);
+		// Load the game (GamePage starts a new one if there's no such game)
+		int id = Util.getGameId(request);
+		Othello game = Util.loadGame(id);
+		
+		if (game == null)
+		{
+			request.getRequestDispatcher("GamePage").forward(request, response);
+			return;
+		}
 		
 		// WARNING: There's a chance that the out of date page & current page have the 
 		// same turn number!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-		if (turnNumber != expectedTurnNumber)
+		if (turnNumber != game.getTurnNumber())
 		{
 			request.getRequestDispatcher("GamePage").forward(request, response);
 			return;
 		}
-			
 		
-		// Create the game (create new game if there's no saved
-		// game; load saved game if there is)
-		Othello game = new Othello();
-		File saveFile = new File(Util.SAVE_LOC);
-				
-				
-		if (!saveFile.exists())
-			game.createNewGame();
-				
-		else
-		{
-			Scanner infile = new Scanner(saveFile);
-			game.loadGame(infile);			
-			infile.close();
+		// A cell that isn't a legal move (from a hand-edited or replayed
+		// URL) changes nothing; the game page shows the game as it is.
+		try {
+			game.playTurn(row, col);
 		}
 		
-
-		game.playTurn(row, col);
+		catch (IllegalArgumentException e) {
+			request.getRequestDispatcher("GamePage").forward(request, response);
+			return;
+		}
+		
+		// In a game against the computer, the computer answers right away.
+		Util.playComputerTurn(game);
 				
 
-		// Save the game. 
-		PrintWriter outfile = new PrintWriter(Util.SAVE_LOC);
-		game.saveGame(outfile);			
-		outfile.close();
+		// Save the game (unless someone else moved first, in which 
+		// case their move stands & the game page shows it). 
+		Util.saveGame(id, game);
 		
 		request.getRequestDispatcher("GamePage").forward(request, response);
 	}	
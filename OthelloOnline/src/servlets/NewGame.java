@@ -1,6 +1,5 @@
 package servlets;
 
-import java.io.File;
 import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -8,6 +7,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import othelloGame.Color;
+
 /**
  * Creates a new Othello game on the server side.
  * @author ubuntu
@@ -19,19 +20,36 @@ public class NewGame extends HttpServlet {
 
 
 	/**
-	 * Creates a new Othello game by altering the save file, then
-	 * redirects to the game page.
+	 * Creates a new Othello game in the game store, then redirects to
+	 * the game page. If the "opponent" URL parameter is "computer", the
+	 * computer plays white. The player's last game (the "game" URL
+	 * parameter, or the session's last game) is freed if it's finished.
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) 
 			throws ServletException, IOException {		
 		
-		// Read the save file
-		File saveFile = new File(Util.SAVE_LOC);
+		// The computer plays white in a game against the computer
+		Color computerPlayer = ("computer".equals(request.getParameter("opponent"))) 
+				? Color.WHITE : null;
+		
+		// The player's last game is done with if it's finished.
+		Util.freeGame(Util.getGameId(request));
+		
+		// Create a new game in the game store
+		int id;
+		
+		try {
+			id = Util.createGame(computerPlayer);
+		}
+		
+		catch (IllegalStateException e) {
+			throw new ServletException("There's no room for another game.", e);
+		}
 		
-		// Create a new game by altering the save file
-		Util.createNewSaveFile(saveFile);
+		Util.rememberGameId(request, id);
 		
-		// Go to the game page
-		request.getRequestDispatcher("GamePage").forward(request, response);
+		// Go to the game page (redirected, so reloading it doesn't
+		// start yet another game)
+		response.sendRedirect("GamePage?" + Util.GAME_PARAMETER + "=" + id);
 	}
 }
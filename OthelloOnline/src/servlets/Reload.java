@@ -1,6 +1,5 @@
 package servlets;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 
@@ -13,7 +12,8 @@ import javax.servlet.http.HttpServletResponse;
 /**
  * Tells the client if their page is out of date (&, thus, needs
  * to be reloaded) by examining the client's current turn number
- * and comparing it to the server's turn number.
+ * and comparing it to the server's turn number for the client's
+ * game (the "game" URL parameter).
  * @author ubuntu
  *
  */
@@ -37,8 +37,18 @@ public class Reload extends HttpServlet {
 		int turnNumber = Integer.parseInt(request.getParameter("turnNumber"));
 
 		
-		// The turn number in the save file
-		int expectedTurnNumber = Util.getTurnNumber(Util.SAVE_LOC);
+		// The turn number in the game store
+		int expectedTurnNumber;
+		
+		try {
+			expectedTurnNumber = Util.getTurnNumber(Util.getGameId(request));
+		}
+		
+		// The game is gone (it was finished & a new game took its
+		// place), so there's nothing newer to show.
+		catch (IllegalArgumentException e) {
+			expectedTurnNumber = turnNumber;
+		}
 		
 		
 		if (expectedTurnNumber != turnNumber)
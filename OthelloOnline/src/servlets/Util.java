@@ -1,11 +1,28 @@
 package servlets;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Scanner;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import othelloGame.BitBoard;
+import othelloGame.Color;
 import othelloGame.Othello;
+import othelloSearch.AnalysisCache;
+import othelloSearch.Evaluator;
+import othelloSearch.MoveAnalyzer;
+import othelloSearch.MoveScore;
+import othelloSearch.OpeningBook;
+import othelloSearch.PatternEvaluator;
+import othelloSearch.PositionalEvaluator;
+import othelloSearch.SearchEngine;
+import othelloSearch.SearchResult;
+import othelloSearch.TranspositionTable;
+import othelloStore.GameRegistry;
+import othelloStore.GameStore;
+import othelloStore.MoveJournal;
 
 /**
  * A bunch of static methods for servlets.
@@ -15,7 +32,104 @@ import othelloGame.Othello;
 public class Util 
 {
 	
-	static public final String SAVE_LOC = ".\\othelloSaves\\game1.txt";
+	// Where every game on the server is kept (see othelloStore.GameStore)
+	static public final String STORE_LOC = ".\\othelloSaves\\games.store";
+	
+	// How many games a new store has room for
+	static public final int STORE_CAPACITY = 1 << 18;
+	
+	// Where the game journal & its snapshots are kept
+	static public final String JOURNAL_LOC = ".\\othelloSaves\\journal";
+	
+	// The system property that picks how games are kept, when the
+	// server starts (-Dothello.persistence=...): one of the modes below.
+	// It can change between startups; the journal carries on from the
+	// store as the other modes left it.
+	static public final String PERSISTENCE_PROPERTY = "othello.persistence";
+	
+	// Every move is journaled (& on disk before the page showing it
+	// is sent), rebuilding the store from the journal at startup (see
+	// othelloStore.MoveJournal). The default.
+	static public final String JOURNAL_MODE = "journal";
+	
+	// Every move is written to the store's file, for the system to
+	// write back
+	static public final String STORE_MODE = "store";
+	
+	// Games are played in memory & written to the store in batches
+	// by a background thread (see othelloStore.GameRegistry)
+	static public final String WRITE_BEHIND_MODE = "write-behind";
+	
+	// The system properties that set, in write-behind mode, how long
+	// a move may be in memory only, & how often the dirty games are
+	// written, in milliseconds
+	static public final String MAX_DIRTY_AGE_PROPERTY = "othello.maxDirtyAge";
+	static public final String FLUSH_INTERVAL_PROPERTY = "othello.flushInterval";
+	
+	// How games are kept (one of the modes above)
+	static public final String PERSISTENCE = readPersistence();
+	
+	// In write-behind mode, how long a move may be in memory only, &
+	// how often the dirty games are written, in milliseconds
+	static public final long MAX_DIRTY_AGE = Long.getLong(MAX_DIRTY_AGE_PROPERTY, 
+			GameRegistry.DEFAULT_MAX_DIRTY_AGE);
+	static public final long FLUSH_INTERVAL = Long.getLong(FLUSH_INTERVAL_PROPERTY, 
+			GameRegistry.DEFAULT_FLUSH_INTERVAL);
+	
+	// The URL parameter (& session attribute) with a game's ID
+	static public final String GAME_PARAMETER = "game";
+	
+	// How long the computer may think about a move, in milliseconds
+	static public final int COMPUTER_MOVE_TIME = 50;
+	
+	// Where the computer's opening book is kept
+	static public final String BOOK_LOC = ".\\othelloSaves\\openings.book";
+	
+	// Where the computer's pattern evaluation weights are kept
+	static public final String WEIGHTS_LOC = ".\\othelloSaves\\patterns.weights";
+	
+	// How long hints may think about each move, in milliseconds
+	static public final int HINT_MOVE_TIME = 20;
+	
+	// How many positions' hints are kept
+	static private final int HINT_ENTRIES = 4096;
+	
+	// Search results shared by every computer player on the server
+	// (& hints). Their searches run at once, so the table's
+	// generations mark time rather than searches.
+	static private final TranspositionTable SEARCH_TABLE = makeSearchTable();
+	
+	// The opening book every computer player shares (null if there's
+	// no book, in which case the computer searches every move)
+	static private final OpeningBook BOOK = openBook(BOOK_LOC);
+	
+	// How every computer player scores positions: by pattern if there
+	// are weights, or by the simple positional evaluator if not
+	static private final Evaluator EVALUATOR = openEvaluator(WEIGHTS_LOC);
+	
+	// Each request thread's computer player (engines keep per-search
+	// state, so threads can't share one)
+	static private final ThreadLocal<SearchEngine> ENGINES = ThreadLocal.withInitial(() -> {
+		SearchEngine engine = new SearchEngine(SEARCH_TABLE, EVALUATOR);
+		engine.setTimeLimit(COMPUTER_MOVE_TIME);
+		engine.setOpeningBook(BOOK);
+		return engine;
+	});
+	
+	// Every player's hints, worked out in the background
+	static private final AnalysisCache HINTS = makeHintCache();
+	
+	// Every game change, if they're journaled (null if not)
+	static private final MoveJournal JOURNAL = PERSISTENCE.equals(JOURNAL_MODE) 
+			? openJournal(JOURNAL_LOC) : null;
+	
+	// Every game on the server, by ID
+	static private final GameStore GAMES = (JOURNAL != null) ? JOURNAL.getStore() 
+			: openStore(STORE_LOC);
+	
+	// The games being played, if they're written behind (null if not)
+	static private final GameRegistry REGISTRY = PERSISTENCE.equals(WRITE_BEHIND_MODE) 
+			? openRegistry(GAMES) : null;
 
 	/**
 	 * Ensures no one tries to make an object
@@ -26,47 +140,6 @@ public class Util
 	}
 	
 	
-	/**
-	 * Gets the turn number from the save file.
-	 * 
-	 * @param saveLoc The save file location.
-	 * @return The turn number from the save file.
-	 * @throws FileNotFoundException If the save file doesn't exist.
-	 * @throws IllegalArgumentException If the turn number isn't in the
-	 * save file.
-	 */
-	static public int getTurnNumber(String saveLoc) 
-			throws FileNotFoundException, IllegalArgumentException
-	{
-		File saveFile = new File(saveLoc);
-		Scanner infile = new Scanner(saveFile);
-		
-		String line[];
-		
-		while (infile.hasNext())
-		{
-			line = infile.next().split(":");
-			
-			switch (line[0]) {
-				
-				case "turnNumber":
-				{
-					infile.close();
-					return Integer.parseInt(line[1]);
-				}
-					
-					
-				default:
-					break;
-			}
-		}
-		
-		infile.close();
-		throw new IllegalArgumentException();
-	}
-	
-	
-	
 	/**
 	 * Creates the HTML div element that holds the current
 	 * player scores.
@@ -102,22 +175,29 @@ public class Util
 	
 	
 	/**
-	 * Takes a Scanner object pointing to the first row of
-	 * the game board in the save file; returns a string
-	 * containing the HTML representation of that board.
+	 * Returns a string containing the HTML representation
+	 * of a game's board, with each suggestion piece's cell
+	 * colored by how good the move is (green for the best,
+	 * red for the worst) & labelled with its score.
 	 * 
-	 * @param infile Points to the first row of the game
-	 * board in the save file.
+	 * @param game The game.
+	 * @param id The game's ID, for the suggestion pieces' links.
 	 * @param link The file (ex: servlet) that the suggestion
-	 * pieces will point to.
-	 * @param turnNumber The current turn number.
+	 * pieces will point to ("" for no links).
+	 * @param hints The moves' scores (see getHints), or null
+	 * for plain suggestion pieces.
 	 * 
 	 * @return An HTML representation of the board.
 	 */
-	static public String makeHtmlBoard(Scanner infile, String link, String turnNumber)
+	static public String makeHtmlBoard(Othello game, int id, String link, MoveScore[] hints)
 	{
 		String baseUrl = (link.compareTo("") == 0) ? "" 
-				: link + "?turnNumber=" + turnNumber;
+				: link + "?" + GAME_PARAMETER + "=" + id + "&turnNumber=" + game.getTurnNumber();
+		
+		long black = game.getBoard().getPieceMask(Color.BLACK);
+		long white = game.getBoard().getPieceMask(Color.WHITE);
+		long suggestions = game.getSuggestions();
+		String suggestion = (game.getCurrentPlayer() == Color.BLACK) ? "b" : "w";
 		
 		
 		String htmlBoard = "<div class=\"Box Board\"> <table>";
@@ -126,82 +206,22 @@ public class Util
 				+ "<th>2</th> <th>3</th> <th>4</th>"
 				+ "<th>5</th> <th>6</th> <th>7</th> </tr>";
 		
-		
-		String nextRow[];
-		int row = 0;
-		
-		while (infile.hasNext() && row < 8)
-		{		
-			nextRow = infile.next().split(";");
-			
+		for (int row = 0; row < BitBoard.SIZE; row++)
+		{
 			htmlBoard += "<tr> <th>" + Integer.toString(row) 
 				+ "</th>";
 			
-			for (int col = 0; col < nextRow.length; col++)
+			for (int col = 0; col < BitBoard.SIZE; col++)
 			{
-				String url = "";
-				
-				switch(nextRow[col]) {
+				long cell = BitBoard.cellMask(row, col);
+				String piece = ((black & cell) != 0) ? "B"
+						: ((white & cell) != 0) ? "W"
+						: ((suggestions & cell) != 0) ? suggestion : "null";
 				
-				case "B":
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-					"<img src=\"images/blackSolidPiece.png\" "
-					+ "alt=\"Black Solid Piece\">"
-						+ "</div>" + "</td>";
-					break;
-					
-				case "b":
-					
-					if (baseUrl.compareTo("") != 0)
-					{
-						url = baseUrl + "&row=" + Integer.toString(row) + 
-										"&column=" + Integer.toString(col);
-					}
-					
-					
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-						"<a href=\"" + url + "\">" +
-						"<img src=\"images/blackOutlinePiece.png\" "
-						+ "alt=\"Black Outline Piece\">" +
-						"</a>" + "</div>" + "</td>";
-					break;
-					
-				case "W":
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-					"<img src=\"images/whiteSolidPiece.png\" "
-					+ "alt=\"White Solid Piece\">"
-						+ "</div>" + "</td>";
-					break;
-					
-				case "w":
-					if (baseUrl.compareTo("") != 0)
-					{
-						url = baseUrl + "&row=" + Integer.toString(row) + 
-								"&column=" + Integer.toString(col);
-					}
-					
-					
-					htmlBoard += "<td>" + "<div class=\"Piece\">" +
-						"<a href=\"" + url + "\">" +
-						"<img src=\"images/whiteOutlinePiece.png\" "
-						+ "alt=\"White Outline Piece\">" +
-						"</a>" + "</div>" + "</td>";
-					break;
-					
-				case "null":
-					htmlBoard += "<td>"
-						+ "<div class=\"Piece\"></div>"
-						+ "</td>";
-					break;
-					
-				default:
-					break;
-				}
+				htmlBoard += makeHtmlCell(piece, baseUrl, hints, row, col);
 			}
 			
 			htmlBoard += "</tr>";
-			
-			row++;
 		}
 		
 		htmlBoard += "</table> </div>";
@@ -212,22 +232,233 @@ public class Util
 	
 	
 	/**
-	 * Creates a new save file or overwrites
-	 * the old save file if there is one.
+	 * Makes the HTML table cell for one cell of the board.
 	 * 
-	 * @param saveLoc The path to the save file.
-	 * @throws FileNotFoundException Thrown if the file
-	 * cannot be created.
+	 * @param cell The cell as it's written in the save file
+	 * ("B", "W", "b", "w" or "null").
+	 * @param baseUrl The link for suggestion pieces, without
+	 * the cell (empty for no link).
+	 * @param hints The moves' scores, or null if there are none.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return The HTML table cell.
 	 */
-	static public void createNewSaveFile(File saveFile) 
-			throws FileNotFoundException
+	static private String makeHtmlCell(String cell, String baseUrl, MoveScore[] hints,
+			int row, int col)
+	{
+		String url = "";
+		String htmlCell = "";
+		
+		switch(cell) {
+		
+		case "B":
+			htmlCell += "<td>" + "<div class=\"Piece\">" +
+			"<img src=\"images/blackSolidPiece.png\" "
+			+ "alt=\"Black Solid Piece\">"
+				+ "</div>" + "</td>";
+			break;
+			
+		case "b":
+			
+			if (baseUrl.compareTo("") != 0)
+			{
+				url = baseUrl + "&row=" + Integer.toString(row) + 
+								"&column=" + Integer.toString(col);
+			}
+			
+			
+			htmlCell += makeHintCell(hints, row, col) + "<div class=\"Piece\">" +
+				"<a href=\"" + url + "\">" +
+				"<img src=\"images/blackOutlinePiece.png\" "
+				+ "alt=\"Black Outline Piece\">" +
+				"</a>" + makeHintLabel(hints, row, col) + "</div>" + "</td>";
+			break;
+			
+		case "W":
+			htmlCell += "<td>" + "<div class=\"Piece\">" +
+			"<img src=\"images/whiteSolidPiece.png\" "
+			+ "alt=\"White Solid Piece\">"
+				+ "</div>" + "</td>";
+			break;
+			
+		case "w":
+			if (baseUrl.compareTo("") != 0)
+			{
+				url = baseUrl + "&row=" + Integer.toString(row) + 
+						"&column=" + Integer.toString(col);
+			}
+			
+			
+			htmlCell += makeHintCell(hints, row, col) + "<div class=\"Piece\">" +
+				"<a href=\"" + url + "\">" +
+				"<img src=\"images/whiteOutlinePiece.png\" "
+				+ "alt=\"White Outline Piece\">" +
+				"</a>" + makeHintLabel(hints, row, col) + "</div>" + "</td>";
+			break;
+			
+		case "null":
+			htmlCell += "<td>"
+				+ "<div class=\"Piece\"></div>"
+				+ "</td>";
+			break;
+			
+		default:
+			break;
+		}
+		
+		return htmlCell;
+	}
+	
+	
+	
+	/**
+	 * Creates a new game in the game store.
+	 * 
+	 * @param computerPlayer The color the computer plays, or
+	 * null if both players are human.
+	 * @return The new game's ID.
+	 * @throws IllegalStateException Thrown if the store is full.
+	 */
+	static public int createGame(Color computerPlayer) 
+			throws IllegalStateException
 	{
 		Othello game = new Othello();
 		game.createNewGame();
+		game.setComputerPlayer(computerPlayer);
 		
-		PrintWriter outfile = new PrintWriter(saveFile);
-		game.saveGame(outfile);			
-		outfile.close();
+		if (JOURNAL != null)
+			return JOURNAL.create(game);
+		
+		return (REGISTRY != null) ? REGISTRY.create(game) : GAMES.create(game);
+	}
+	
+	
+	/**
+	 * Loads a game from the game store.
+	 * 
+	 * @param id The game's ID.
+	 * @return The game, or null if there's no game with
+	 * that ID.
+	 */
+	static public Othello loadGame(int id)
+	{
+		Othello game = new Othello();
+		
+		if (REGISTRY != null)
+			return REGISTRY.load(id, game) ? game : null;
+		
+		return GAMES.load(id, game) ? game : null;
+	}
+	
+	
+	/**
+	 * Saves a game (loaded with loadGame, then played on) to
+	 * the game store. If games are journaled, the moves are on
+	 * disk when this returns; if they're written behind, they
+	 * will be within MAX_DIRTY_AGE. In every mode, a game that
+	 * someone else has moved in since it was loaded isn't saved.
+	 * 
+	 * @param id The game's ID.
+	 * @param game The game.
+	 * @return True if the game was saved, false if it was
+	 * moved in since it was loaded.
+	 * @throws IllegalArgumentException Thrown if there's no game
+	 * with that ID.
+	 * @throws IllegalStateException Thrown if the journal can't
+	 * be written.
+	 */
+	static public boolean saveGame(int id, Othello game) 
+			throws IllegalArgumentException, IllegalStateException
+	{
+		if (JOURNAL != null)
+			return JOURNAL.save(id, game);
+		
+		if (REGISTRY != null)
+			return REGISTRY.save(id, game);
+		
+		// The stored game must be where this one was loaded from.
+		return GAMES.compareAndSave(id, game.getTurnNumber() - game.getNumMovesMade(), game);
+	}
+	
+	
+	/**
+	 * Removes a finished game from the game store, so its slot
+	 * can be reused. Games still being played are kept.
+	 * 
+	 * @param id The game's ID.
+	 */
+	static public void freeGame(int id)
+	{
+		if (JOURNAL != null)
+			JOURNAL.freeFinished(id);
+		
+		else if (REGISTRY != null)
+			REGISTRY.freeFinished(id);
+		
+		else
+			GAMES.freeFinished(id);
+	}
+	
+	
+	/**
+	 * Gets a game's turn number from the game store, without
+	 * loading the game.
+	 * 
+	 * @param id The game's ID.
+	 * @return The turn number.
+	 * @throws IllegalArgumentException Thrown if there's no game
+	 * with that ID.
+	 */
+	static public int getTurnNumber(int id) throws IllegalArgumentException
+	{
+		if (REGISTRY != null)
+			return REGISTRY.getTurnNumber(id);
+		
+		return GAMES.getTurnNumber(id);
+	}
+	
+	
+	/**
+	 * Gets the ID of the game a request is about: the "game"
+	 * URL parameter, or if there isn't one, the last game
+	 * shown in the session (see rememberGameId).
+	 * 
+	 * @param request The request.
+	 * @return The game ID, or GameStore.NO_GAME if the request
+	 * isn't about any game.
+	 */
+	static public int getGameId(HttpServletRequest request)
+	{
+		String id = request.getParameter(GAME_PARAMETER);
+		
+		if (id == null)
+		{
+			HttpSession session = request.getSession(false);
+			Object lastId = (session == null) ? null : session.getAttribute(GAME_PARAMETER);
+			
+			return (lastId instanceof Integer) ? (Integer) lastId : GameStore.NO_GAME;
+		}
+		
+		try {
+			return Integer.parseInt(id);
+		}
+		
+		catch (NumberFormatException e) {
+			return GameStore.NO_GAME;
+		}
+	}
+	
+	
+	/**
+	 * Remembers the game shown in a session, so the session
+	 * gets back to it without the game's ID in the URL.
+	 * 
+	 * @param request The request.
+	 * @param id The game's ID.
+	 */
+	static public void rememberGameId(HttpServletRequest request, int id)
+	{
+		request.getSession().setAttribute(GAME_PARAMETER, id);
 	}
 	
 	
@@ -243,4 +474,369 @@ public class Util
 	{
 		return "<p id=\"turnNumber\" hidden>" + turnNumber + "</p>";
 	}
+	
+	
+	/**
+	 * Makes an invisible HTML element with the game's ID. Used
+	 * by client-side Javascript to ask about the right game.
+	 * 
+	 * @param id The game's ID.
+	 * @return An HTML string with a hidden game ID element.
+	 */
+	static public String makeHiddenGameId(int id)
+	{
+		return "<p id=\"gameId\" hidden>" + id + "</p>";
+	}
+	
+	
+	/**
+	 * If it's the computer's turn in the given game, plays the
+	 * computer's move: the opening book's if it has one, otherwise
+	 * the best it finds in at most COMPUTER_MOVE_TIME milliseconds.
+	 * 
+	 * @param game The game.
+	 */
+	static public void playComputerTurn(Othello game)
+	{
+		if (game.isFinished() || game.getCurrentPlayer() != game.getComputerPlayer())
+			return;
+		
+		SearchResult result = ENGINES.get().search(game);
+		game.playTurn(result.getRow(), result.getCol());
+	}
+	
+	
+	/**
+	 * Returns the hints for the current player of the given game:
+	 * every legal move with its score, if they're ready. If they
+	 * aren't, they're worked out in the background (so a page
+	 * never waits on them) & this returns null; ask again later.
+	 * 
+	 * @param game The game.
+	 * @return The moves' scores, best first, or null if they
+	 * aren't ready yet.
+	 */
+	static public MoveScore[] getHints(Othello game)
+	{
+		return HINTS.get(game);
+	}
+	
+	
+	
+	/**
+	 * Stops the background threads & closes the game store (&
+	 * its journal or registry), writing what's left to disk. Call
+	 * only when the webapp stops (see CloseGames), after which
+	 * no game can be used.
+	 * 
+	 * @throws IOException Thrown if the games can't be written.
+	 */
+	static public void close() throws IOException
+	{
+		HINTS.close();
+		
+		if (JOURNAL != null)
+		{
+			JOURNAL.close();
+			return;
+		}
+		
+		try {
+			if (REGISTRY != null)
+				REGISTRY.close();
+		}
+		
+		finally {
+			GAMES.close();
+		}
+	}
+	
+	
+	
+	/**
+	 * Makes the opening tag of a suggestion piece's cell, colored
+	 * by how its move compares to the others if there are hints.
+	 * 
+	 * @param hints The moves' scores, or null if there are none.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return The cell's opening tag.
+	 */
+	static private String makeHintCell(MoveScore[] hints, int row, int col)
+	{
+		MoveScore hint = findHint(hints, row, col);
+		
+		if (hint == null)
+			return "<td>";
+		
+		// The best move is green (hue 120), the worst red (hue 0).
+		int best = hints[0].getScore();
+		int worst = hints[hints.length - 1].getScore();
+		int hue = (best == worst) ? 120 : 120 * (hint.getScore() - worst) / (best - worst);
+		
+		return "<td class=\"Hint\" style=\"background-color: hsl(" + hue + ", 70%, 40%)\""
+				+ " title=\"" + describeHint(hint) + "\">";
+	}
+	
+	
+	
+	/**
+	 * Makes the label with a suggestion piece's score: the final
+	 * disc difference (W, D or L first) if the move is solved,
+	 * otherwise the search score.
+	 * 
+	 * @param hints The moves' scores, or null if there are none.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return The label, or an empty string if there are no hints.
+	 */
+	static private String makeHintLabel(MoveScore[] hints, int row, int col)
+	{
+		MoveScore hint = findHint(hints, row, col);
+		
+		if (hint == null)
+			return "";
+		
+		String label;
+		
+		if (!hint.isExact())
+			label = String.format("%+d", hint.getScore());
+		
+		else if (hint.getOutcome() == MoveScore.DRAW)
+			label = "D";
+		
+		else
+			label = ((hint.getOutcome() == MoveScore.WIN) ? "W" : "L")
+					+ String.format("%+d", hint.getDiscDifference());
+		
+		return "<span class=\"HintScore\">" + label + "</span>";
+	}
+	
+	
+	
+	/**
+	 * Describes a move's expected outcome in words.
+	 * 
+	 * @param hint The move's score.
+	 * @return The description.
+	 */
+	static private String describeHint(MoveScore hint)
+	{
+		String outcome = (hint.getOutcome() == MoveScore.WIN) ? "win"
+				: (hint.getOutcome() == MoveScore.DRAW) ? "draw" : "loss";
+		
+		if (hint.isExact() && hint.getOutcome() == MoveScore.DRAW)
+			return "Leads to a draw with perfect play";
+		
+		if (hint.isExact())
+			return "Leads to a " + outcome + " by " + Math.abs(hint.getDiscDifference())
+					+ " discs with perfect play";
+		
+		return "Expected: " + outcome + " (score " + hint.getScore() + ", "
+				+ hint.getDepth() + " moves deep)";
+	}
+	
+	
+	
+	/**
+	 * Finds the hint for a cell.
+	 * 
+	 * @param hints The moves' scores, or null if there are none.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @return The cell's move's score, or null if there isn't one.
+	 */
+	static private MoveScore findHint(MoveScore[] hints, int row, int col)
+	{
+		if (hints == null)
+			return null;
+		
+		for (MoveScore hint : hints)
+			if (hint.getRow() == row && hint.getCol() == col)
+				return hint;
+		
+		return null;
+	}
+	
+	
+	
+	/**
+	 * Makes the hint cache: an analyzer sharing the computer
+	 * players' table & evaluator, thinking HINT_MOVE_TIME
+	 * milliseconds per move.
+	 * 
+	 * @return The hint cache.
+	 */
+	static private AnalysisCache makeHintCache()
+	{
+		MoveAnalyzer analyzer = new MoveAnalyzer(SEARCH_TABLE, EVALUATOR);
+		analyzer.setTimeLimit(HINT_MOVE_TIME);
+		
+		return new AnalysisCache(analyzer, HINT_ENTRIES);
+	}
+	
+	
+	
+	/**
+	 * Reads how games are kept from the PERSISTENCE_PROPERTY
+	 * system property.
+	 * 
+	 * @return The mode: JOURNAL_MODE (if the property isn't
+	 * set), STORE_MODE or WRITE_BEHIND_MODE.
+	 * @throws IllegalStateException Thrown if the property names
+	 * no mode (the server shouldn't guess how to keep games).
+	 */
+	static private String readPersistence() throws IllegalStateException
+	{
+		String mode = System.getProperty(PERSISTENCE_PROPERTY, JOURNAL_MODE).trim();
+		
+		if (!mode.equals(JOURNAL_MODE) && !mode.equals(STORE_MODE) 
+				&& !mode.equals(WRITE_BEHIND_MODE))
+			throw new IllegalStateException("Unknown " + PERSISTENCE_PROPERTY + " \"" + mode 
+					+ "\": use " + JOURNAL_MODE + ", " + STORE_MODE + " or " + WRITE_BEHIND_MODE);
+		
+		return mode;
+	}
+	
+	
+	
+	/**
+	 * Opens (or creates) the game store in the given file.
+	 * 
+	 * @param storeLoc The store file location.
+	 * @return The store.
+	 * @throws IllegalStateException Thrown if the store can't
+	 * be opened (the server can't run without it).
+	 */
+	static private GameStore openStore(String storeLoc) throws IllegalStateException
+	{
+		File storeFile = new File(storeLoc);
+		
+		if (storeFile.getParentFile() != null)
+			storeFile.getParentFile().mkdirs();
+		
+		try {
+			return new GameStore(storeFile, STORE_CAPACITY);
+		}
+		
+		catch (IOException | IllegalArgumentException e) {
+			throw new IllegalStateException("Can't open the game store " + storeLoc, e);
+		}
+	}
+	
+	
+	
+	/**
+	 * Opens the game journal in the given directory, rebuilding
+	 * the game store (at STORE_LOC) from it.
+	 * 
+	 * @param journalLoc The journal's directory.
+	 * @return The journal.
+	 * @throws IllegalStateException Thrown if the journal can't
+	 * be opened (the server can't run without it).
+	 */
+	static private MoveJournal openJournal(String journalLoc) throws IllegalStateException
+	{
+		try {
+			return new MoveJournal(new File(journalLoc), new File(STORE_LOC), STORE_CAPACITY);
+		}
+		
+		catch (IOException | IllegalArgumentException e) {
+			throw new IllegalStateException("Can't open the game journal " + journalLoc, e);
+		}
+	}
+	
+	
+	
+	/**
+	 * Starts writing the games in the given store behind, every
+	 * FLUSH_INTERVAL. What's left is written when the server
+	 * stops (see close).
+	 * 
+	 * @param store The game store.
+	 * @return The games being played.
+	 * @throws IllegalStateException Thrown if FLUSH_INTERVAL &
+	 * MAX_DIRTY_AGE don't fit together.
+	 */
+	static private GameRegistry openRegistry(GameStore store) throws IllegalStateException
+	{
+		GameRegistry registry;
+		
+		try {
+			registry = new GameRegistry(store, MAX_DIRTY_AGE, FLUSH_INTERVAL);
+		}
+		
+		catch (IllegalArgumentException e) {
+			throw new IllegalStateException("Can't write games behind with " 
+					+ MAX_DIRTY_AGE_PROPERTY + "=" + MAX_DIRTY_AGE + " & " 
+					+ FLUSH_INTERVAL_PROPERTY + "=" + FLUSH_INTERVAL, e);
+		}
+		
+		return registry;
+	}
+	
+	
+	
+	/**
+	 * Creates the search table shared by every computer player
+	 * & hint.
+	 * 
+	 * @return The table.
+	 */
+	static private TranspositionTable makeSearchTable()
+	{
+		TranspositionTable table = new TranspositionTable(16);
+		table.setGenerationInterval(TranspositionTable.SHARED_GENERATION_INTERVAL);
+		
+		return table;
+	}
+	
+	
+	
+	/**
+	 * Opens the opening book in the given file.
+	 * 
+	 * @param bookLoc The book file location.
+	 * @return The book, or null if there's no (readable) book there.
+	 */
+	static private OpeningBook openBook(String bookLoc)
+	{
+		File bookFile = new File(bookLoc);
+		
+		if (!bookFile.isFile())
+			return null;
+		
+		try {
+			return new OpeningBook(bookFile);
+		}
+		
+		catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	
+	
+	/**
+	 * Loads the pattern evaluator's weights, falling back on the
+	 * positional evaluator if there are none.
+	 * 
+	 * @param weightsLoc The weights file location.
+	 * @return The evaluator.
+	 */
+	static private Evaluator openEvaluator(String weightsLoc)
+	{
+		File weightsFile = new File(weightsLoc);
+		
+		if (!weightsFile.isFile())
+			return new PositionalEvaluator();
+		
+		try {
+			return new PatternEvaluator(weightsFile);
+		}
+		
+		catch (IOException | IllegalArgumentException e) {
+			return new PositionalEvaluator();
+		}
+	}
 }